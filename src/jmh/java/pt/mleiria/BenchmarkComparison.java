@@ -0,0 +1,104 @@
+package pt.mleiria;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}, for tracking regressions between runs.
+ * <p>
+ * Benchmarks are matched by name and parameters. A benchmark regresses when its score moves in the wrong
+ * direction, lower for throughput and higher for time modes, by more than the threshold and by more than the
+ * combined error of both runs. The report lists every matched benchmark, and the process exits with status 1
+ * when any of them regressed, so it can gate a build:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@compare -Djmh.baseline=baseline.json -Djmh.threshold=10
+ * </pre>
+ */
+public final class BenchmarkComparison {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BenchmarkComparison() {
+    }
+
+    /**
+     * @param args the baseline result file, the current result file and optionally the threshold in percent
+     * @throws IOException if a result file can not be read
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [threshold %]");
+            System.exit(2);
+        }
+        final double threshold = args.length > 2
+                ? Double.parseDouble(args[2])
+                : 5;
+        final Map<String, JsonNode> baseline = read(new File(args[0]));
+        final Map<String, JsonNode> current = read(new File(args[1]));
+        int regressions = 0;
+        System.out.printf("%-80s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (final Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            final JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f %9s%n", entry.getKey(), "-", score(entry.getValue()), "new");
+                continue;
+            }
+            final JsonNode after = entry.getValue();
+            final double change = (score(after) - score(before)) / score(before) * 100;
+            final boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            final double worse = higherIsBetter
+                    ? -change
+                    : change;
+            final boolean significant = Math.abs(score(after) - score(before)) > error(before) + error(after);
+            final boolean regressed = worse > threshold && significant;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%% %s%s%n", entry.getKey(), score(before), score(after),
+                    change, after.at("/primaryMetric/scoreUnit").asText(), regressed ? "  REGRESSION" : "");
+        }
+        for (final String missing : baseline.keySet()) {
+            if (!current.containsKey(missing)) {
+                System.out.printf("%-80s %14.3f %14s %9s%n", missing, score(baseline.get(missing)), "-", "removed");
+            }
+        }
+        System.out.printf("%d regression(s) above %.1f%%%n", regressions, threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> read(final File file) throws IOException {
+        final Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (final JsonNode result : MAPPER.readTree(file)) {
+            results.put(key(result), result);
+        }
+        return results;
+    }
+
+    private static String key(final JsonNode result) {
+        final Map<String, String> params = new TreeMap<>();
+        result.path("params").fields().forEachRemaining(e -> params.put(e.getKey(), e.getValue().asText()));
+        final String benchmark = result.path("benchmark").asText();
+        return params.isEmpty()
+                ? benchmark
+                : benchmark + params;
+    }
+
+    private static double score(final JsonNode result) {
+        return result.at("/primaryMetric/score").asDouble();
+    }
+
+    private static double error(final JsonNode result) {
+        final double error = result.at("/primaryMetric/scoreError").asDouble();
+        return Double.isNaN(error)
+                ? 0
+                : error;
+    }
+}
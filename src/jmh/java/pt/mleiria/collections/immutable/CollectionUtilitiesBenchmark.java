@@ -0,0 +1,127 @@
+package pt.mleiria.collections.immutable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Folds over lists of several sizes, compared against a hand written loop doing the same work, and builds lists by
+ * reversing, prepending and ranging. The building benchmarks grow linearly with the size as long as every step
+ * shares the structure of the previous list; a step that copies the list shows up as a quadratic jump between
+ * sizes. Run with {@code -prof gc} to check that the folds allocate nothing per element.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionUtilitiesBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private List<Integer> vector;
+    private List<Integer> arrayList;
+
+    private final Function<Integer, Function<Integer, Integer>> sum = x -> y -> x + y;
+
+    @Setup
+    public void setUp() {
+        arrayList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            arrayList.add(i & 1023);
+        }
+        vector = CollectionUtilities.list(arrayList);
+    }
+
+    @Benchmark
+    public int loopBaseline() {
+        int acc = 0;
+        for (final Integer i : vector) {
+            acc = acc + i;
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public Integer foldLeftVector() {
+        return CollectionUtilities.foldLeft(vector, 0, sum);
+    }
+
+    @Benchmark
+    public Integer foldLeftArrayList() {
+        return CollectionUtilities.foldLeft(arrayList, 0, sum);
+    }
+
+    @Benchmark
+    public Integer foldRightVector() {
+        return CollectionUtilities.foldRight(vector, 0, sum);
+    }
+
+    @Benchmark
+    public Integer reduceVector() {
+        return CollectionUtilities.reduce(vector, sum);
+    }
+
+    @Benchmark
+    public List<Integer> scanLeftVector() {
+        return CollectionUtilities.scanLeft(vector, 0, sum);
+    }
+
+    @Benchmark
+    public List<Integer> reverseVector() {
+        return CollectionUtilities.reverse(vector);
+    }
+
+    @Benchmark
+    public List<Integer> prependAll() {
+        List<Integer> list = CollectionUtilities.list();
+        for (int i = 0; i < size; i++) {
+            list = CollectionUtilities.prepend(i, list);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Integer> appendAll() {
+        List<Integer> list = CollectionUtilities.list();
+        for (int i = 0; i < size; i++) {
+            list = CollectionUtilities.append(list, i);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Integer> range() {
+        return CollectionUtilities.range(0, size);
+    }
+
+    @Benchmark
+    public IntList intRange() {
+        return IntList.range(0, size);
+    }
+
+    @Benchmark
+    public Integer zipAndFold() {
+        return CollectionUtilities.zip(vector, arrayList).foldLeft(0, (acc, x, y) -> acc + x * y);
+    }
+
+    @Benchmark
+    public Integer zipWithIndexAndFold() {
+        return CollectionUtilities.foldLeftWithIndex(vector, 0, (acc, x, i) -> acc + x * i);
+    }
+}
@@ -0,0 +1,89 @@
+package pt.mleiria.collections.immutable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Operations of the singly linked {@link List} at several sizes: building it with cons, and the traversals that
+ * run through the trampoline or the folds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private List<Integer> list;
+
+    private final Function<Integer, Function<Integer, Integer>> sum = x -> y -> x + y;
+
+    @Setup
+    public void setUp() {
+        list = build();
+    }
+
+    private List<Integer> build() {
+        List<Integer> result = List.list();
+        for (int i = 0; i < size; i++) {
+            result = result.cons(i & 1023);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Integer> cons() {
+        return build();
+    }
+
+    @Benchmark
+    public int length() {
+        return list.length();
+    }
+
+    @Benchmark
+    public List<Integer> reverse() {
+        return list.reverse();
+    }
+
+    @Benchmark
+    public Integer foldLeft() {
+        return list.foldLeft(0, sum);
+    }
+
+    @Benchmark
+    public Integer foldRight() {
+        return list.foldRight(0, sum);
+    }
+
+    @Benchmark
+    public List<Integer> map() {
+        return list.map(x -> x + 1);
+    }
+
+    @Benchmark
+    public List<Integer> filter() {
+        return list.filter(x -> (x & 1) == 0);
+    }
+
+    @Benchmark
+    public List<Integer> concat() {
+        return List.concat(list, list);
+    }
+}
@@ -0,0 +1,126 @@
+package pt.mleiria.collections.immutable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Versioned lookup tables: a new version with one changed entry, by copying a {@link HashMap} or by updating a
+ * {@link PersistentHashMap} or {@link PersistentLongMap}, and lookups and bulk loads of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistentHashMapBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    private HashMap<String, Integer> hashMap;
+    private PersistentHashMap<String, Integer> persistent;
+    private PersistentLongMap<Integer> longMap;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "feature-" + i;
+        }
+        hashMap = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            hashMap.put(keys[i], i);
+        }
+        persistent = PersistentHashMap.from(hashMap);
+        longMap = loadLongMap();
+    }
+
+    private String nextKey() {
+        next = next + 1 == size ? 0 : next + 1;
+        return keys[next];
+    }
+
+    @Benchmark
+    public Map<String, Integer> updateCopiedHashMap() {
+        final HashMap<String, Integer> copy = new HashMap<>(hashMap);
+        copy.put(nextKey(), -1);
+        return copy;
+    }
+
+    @Benchmark
+    public Map<String, Integer> updatePersistentHashMap() {
+        return persistent.with(nextKey(), -1);
+    }
+
+    @Benchmark
+    public PersistentLongMap<Integer> updatePersistentLongMap() {
+        return longMap.with(next++ % size, -1);
+    }
+
+    @Benchmark
+    public Integer getHashMap() {
+        return hashMap.get(nextKey());
+    }
+
+    @Benchmark
+    public Integer getPersistentHashMap() {
+        return persistent.get(nextKey());
+    }
+
+    @Benchmark
+    public Integer getPersistentLongMap() {
+        return longMap.get(next++ % size);
+    }
+
+    @Benchmark
+    public Map<String, Integer> loadHashMap() {
+        final HashMap<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<String, Integer> loadWithBuilder() {
+        final PersistentHashMap.Builder<String, Integer> builder = PersistentHashMap.builder();
+        for (int i = 0; i < size; i++) {
+            builder.put(keys[i], i);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public Map<String, Integer> loadWithUpdates() {
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < size; i++) {
+            map = map.with(keys[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public PersistentLongMap<Integer> loadLongMap() {
+        final PersistentLongMap.Builder<Integer> builder = PersistentLongMap.builder();
+        for (int i = 0; i < size; i++) {
+            builder.put(i, i);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,80 @@
+package pt.mleiria.collections.immutable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static pt.mleiria.collections.immutable.TailCall.onStack;
+import static pt.mleiria.collections.immutable.TailCall.ret;
+import static pt.mleiria.collections.immutable.TailCall.sus;
+
+/**
+ * Compares the original trampoline ({@link LegacyTailCall}) with {@link TailCall} on the workloads of
+ * {@code TailCallTest}: counting up by one, and a non tail recursive sum that only the new flatMap can express.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TailCallBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int size;
+
+    private static LegacyTailCall<Integer> legacyAdd(int x, int y) {
+        return y == 0
+                ? LegacyTailCall.ret(x)
+                : LegacyTailCall.sus(() -> legacyAdd(x + 1, y - 1));
+    }
+
+    private static TailCall<Integer> add(int x, int y) {
+        return y == 0
+                ? ret(x)
+                : sus(() -> add(x + 1, y - 1));
+    }
+
+    private static TailCall<Integer> addFast(int x, int y, int depth) {
+        return y == 0
+                ? ret(x)
+                : onStack(depth)
+                ? addFast(x + 1, y - 1, depth + 1)
+                : sus(() -> addFast(x + 1, y - 1, 0));
+    }
+
+    private static TailCall<Long> sum(int n) {
+        return n == 0
+                ? ret(0L)
+                : sus(() -> sum(n - 1)).map(acc -> acc + n);
+    }
+
+    @Benchmark
+    public int legacyEval() {
+        return legacyAdd(0, size).eval();
+    }
+
+    @Benchmark
+    public int eval() {
+        return add(0, size).eval();
+    }
+
+    @Benchmark
+    public int evalFastPath() {
+        return addFast(0, size, 0).eval();
+    }
+
+    @Benchmark
+    public long evalNonTailRecursive() {
+        return sum(size).eval();
+    }
+}
@@ -0,0 +1,98 @@
+package pt.mleiria.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up values of a JSON document with a first, middle and last field, by name, by pointer and on a parsed
+ * {@link JsonValidator.Document}, and validates it with one and with ten {@link JsonRules}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonValidatorBenchmark {
+
+    @Param({"20", "200"})
+    private int fields;
+
+    private String json;
+    private String middle;
+    private String last;
+    private JsonRules oneRule;
+    private JsonRules tenRules;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder builder = new StringBuilder(
+                "{\"id\":\"o-1\",\"customer\":{\"address\":{\"city\":\"Lisboa\"}}");
+        for (int i = 0; i < fields; i++) {
+            builder.append(",\"field").append(i).append("\":{\"value\":").append(i)
+                    .append(",\"tags\":[\"a\",\"b\",\"c\"]}");
+        }
+        json = builder.append('}').toString();
+        middle = "field" + fields / 2;
+        last = "field" + (fields - 1);
+        oneRule = JsonRules.builder()
+                .matches("/id", Validator.isPresent(), "id is required")
+                .build();
+        final JsonRules.Builder rules = JsonRules.builder()
+                .matches("/id", Validator.isPresent(), "id is required")
+                .present("/customer/address/city");
+        for (int i = 0; i < 8; i++) {
+            rules.present("/field" + i * fields / 8 + "/value");
+        }
+        tenRules = rules.build();
+    }
+
+    @Benchmark
+    public Optional<JsonNode> firstField() {
+        return JsonValidator.getJsonNode(json, "id");
+    }
+
+    @Benchmark
+    public Optional<JsonNode> middleField() {
+        return JsonValidator.getJsonNode(json, middle);
+    }
+
+    @Benchmark
+    public Optional<JsonNode> lastField() {
+        return JsonValidator.getJsonNode(json, last);
+    }
+
+    @Benchmark
+    public Optional<JsonNode> nestedPointer() {
+        return JsonValidator.getJsonNodeAt(json, "/customer/address/city");
+    }
+
+    @Benchmark
+    public boolean parsedDocument() {
+        return JsonValidator.Document.parse(json).orElseThrow().hasValue("id", "o-1");
+    }
+
+    @Benchmark
+    public List<JsonRules.Violation> validateOneRule() {
+        return oneRule.validate(json);
+    }
+
+    @Benchmark
+    public List<JsonRules.Violation> validateTenRules() {
+        return tenRules.validate(json);
+    }
+}
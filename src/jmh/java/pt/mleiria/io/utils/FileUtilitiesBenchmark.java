@@ -0,0 +1,91 @@
+package pt.mleiria.io.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads generated comma separated files of three numeric columns through the loaders of {@link FileUtilities}.
+ * <p>
+ * The files are written once to {@code java.io.tmpdir}, from a fixed seed, and reused by later runs as long as
+ * they have the expected size. Every invocation reads the whole file, so the benchmark runs in single shot mode;
+ * the page cache is warm after the first one. Loading 1 GB as strings needs a large heap, for a quick run pass
+ * {@code -p megabytes=100}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class FileUtilitiesBenchmark {
+
+    @Param({"100", "1000"})
+    private int megabytes;
+
+    private String path;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final long size = (long) megabytes << 20;
+        final Path file = Paths.get(System.getProperty("java.io.tmpdir"), "ml-lib-bench-" + megabytes + "mb.csv");
+        if (!Files.exists(file) || Files.size(file) < size) {
+            generate(file, size);
+        }
+        path = file.toString();
+    }
+
+    private static void generate(final Path file, final long size) throws IOException {
+        final SplittableRandom random = new SplittableRandom(42);
+        long written = 0;
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, UTF_8)) {
+            while (written < size) {
+                final String line = String.format(Locale.ROOT, "%.4f,%.4f,%d%n",
+                        random.nextDouble() * 1000, random.nextGaussian(), random.nextInt(100_000));
+                writer.write(line);
+                written += line.length();
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> load() {
+        return FileUtilities.load(path);
+    }
+
+    @Benchmark
+    public List<double[]> loadMapped() {
+        return FileUtilities.load(path, FileUtilities.strToStrArr.andThen(FileUtilities.strArrToDbl));
+    }
+
+    @Benchmark
+    public List<double[]> loadParallel() {
+        return FileUtilities.loadParallel(path, FileUtilities.strToStrArr.andThen(FileUtilities.strArrToDbl));
+    }
+
+    @Benchmark
+    public NumericTable loadNumeric() {
+        return FileUtilities.loadNumeric(path);
+    }
+}
@@ -2,13 +2,17 @@ package pt.mleiria.collections.immutable;
 
 import pt.mleiria.dto.Pair;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.DoubleStream;
-import java.util.stream.IntStream;
 
 import static pt.mleiria.collections.immutable.TailCall.ret;
 import static pt.mleiria.collections.immutable.TailCall.sus;
@@ -21,6 +25,11 @@ public class CollectionUtilities {
     public static final Function<double[], List<Double>> dblArrToListFunc =
             vector -> DoubleStream.of(vector).boxed().toList();
 
+    /**
+     * Same as {@link #dblArrToListFunc} without boxing the values.
+     */
+    public static final Function<double[], DoubleList> dblArrToDoubleListFunc = DoubleList::of;
+
     /**
      * Creates and returns an empty list.
      *
@@ -28,7 +37,7 @@ public class CollectionUtilities {
      * @return an empty list
      */
     public static <T> List<T> list() {
-        return Collections.emptyList();
+        return PersistentVector.empty();
     }
 
     /**
@@ -39,18 +48,19 @@ public class CollectionUtilities {
      * @return a list containing only the specified element
      */
     public static <T> List<T> list(final T t) {
-        return Collections.singletonList(t);
+        return PersistentVector.of(t);
     }
 
     /**
      * Returns an unmodifiable list containing the elements of the input list.
+     * Lists previously returned by this class are persistent vectors and are returned without copying.
      *
      * @param ts  the list of elements
      * @param <T> the type of elements in the list
      * @return an unmodifiable list containing the elements of the input list
      */
     public static <T> List<T> list(final List<T> ts) {
-        return Collections.unmodifiableList(new ArrayList<>(ts));
+        return vector(ts);
     }
 
     /**
@@ -61,7 +71,7 @@ public class CollectionUtilities {
      */
     @SafeVarargs
     public static <T> List<T> list(final T... t) {
-        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(t, t.length)));
+        return PersistentVector.of(t);
     }
 
     /**
@@ -78,18 +88,19 @@ public class CollectionUtilities {
     }
 
     /**
-     * Copies a list of elements.
+     * Returns the persistent vector view of a list, copying it only when it is not one already.
      *
-     * @param ts  the list of elements to be copied
+     * @param ts  the list of elements
      * @param <T> the type of elements in the list
-     * @return a new list containing the same elements as the input list
+     * @return a persistent vector with the same elements as the input list
      */
-    private static <T> List<T> copy(final List<T> ts) {
-        return new ArrayList<>(ts);
+    private static <T> PersistentVector<T> vector(final List<T> ts) {
+        return PersistentVector.from(ts);
     }
 
     /**
      * Returns a new list containing all elements of the input list except for the first element.
+     * The result shares its structure with the input list, so this runs in constant time.
      *
      * @param list the input list
      * @param <T>  the type of elements in the list
@@ -100,9 +111,7 @@ public class CollectionUtilities {
         if (list.isEmpty()) {
             throw new IllegalStateException("Tail of Empty list");
         }
-        final List<T> workList = copy(list);
-        workList.remove(0);
-        return Collections.unmodifiableList(workList);
+        return vector(list).tail();
     }
 
     /**
@@ -114,7 +123,8 @@ public class CollectionUtilities {
      * value with the next element of the list, and <T> and <U>, which are the types of the elements in the
      * list and the accumulated value, respectively.
      * <p>
-     * The function uses tail recursion to implement the fold operation and returns the result of the fold operation.
+     * The list is walked once with its iterator, so the fold runs in linear time and allocates nothing
+     * per element besides what the function itself allocates.
      *
      * @param ts       the list to be folded
      * @param identity the initial value for the fold operation
@@ -124,50 +134,21 @@ public class CollectionUtilities {
      * @return the result of the fold operation
      */
     public static <T, U> U foldLeft(final List<T> ts, final U identity, final Function<U, Function<T, U>> f) {
-        return foldLeftTailRec(ts, identity, f).eval();
-    }
-
-    /**
-     * Generate the function comment for the given function body in a markdown code block with the correct language syntax.
-     *
-     * @param ts       the list of values to be folded
-     * @param identity the initial value for folding
-     * @param f        the function for folding
-     * @return the result of folding the list of values
-     * <p>
-     * This code snippet is a method called foldLeftTailRec that performs a tail-recursive
-     * fold operation on a list of values.
-     * <p>
-     * It takes three parameters: ts (the list of values to be folded), identity (the initial value for folding),
-     * and f (the function for folding).
-     * <p>
-     * The method uses a ternary operator to check if the list of values is empty.
-     * If it is, it returns the initial value. Otherwise, it uses a suspended computation to recursively
-     * call the foldLeftTailRec method with the tail of the list, the result of applying the
-     * folding function to the initial value and the head of the list, and the folding function itself.
-     * <p>
-     * The method returns a TailCall object, which is a way to perform tail recursion in Java.
-     */
-    private static <T, U> TailCall<U> foldLeftTailRec(final List<T> ts, final U identity, final Function<U, Function<T, U>> f) {
-        return
-                ts.isEmpty()
-                        ? ret(identity)
-                        : sus(() -> foldLeftTailRec(tail(ts), f.apply(identity).apply(head(ts)), f));
+        U acc = identity;
+        for (final T t : ts) {
+            acc = f.apply(acc).apply(t);
+        }
+        return acc;
     }
 
     /**
      * A function that folds the elements of a list from right to left using a binary operator function.
-     * This code snippet is a Java function called foldRight that performs a right-to-left fold operation on a list.
      * It takes four parameters: the list to be folded (ts), the initial value of the fold operation (identity),
      * the binary operator function to apply to the elements of the list (f), and the types of the elements in
      * the list (T) and the result (U).
      * <p>
-     * The function uses tail recursion to perform the fold operation efficiently. It first reverses the
-     * list using the reverse function, and then calls the foldRightTailRec function with the reversed list,
-     * the initial value, and the binary operator function. The result of the fold operation is obtained by
-     * calling the eval method on the returned value of foldRightTailRec.
-     * <p>
-     * In summary, this code snippet provides a generic implementation of a right-to-left fold operation on a list.
+     * The list is walked backwards with a list iterator, so neither a reversed copy of the list nor
+     * stack frames proportional to its size are needed.
      *
      * @param ts       the list to be folded
      * @param identity the initial value of the fold operation
@@ -177,32 +158,159 @@ public class CollectionUtilities {
      * @return the result of folding the elements of the list from right to left using the binary operator function
      */
     public static <T, U> U foldRight(final List<T> ts, final U identity, final Function<T, Function<U, U>> f) {
-        return foldRightTailRec(identity, reverse(ts), f).eval();
+        U acc = identity;
+        final ListIterator<T> it = ts.listIterator(ts.size());
+        while (it.hasPrevious()) {
+            acc = f.apply(it.previous()).apply(acc);
+        }
+        return acc;
     }
 
     /**
-     * A recursive tail-call optimized function that performs a right fold operation on a list.
-     * This code snippet defines a recursive function called foldRightTailRec that performs a right fold
-     * operation on a list. The function takes an initial accumulator value, a list of elements to fold,
-     * and a function to apply to each element. It returns the final result of folding the list from right to left.
-     * The function is tail-call optimized, meaning it uses tail recursion to optimize memory usage.
-     * The function is generic and can work with any type of elements in the list and any type of
-     * accumulator and return value.
+     * Folds a non empty list from the left, using its first element as the initial value.
      *
-     * @param acc the initial accumulator value
-     * @param ts  the list of elements to fold
-     * @param f   the function to apply to each element in the list
-     * @param <T> the type of elements in the list
-     * @param <U> the type of the accumulator and return value
-     * @return the final result of folding the list from right to left
+     * @param ts  the list to be reduced
+     * @param f   the function that combines the current accumulated value with the next element of the list
+     * @param <T> the type of the elements in the list
+     * @return the result of the reduction
+     * @throws IllegalStateException if the list is empty
      */
-    private static <T, U> TailCall<U> foldRightTailRec(final U acc, final List<T> ts, final Function<T, Function<U, U>> f) {
-        return
-                ts.isEmpty()
-                        ? ret(acc)
-                        : sus(() -> foldRightTailRec(f.apply(head(ts)).apply(acc), tail(ts), f));
+    public static <T> T reduce(final List<T> ts, final Function<T, Function<T, T>> f) {
+        final Iterator<T> it = ts.iterator();
+        if (!it.hasNext()) {
+            throw new IllegalStateException("Reduce of Empty list");
+        }
+        T acc = it.next();
+        while (it.hasNext()) {
+            acc = f.apply(acc).apply(it.next());
+        }
+        return acc;
     }
 
+    /**
+     * Returns all the intermediate results of a left fold, starting with the identity.
+     * For a list of n elements the result has n + 1 elements, the last one being the result of {@link #foldLeft}.
+     *
+     * @param ts       the list to be scanned
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the current accumulated value with the next element of the list
+     * @param <T>      the type of the elements in the list
+     * @param <U>      the type of the accumulated values
+     * @return the list of accumulated values
+     */
+    public static <T, U> List<U> scanLeft(final List<T> ts, final U identity, final Function<U, Function<T, U>> f) {
+        final List<U> acc = new ArrayList<>(ts.size() + 1);
+        U u = identity;
+        acc.add(u);
+        for (final T t : ts) {
+            u = f.apply(u).apply(t);
+            acc.add(u);
+        }
+        return list(acc);
+    }
+
+    /**
+     * Returns all the intermediate results of a right fold, ending with the identity.
+     * For a list of n elements the result has n + 1 elements, the first one being the result of {@link #foldRight}.
+     *
+     * @param ts       the list to be scanned
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the next element of the list with the current accumulated value
+     * @param <T>      the type of the elements in the list
+     * @param <U>      the type of the accumulated values
+     * @return the list of accumulated values
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, U> List<U> scanRight(final List<T> ts, final U identity, final Function<T, Function<U, U>> f) {
+        final Object[] acc = new Object[ts.size() + 1];
+        int i = ts.size();
+        U u = identity;
+        acc[i] = u;
+        final ListIterator<T> it = ts.listIterator(ts.size());
+        while (it.hasPrevious()) {
+            u = f.apply(it.previous()).apply(u);
+            acc[--i] = u;
+        }
+        return PersistentVector.of((U[]) acc);
+    }
+
+
+    /**
+     * Folds a list in parallel on the common fork-join pool.
+     * <p>
+     * The list is split into index ranges, each range is folded starting from the identity and the partial
+     * results are merged with the combiner. The result is the same as {@link #foldLeft} as long as the combiner
+     * is associative, the identity is neutral for it and {@code combiner(u)(f(identity)(t)) == f(u)(t)}.
+     * Lists without random access are copied into a persistent vector first.
+     *
+     * @param ts       the list to be folded
+     * @param identity the initial value of every partial fold
+     * @param f        the function that combines the accumulated value with the next element of the list
+     * @param combiner the associative function merging two partial results
+     * @param <T>      the type of the elements in the list
+     * @param <U>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public static <T, U> U parallelFoldLeft(final List<T> ts, final U identity, final Function<U, Function<T, U>> f,
+                                            final Function<U, Function<U, U>> combiner) {
+        final List<T> source = ts instanceof RandomAccess ? ts : vector(ts);
+        return source.size() <= FoldTask.SEQUENTIAL_THRESHOLD
+                ? foldLeft(source, identity, f)
+                : ForkJoinPool.commonPool().invoke(new FoldTask<>(source, 0, source.size(), identity, f, combiner));
+    }
+
+    /**
+     * Maps every element of a list and reduces the results in parallel on the common fork-join pool.
+     *
+     * @param ts       the list to be reduced
+     * @param mapper   the function applied to every element
+     * @param identity the neutral element of the combiner
+     * @param combiner the associative function merging two results
+     * @param <T>      the type of the elements in the list
+     * @param <U>      the type of the results
+     * @return the combination of all the mapped elements
+     */
+    public static <T, U> U mapReduce(final List<T> ts, final Function<T, U> mapper, final U identity,
+                                     final Function<U, Function<U, U>> combiner) {
+        return parallelFoldLeft(ts, identity, acc -> t -> combiner.apply(acc).apply(mapper.apply(t)), combiner);
+    }
+
+    private static final class FoldTask<T, U> extends RecursiveTask<U> {
+        private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+        private final List<T> ts;
+        private final int from;
+        private final int to;
+        private final U identity;
+        private final Function<U, Function<T, U>> f;
+        private final Function<U, Function<U, U>> combiner;
+
+        private FoldTask(final List<T> ts, final int from, final int to, final U identity,
+                         final Function<U, Function<T, U>> f, final Function<U, Function<U, U>> combiner) {
+            this.ts = ts;
+            this.from = from;
+            this.to = to;
+            this.identity = identity;
+            this.f = f;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected U compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                U acc = identity;
+                for (int i = from; i < to; i++) {
+                    acc = f.apply(acc).apply(ts.get(i));
+                }
+                return acc;
+            }
+            final int mid = (from + to) >>> 1;
+            final FoldTask<T, U> left = new FoldTask<>(ts, from, mid, identity, f, combiner);
+            left.fork();
+            final U right = new FoldTask<>(ts, mid, to, identity, f, combiner).compute();
+            return combiner.apply(left.join()).apply(right);
+        }
+    }
 
     /**
      * Reverses the given list.
@@ -221,37 +329,33 @@ public class CollectionUtilities {
 
     /**
      * Appends an element to a list and returns a new list with the element added.
-     * This code snippet defines a method called append that takes a list and an element as input.
-     * It creates a copy of the list, adds the element to the copy, and returns the new list with the element added.
-     * The returned list is unmodifiable, meaning that its contents cannot be changed.
+     * The returned list is a persistent vector sharing its structure with the input list, so only the
+     * last block of elements is copied. The returned list is unmodifiable, meaning that its contents cannot be changed.
      *
      * @param list the list to append to
      * @param t    the element to append
      * @return a new list with the element added
      */
     public static <T> List<T> append(final List<T> list, final T t) {
-        final List<T> ts = copy(list);
-        ts.add(t);
-        return Collections.unmodifiableList(ts);
+        return vector(list).append(t);
     }
 
     /**
      * Prepend an element to a list.
-     * This code snippet defines a method called prepend that takes an element t and a
-     * list as parameters. It returns a new list with the element t prepended to the original list.
-     * The method uses a foldLeft function to iterate over the original list and append each element to a
-     * new list, starting with the element t. The method is generic, meaning it can work with any type of elements.
+     * The returned list is a persistent vector sharing its structure with the input list: the element is written
+     * into a free slot in front of the existing ones, copying only the path to that slot.
      *
      * @param t    the element to prepend
      * @param list the list to prepend to
      * @return the new list with the element prepended
      */
     public static <T> List<T> prepend(final T t, final List<T> list) {
-        return foldLeft(list, list(t), x -> y -> append(x, y));
+        return vector(list).prepend(t);
     }
 
     /**
      * Generates a list of integers in a given range.
+     * Use {@link IntList#range(int, int)} when the values should not be boxed.
      *
      * @param start the starting value of the range
      * @param end   the ending value of the range
@@ -294,32 +398,26 @@ public class CollectionUtilities {
 
     /**
      * Generates a list of pairs by combining the elements of two lists.
-     * This code snippet defines a zip method that generates a list of pairs by combining the elements of
-     * two input lists. The method takes in two lists, ts and us, and returns a list of pairs where each
-     * pair contains an element from the first list and an element from the second list. The zip method
-     * uses the IntStream.range method to iterate over the indices of the two lists and creates pairs by retrieving
-     * the corresponding elements at each index using the get method. Finally, the method converts the stream of
-     * pairs to a list using the toList method.
+     * The result holds the elements of each side in an array, see {@link PairList}: no pair is created until one is
+     * read with {@link java.util.List#get(int)}, and {@link PairList#first(int)}, {@link PairList#second(int)} and
+     * {@link PairList#foldLeft} read the sides without creating any. Elements beyond the length of the shorter list
+     * are dropped.
      *
      * @param ts the first list of elements
      * @param us the second list of elements
      * @return a list of pairs, where each pair contains an element from the first list and an element from the second list
      */
-    public static <T, U> List<Pair<T, U>> zip(final List<T> ts, final List<U> us) {
-        final int tSize = ts.size();
-        final int uSize = us.size();
-        return
-                IntStream.range(0, Math.min(tSize, uSize))
-                        .mapToObj(i -> new Pair<>(ts.get(i), us.get(i)))
-                        .toList();
+    public static <T, U> PairList<T, U> zip(final List<T> ts, final List<U> us) {
+        return PairList.zip(ts, us);
     }
 
     /**
      * Generates a list of pairs, where each pair consists of an element from the input list
      * and its corresponding index.
-     * This code snippet defines a zipWithIndex method that generates a list of pairs, where each pair
-     * consists of an element from the input list and its corresponding index. The method takes in a list of elements
-     * ts and returns a list of pairs where each pair consists of an element from the input list and its corresponding index.
+     * The result is a live view of the input list, not a copy: a pair, and the boxed index in it, are only created
+     * when an element is read, and changes to a mutable input show through the view. The view is
+     * {@link RandomAccess} only if the input is. Use {@link #foldLeftWithIndex} or {@link #forEachWithIndex} to walk
+     * a list with unboxed indices.
      *
      * @param ts  the input list of elements
      * @param <T> the type of elements in the list
@@ -327,9 +425,95 @@ public class CollectionUtilities {
      * and its corresponding index
      */
     public static <T> List<Pair<T, Integer>> zipWithIndex(final List<T> ts) {
-        return
-                IntStream.range(0, ts.size())
-                        .mapToObj(i -> new Pair<>(ts.get(i), i))
-                        .toList();
+        return ts instanceof RandomAccess
+                ? new RandomAccessIndexedView<>(ts)
+                : new IndexedView<>(ts);
+    }
+
+    /**
+     * Combines an accumulator with an element of a list and its index.
+     *
+     * @param <U> the type of the accumulated value
+     * @param <T> the type of the elements in the list
+     */
+    @FunctionalInterface
+    public interface IndexedFolder<U, T> {
+        U apply(U acc, T t, int index);
+    }
+
+    /**
+     * Folds a list from the left, passing the index of every element along with it.
+     *
+     * @param ts       the list to be folded
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the accumulated value with the next element and its index
+     * @param <T>      the type of the elements in the list
+     * @param <U>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public static <T, U> U foldLeftWithIndex(final List<T> ts, final U identity, final IndexedFolder<U, ? super T> f) {
+        U acc = identity;
+        int index = 0;
+        for (final T t : ts) {
+            acc = f.apply(acc, t, index++);
+        }
+        return acc;
+    }
+
+    /**
+     * Passes every element of a list and its index to the action, in order.
+     *
+     * @param ts     the list
+     * @param action the action
+     * @param <T>    the type of the elements in the list
+     */
+    public static <T> void forEachWithIndex(final List<T> ts, final ObjIntConsumer<? super T> action) {
+        int index = 0;
+        for (final T t : ts) {
+            action.accept(t, index++);
+        }
+    }
+
+    private static class IndexedView<T> extends AbstractList<Pair<T, Integer>> {
+        private final List<T> ts;
+
+        private IndexedView(final List<T> ts) {
+            this.ts = ts;
+        }
+
+        @Override
+        public Pair<T, Integer> get(final int index) {
+            return new Pair<>(ts.get(index), index);
+        }
+
+        @Override
+        public int size() {
+            return ts.size();
+        }
+
+        @Override
+        public Iterator<Pair<T, Integer>> iterator() {
+            final Iterator<T> it = ts.iterator();
+            return new Iterator<>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Pair<T, Integer> next() {
+                    return new Pair<>(it.next(), index++);
+                }
+            };
+        }
+    }
+
+    private static final class RandomAccessIndexedView<T> extends IndexedView<T> implements RandomAccess {
+
+        private RandomAccessIndexedView(final List<T> ts) {
+            super(ts);
+        }
     }
 }
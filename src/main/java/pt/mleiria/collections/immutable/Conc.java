@@ -0,0 +1,373 @@
+package pt.mleiria.collections.immutable;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * An immutable conc-tree: a balanced binary tree whose leaves hold chunks of elements.
+ * <p>
+ * The levels of the two children of any node differ by at most one, so the tree can always be split in two
+ * halves of comparable size. This is what {@link #parallelFoldLeft} and {@link #mapReduce} rely on to spread
+ * the work over the common {@link ForkJoinPool}. Two trees are concatenated in time proportional to the
+ * difference of their heights, sharing both of them.
+ * <p>
+ * The tree is exposed as a read-only {@link java.util.List} with logarithmic time indexed access.
+ *
+ * @param <A> the type of elements in the tree
+ */
+public abstract class Conc<A> extends AbstractList<A> implements RandomAccess {
+
+    private static final int CHUNK_SIZE = 128;
+
+    /**
+     * Below this number of elements a fold is not split any further.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    @SuppressWarnings("rawtypes")
+    private static final Conc EMPTY = new Empty();
+
+    abstract int level();
+
+    /**
+     * Folds the tree from the left, sequentially.
+     *
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the accumulated value with the next element
+     * @param <U>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public abstract <U> U foldLeft(U identity, Function<U, Function<A, U>> f);
+
+    private Conc() {
+    }
+
+    private static final class Empty<A> extends Conc<A> {
+
+        @Override
+        int level() {
+            return 0;
+        }
+
+        @Override
+        public <U> U foldLeft(U identity, Function<U, Function<A, U>> f) {
+            return identity;
+        }
+
+        @Override
+        public A get(int index) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size 0");
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+
+    private static final class Leaf<A> extends Conc<A> {
+        private final Object[] elements;
+
+        private Leaf(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        int level() {
+            return 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <U> U foldLeft(U identity, Function<U, Function<A, U>> f) {
+            U result = identity;
+            for (final Object element : elements) {
+                result = f.apply(result).apply((A) element);
+            }
+            return result;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public A get(int index) {
+            return (A) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+    }
+
+    private static final class Node<A> extends Conc<A> {
+        private final Conc<A> left;
+        private final Conc<A> right;
+        private final int level;
+        private final int size;
+
+        private Node(Conc<A> left, Conc<A> right) {
+            this.left = left;
+            this.right = right;
+            this.level = 1 + Math.max(left.level(), right.level());
+            this.size = left.size() + right.size();
+        }
+
+        @Override
+        int level() {
+            return level;
+        }
+
+        @Override
+        public <U> U foldLeft(U identity, Function<U, Function<A, U>> f) {
+            return right.foldLeft(left.foldLeft(identity, f), f);
+        }
+
+        @Override
+        public A get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+            }
+            Conc<A> node = this;
+            int i = index;
+            while (node instanceof Node<A> n) {
+                if (i < n.left.size()) {
+                    node = n.left;
+                } else {
+                    i -= n.left.size();
+                    node = n.right;
+                }
+            }
+            return node.get(i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Returns the empty tree.
+     *
+     * @param <A> the type of elements in the tree
+     * @return the empty tree
+     */
+    @SuppressWarnings("unchecked")
+    public static <A> Conc<A> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a balanced tree holding the given elements, in order.
+     *
+     * @param as  the elements of the tree
+     * @param <A> the type of elements in the tree
+     * @return a new tree containing the given elements
+     */
+    @SafeVarargs
+    public static <A> Conc<A> of(A... as) {
+        return wrap(as.clone());
+    }
+
+    /**
+     * Creates a balanced tree holding the elements of the given collection, in iteration order.
+     * Conc trees are returned as they are, since they can not be modified.
+     *
+     * @param as  the source collection
+     * @param <A> the type of elements in the tree
+     * @return a tree containing the elements of the collection
+     */
+    @SuppressWarnings("unchecked")
+    public static <A> Conc<A> from(Collection<? extends A> as) {
+        return as instanceof Conc
+                ? (Conc<A>) as
+                : wrap(as.toArray());
+    }
+
+    /**
+     * Builds a balanced tree over an array that is not shared with anyone else.
+     */
+    static <A> Conc<A> wrap(Object[] elements) {
+        return elements.length == 0
+                ? empty()
+                : build(elements, 0, (elements.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    private static <A> Conc<A> build(Object[] elements, int fromChunk, int toChunk) {
+        if (toChunk - fromChunk == 1) {
+            final int from = fromChunk * CHUNK_SIZE;
+            return new Leaf<>(Arrays.copyOfRange(elements, from, Math.min(from + CHUNK_SIZE, elements.length)));
+        }
+        final int mid = (fromChunk + toChunk) >>> 1;
+        return new Node<>(build(elements, fromChunk, mid), build(elements, mid, toChunk));
+    }
+
+    /**
+     * Returns a builder filling the leaves of a tree in place, so building never copies the elements.
+     *
+     * @param <A> the type of elements in the tree
+     * @return a new builder
+     */
+    public static <A> Builder<A> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Concatenates two trees, keeping the result balanced.
+     *
+     * @param xs  the first tree
+     * @param ys  the tree appended to the first one
+     * @param <A> the type of elements in the trees
+     * @return a tree with the elements of xs followed by the elements of ys
+     */
+    public static <A> Conc<A> concat(Conc<A> xs, Conc<A> ys) {
+        return xs.isEmpty()
+                ? ys
+                : ys.isEmpty()
+                ? xs
+                : link(xs, ys);
+    }
+
+    private static <A> Conc<A> link(Conc<A> xs, Conc<A> ys) {
+        final int diff = ys.level() - xs.level();
+        if (Math.abs(diff) <= 1) {
+            return new Node<>(xs, ys);
+        }
+        if (diff < -1) {
+            final Node<A> x = (Node<A>) xs;
+            if (x.left.level() >= x.right.level()) {
+                return new Node<>(x.left, link(x.right, ys));
+            }
+            final Node<A> xr = (Node<A>) x.right;
+            final Conc<A> nrr = link(xr.right, ys);
+            return nrr.level() == xs.level() - 3
+                    ? new Node<>(x.left, new Node<>(xr.left, nrr))
+                    : new Node<>(new Node<>(x.left, xr.left), nrr);
+        }
+        final Node<A> y = (Node<A>) ys;
+        if (y.right.level() >= y.left.level()) {
+            return new Node<>(link(xs, y.left), y.right);
+        }
+        final Node<A> yl = (Node<A>) y.left;
+        final Conc<A> nll = link(xs, yl.left);
+        return nll.level() == ys.level() - 3
+                ? new Node<>(new Node<>(nll, yl.right), y.right)
+                : new Node<>(nll, new Node<>(yl.right, y.right));
+    }
+
+    private static <A> Conc<A> balance(java.util.List<Leaf<A>> leaves, int from, int to) {
+        if (to - from == 1) {
+            return leaves.get(from);
+        }
+        final int mid = (from + to) >>> 1;
+        return new Node<>(balance(leaves, from, mid), balance(leaves, mid, to));
+    }
+
+    /**
+     * Returns a new tree with the given element added at the end.
+     *
+     * @param a the element to append
+     * @return a new tree ending with the element
+     */
+    public Conc<A> append(A a) {
+        return concat(this, new Leaf<>(new Object[]{a}));
+    }
+
+    /**
+     * Folds the tree in parallel on the common fork-join pool.
+     * <p>
+     * Each half of the tree is folded separately starting from the identity, and the partial results are merged
+     * with the combiner. The result is the same as a sequential fold as long as the combiner is associative,
+     * the identity is neutral for it and {@code combiner(u)(f(identity)(a)) == f(u)(a)}.
+     *
+     * @param identity the initial value of every partial fold
+     * @param f        the function that combines the accumulated value with the next element
+     * @param combiner the associative function merging two partial results
+     * @param <U>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public <U> U parallelFoldLeft(U identity, Function<U, Function<A, U>> f, Function<U, Function<U, U>> combiner) {
+        return size() <= SEQUENTIAL_THRESHOLD
+                ? foldLeft(identity, f)
+                : ForkJoinPool.commonPool().invoke(new FoldTask<>(this, identity, f, combiner));
+    }
+
+    /**
+     * Maps every element and reduces the results in parallel on the common fork-join pool.
+     *
+     * @param mapper   the function applied to every element
+     * @param identity the neutral element of the combiner
+     * @param combiner the associative function merging two results
+     * @param <B>      the type of the results
+     * @return the combination of all the mapped elements
+     */
+    public <B> B mapReduce(Function<A, B> mapper, B identity, Function<B, Function<B, B>> combiner) {
+        return parallelFoldLeft(identity, acc -> a -> combiner.apply(acc).apply(mapper.apply(a)), combiner);
+    }
+
+    private static final class FoldTask<A, U> extends RecursiveTask<U> {
+        private final Conc<A> conc;
+        private final U identity;
+        private final Function<U, Function<A, U>> f;
+        private final Function<U, Function<U, U>> combiner;
+
+        private FoldTask(Conc<A> conc, U identity, Function<U, Function<A, U>> f,
+                         Function<U, Function<U, U>> combiner) {
+            this.conc = conc;
+            this.identity = identity;
+            this.f = f;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected U compute() {
+            if (conc.size() <= SEQUENTIAL_THRESHOLD || !(conc instanceof Node<A> node)) {
+                return conc.foldLeft(identity, f);
+            }
+            final FoldTask<A, U> left = new FoldTask<>(node.left, identity, f, combiner);
+            left.fork();
+            final U right = new FoldTask<>(node.right, identity, f, combiner).compute();
+            return combiner.apply(left.join()).apply(right);
+        }
+    }
+
+    /**
+     * Accumulates elements into leaf sized chunks, which become the leaves of a balanced tree when it is built.
+     *
+     * @param <A> the type of elements in the tree
+     */
+    public static final class Builder<A> {
+        private final java.util.List<Leaf<A>> leaves = new ArrayList<>();
+        private Object[] chunk = new Object[CHUNK_SIZE];
+        private int position;
+
+        private Builder() {
+        }
+
+        public Builder<A> add(A a) {
+            if (position == CHUNK_SIZE) {
+                leaves.add(new Leaf<>(chunk));
+                chunk = new Object[CHUNK_SIZE];
+                position = 0;
+            }
+            chunk[position++] = a;
+            return this;
+        }
+
+        public Conc<A> build() {
+            final java.util.List<Leaf<A>> all = new ArrayList<>(leaves);
+            if (position > 0) {
+                all.add(new Leaf<>(Arrays.copyOf(chunk, position)));
+            }
+            return all.isEmpty()
+                    ? empty()
+                    : balance(all, 0, all.size());
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package pt.mleiria.collections.immutable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleFunction;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.stream.DoubleStream;
+
+/**
+ * An immutable list of {@code double} values backed by a slice of a primitive array, so its elements are never boxed.
+ * <p>
+ * {@link #tail()} and {@link #drop(int)} share the backing array and run in constant time; every other
+ * operation producing a list writes a new array.
+ */
+public final class DoubleList {
+
+    private static final DoubleList EMPTY = new DoubleList(new double[0], 0, 0);
+
+    private final double[] values;
+    private final int offset;
+    private final int length;
+
+    private DoubleList(final double[] values, final int offset, final int length) {
+        this.values = values;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Returns the empty list.
+     *
+     * @return the empty list
+     */
+    public static DoubleList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a list holding a copy of the given values.
+     *
+     * @param values the values of the list
+     * @return a new list containing the given values
+     */
+    public static DoubleList of(final double... values) {
+        return values.length == 0
+                ? EMPTY
+                : new DoubleList(values.clone(), 0, values.length);
+    }
+
+    /**
+     * Extracts one column of a dataset loaded as rows, such as the result of {@code FileUtilities.load},
+     * without boxing its values.
+     *
+     * @param rows   the rows of the dataset
+     * @param column the index of the column to extract
+     * @return the values of the column, in row order
+     */
+    public static DoubleList column(final List<double[]> rows, final int column) {
+        final double[] result = new double[rows.size()];
+        int i = 0;
+        for (final double[] row : rows) {
+            result[i++] = row[column];
+        }
+        return new DoubleList(result, 0, result.length);
+    }
+
+    /**
+     * Generates a list by repeatedly applying the given function to the seed value,
+     * until the predicate returns false.
+     *
+     * @param seed the initial value to start the list generation
+     * @param f    the function that transforms the seed value to the next value
+     * @param p    the predicate that determines when to stop the generation
+     * @return the generated list
+     */
+    public static DoubleList unfold(final double seed, final DoubleUnaryOperator f, final DoublePredicate p) {
+        final Builder builder = builder();
+        for (double x = seed; p.test(x); x = f.applyAsDouble(x)) {
+            builder.add(x);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a builder accumulating values into chunks before the list is created.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public double head() {
+        if (length == 0) {
+            throw new IllegalStateException("head called on empty list");
+        }
+        return values[offset];
+    }
+
+    public DoubleList tail() {
+        if (length == 0) {
+            throw new IllegalStateException("tail called on empty list");
+        }
+        return drop(1);
+    }
+
+    public DoubleList drop(final int n) {
+        return n <= 0
+                ? this
+                : n >= length
+                ? EMPTY
+                : new DoubleList(values, offset + n, length - n);
+    }
+
+    public double get(final int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return values[offset + index];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Folds the list from the left without boxing its elements.
+     *
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the accumulated value with the next element
+     * @param <U>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public <U> U foldLeft(final U identity, final Function<U, DoubleFunction<U>> f) {
+        U acc = identity;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            acc = f.apply(acc).apply(values[i]);
+        }
+        return acc;
+    }
+
+    /**
+     * Folds the list from the left into a primitive accumulator.
+     *
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the accumulated value with the next element
+     * @return the result of the fold operation
+     */
+    public double foldLeft(final double identity, final DoubleBinaryOperator f) {
+        double acc = identity;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            acc = f.applyAsDouble(acc, values[i]);
+        }
+        return acc;
+    }
+
+    /**
+     * Folds the list from the right without boxing its elements.
+     *
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the next element with the accumulated value
+     * @param <U>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public <U> U foldRight(final U identity, final DoubleFunction<Function<U, U>> f) {
+        U acc = identity;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            acc = f.apply(values[i]).apply(acc);
+        }
+        return acc;
+    }
+
+    public double sum() {
+        double acc = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            acc += values[i];
+        }
+        return acc;
+    }
+
+    public DoubleList map(final DoubleUnaryOperator f) {
+        final double[] result = new double[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = f.applyAsDouble(values[offset + i]);
+        }
+        return new DoubleList(result, 0, length);
+    }
+
+    /**
+     * Maps the elements to objects, returning a persistent vector.
+     *
+     * @param f   the function applied to every element
+     * @param <U> the type of the resulting elements
+     * @return the list of mapped elements
+     */
+    public <U> PersistentVector<U> mapToObj(final DoubleFunction<U> f) {
+        return PersistentVector.from(stream().mapToObj(f).toList());
+    }
+
+    public DoubleList filter(final DoublePredicate p) {
+        final Builder builder = builder();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (p.test(values[i])) {
+                builder.add(values[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Combines this list with another one element by element. The result is as long as the shortest list.
+     *
+     * @param other the list to zip with
+     * @param f     the function combining the elements at the same index
+     * @return the list of combined elements
+     */
+    public DoubleList zip(final DoubleList other, final DoubleBinaryOperator f) {
+        final int n = Math.min(length, other.length);
+        final double[] result = new double[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = f.applyAsDouble(values[offset + i], other.values[other.offset + i]);
+        }
+        return new DoubleList(result, 0, n);
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOfRange(values, offset, offset + length);
+    }
+
+    public DoubleStream stream() {
+        return Arrays.stream(values, offset, offset + length);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DoubleList other) || other.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Double.compare(values[offset + i], other.values[other.offset + i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            result = 31 * result + Double.hashCode(values[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Accumulates values into fixed size chunks, so growing never copies what was already added.
+     * The chunks are concatenated once when the list is built.
+     */
+    public static final class Builder {
+
+        private static final int CHUNK_SIZE = 4096;
+
+        private double[][] chunks = new double[4][];
+        private double[] current = new double[CHUNK_SIZE];
+        private int full;
+        private int position;
+
+        private Builder() {
+        }
+
+        public Builder add(final double value) {
+            if (position == CHUNK_SIZE) {
+                if (full == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, full * 2);
+                }
+                chunks[full++] = current;
+                current = new double[CHUNK_SIZE];
+                position = 0;
+            }
+            current[position++] = value;
+            return this;
+        }
+
+        public DoubleList build() {
+            final int size = full * CHUNK_SIZE + position;
+            if (size == 0) {
+                return EMPTY;
+            }
+            final double[] result = new double[size];
+            for (int i = 0; i < full; i++) {
+                System.arraycopy(chunks[i], 0, result, i * CHUNK_SIZE, CHUNK_SIZE);
+            }
+            System.arraycopy(current, 0, result, full * CHUNK_SIZE, position);
+            return new DoubleList(result, 0, size);
+        }
+    }
+}
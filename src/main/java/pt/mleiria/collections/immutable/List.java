@@ -2,6 +2,7 @@ package pt.mleiria.collections.immutable;
 
 import java.util.function.Function;
 
+import static pt.mleiria.collections.immutable.TailCall.onStack;
 import static pt.mleiria.collections.immutable.TailCall.ret;
 import static pt.mleiria.collections.immutable.TailCall.sus;
 
@@ -130,25 +131,21 @@ public abstract class List<A> {
         }
 
         public <B> B foldLeft(B identity, Function<B, Function<A, B>> f) {
-            return foldLeft(this, identity, f).eval();
+            return foldLeft(this, identity, f, 0).eval();
         }
 
 
-        private <B> TailCall<B> foldLeft(List<A> list, B acc, Function<B, Function<A, B>> f) {
+        private <B> TailCall<B> foldLeft(List<A> list, B acc, Function<B, Function<A, B>> f, int depth) {
             return list.isEmpty()
                     ? ret(acc)
-                    : sus(() -> foldLeft(list.tail(), f.apply(acc).apply(list.head()), f));
+                    : onStack(depth)
+                    ? foldLeft(list.tail(), f.apply(acc).apply(list.head()), f, depth + 1)
+                    : sus(() -> foldLeft(list.tail(), f.apply(acc).apply(list.head()), f, 0));
         }
 
         @Override
         public List<A> reverse() {
-            return reverse(list(), this).eval();
-        }
-
-        private TailCall<List<A>> reverse(List<A> acc, List<A> list) {
-            return list.isEmpty()
-                    ? ret(acc)
-                    : sus(() -> reverse(new Cons<>(list.head(), acc), list.tail()));
+            return foldLeft(list(), acc -> acc::cons);
         }
 
         @Override
@@ -207,20 +204,105 @@ public abstract class List<A> {
     }
 
     /**
-     * Inefficient
+     * Folds a list from the right.
      *
-     * @param list
-     * @param n
-     * @param f
-     * @param <A>
-     * @param <B>
-     * @return
+     * @param list the list to be folded
+     * @param n    the initial value of the fold operation
+     * @param f    the function combining an element with the accumulated value
+     * @param <A>  the type of elements in the list
+     * @param <B>  the type of the accumulated value
+     * @return the result of the fold operation
+     * @see #foldRight(Object, Function)
      */
     public static <A, B> B foldRight(List<A> list, B n, Function<A, Function<B, B>> f) {
-        return
-                list.isEmpty()
-                        ? n
-                        : f.apply(list.head()).apply(foldRight(list.tail(), n, f));
+        return list.foldRight(n, f);
+    }
+
+    /**
+     * Folds the list from the right.
+     * <p>
+     * The elements are first copied into an array, which is then walked backwards, so the fold runs in
+     * linear time and constant call stack space whatever the length of the list.
+     *
+     * @param identity the initial value of the fold operation
+     * @param f        the function combining an element with the accumulated value
+     * @param <B>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    @SuppressWarnings("unchecked")
+    public <B> B foldRight(B identity, Function<A, Function<B, B>> f) {
+        final Object[] buffer = toArray();
+        B acc = identity;
+        for (int i = buffer.length - 1; i >= 0; i--) {
+            acc = f.apply((A) buffer[i]).apply(acc);
+        }
+        return acc;
+    }
+
+    /**
+     * Copies the list into a balanced conc-tree, which can be folded in parallel.
+     *
+     * @return a conc-tree with the elements of the list, in the same order
+     */
+    public Conc<A> toConc() {
+        return Conc.wrap(toArray());
+    }
+
+    private Object[] toArray() {
+        int n = 0;
+        for (List<A> l = this; !l.isEmpty(); l = l.tail()) {
+            n++;
+        }
+        final Object[] buffer = new Object[n];
+        int i = 0;
+        for (List<A> l = this; !l.isEmpty(); l = l.tail()) {
+            buffer[i++] = l.head();
+        }
+        return buffer;
+    }
+
+    /**
+     * Applies a function to every element of the list.
+     *
+     * @param f   the function to apply
+     * @param <B> the type of elements in the resulting list
+     * @return a new list with the results, in the same order
+     */
+    public <B> List<B> map(Function<A, B> f) {
+        return foldRight(list(), h -> t -> new Cons<>(f.apply(h), t));
+    }
+
+    /**
+     * Keeps the elements satisfying a predicate.
+     *
+     * @param f the predicate
+     * @return a new list with the elements satisfying the predicate, in the same order
+     */
+    public List<A> filter(Function<A, Boolean> f) {
+        return foldRight(list(), h -> t -> f.apply(h) ? new Cons<>(h, t) : t);
+    }
+
+    /**
+     * Applies a function returning a list to every element and concatenates the results.
+     *
+     * @param f   the function to apply
+     * @param <B> the type of elements in the resulting list
+     * @return the concatenation of the lists returned by f
+     */
+    public <B> List<B> flatMap(Function<A, List<B>> f) {
+        return foldRight(list(), h -> t -> concat(f.apply(h), t));
+    }
+
+    /**
+     * Concatenates two lists. Only the first list is copied, the second one is shared.
+     *
+     * @param list1 the first list
+     * @param list2 the list appended to the first one
+     * @param <A>   the type of elements in the lists
+     * @return a list with the elements of list1 followed by the elements of list2
+     */
+    public static <A> List<A> concat(List<A> list1, List<A> list2) {
+        return list1.foldRight(list2, x -> y -> new Cons<>(x, y));
     }
 
 
@@ -0,0 +1,244 @@
+package pt.mleiria.collections.immutable;
+
+import pt.mleiria.dto.Pair;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable list of pairs stored as two parallel arrays, one per side, instead of one {@link Pair} per element.
+ * <p>
+ * The sides of the i-th pair are read with {@link #first(int)} and {@link #second(int)}, and {@link #forEachPair}
+ * and {@link #foldLeft} walk both arrays together, so zipping two columns of n rows allocates two arrays of n
+ * references and nothing per row. The list is also a read-only {@link java.util.List} of pairs for code expecting
+ * one; {@link #get(int)} then creates the pair it returns.
+ *
+ * @param <X> the type of the first elements
+ * @param <Y> the type of the second elements
+ */
+public final class PairList<X, Y> extends AbstractList<Pair<X, Y>> implements RandomAccess {
+
+    private static final Object[] NONE = new Object[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final PairList EMPTY = new PairList<>(NONE, NONE, 0);
+
+    private final Object[] firsts;
+    private final Object[] seconds;
+    private final int size;
+
+    private PairList(final Object[] firsts, final Object[] seconds, final int size) {
+        this.firsts = firsts;
+        this.seconds = seconds;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty list.
+     *
+     * @param <X> the type of the first elements
+     * @param <Y> the type of the second elements
+     * @return the empty list
+     */
+    @SuppressWarnings("unchecked")
+    public static <X, Y> PairList<X, Y> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Pairs the elements of two lists by position, up to the length of the shorter one.
+     *
+     * @param xs  the first elements
+     * @param ys  the second elements
+     * @param <X> the type of the first elements
+     * @param <Y> the type of the second elements
+     * @return the list of pairs
+     */
+    public static <X, Y> PairList<X, Y> zip(final List<? extends X> xs, final List<? extends Y> ys) {
+        final int size = Math.min(xs.size(), ys.size());
+        if (size == 0) {
+            return empty();
+        }
+        final Object[] firsts = new Object[size];
+        final Object[] seconds = new Object[size];
+        final Iterator<? extends X> x = xs.iterator();
+        final Iterator<? extends Y> y = ys.iterator();
+        for (int i = 0; i < size; i++) {
+            firsts[i] = x.next();
+            seconds[i] = y.next();
+        }
+        return new PairList<>(firsts, seconds, size);
+    }
+
+    /**
+     * Returns a builder of lists of pairs.
+     *
+     * @param <X> the type of the first elements
+     * @param <Y> the type of the second elements
+     * @return a new builder
+     */
+    public static <X, Y> Builder<X, Y> builder() {
+        return new Builder<>();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index the position of the pair
+     * @return the first element of the pair
+     */
+    @SuppressWarnings("unchecked")
+    public X first(final int index) {
+        return (X) firsts[checkIndex(index)];
+    }
+
+    /**
+     * @param index the position of the pair
+     * @return the second element of the pair
+     */
+    @SuppressWarnings("unchecked")
+    public Y second(final int index) {
+        return (Y) seconds[checkIndex(index)];
+    }
+
+    /**
+     * Returns the pair at a position, created on every call. Prefer {@link #first} and {@link #second}.
+     */
+    @Override
+    public Pair<X, Y> get(final int index) {
+        return new Pair<>(first(index), second(index));
+    }
+
+    /**
+     * @return a read-only view of the first elements
+     */
+    public List<X> firsts() {
+        return view(firsts);
+    }
+
+    /**
+     * @return a read-only view of the second elements
+     */
+    public List<Y> seconds() {
+        return view(seconds);
+    }
+
+    /**
+     * Passes the sides of every pair to the action, in order.
+     *
+     * @param action the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachPair(final BiConsumer<? super X, ? super Y> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept((X) firsts[i], (Y) seconds[i]);
+        }
+    }
+
+    /**
+     * Combines an accumulator with the sides of every pair, from the first pair to the last.
+     *
+     * @param <U> the type of the accumulated value
+     * @param <X> the type of the first elements
+     * @param <Y> the type of the second elements
+     */
+    @FunctionalInterface
+    public interface Folder<U, X, Y> {
+        U apply(U acc, X x, Y y);
+    }
+
+    /**
+     * Folds the pairs from the left without creating them.
+     *
+     * @param identity the initial value
+     * @param f        the function combining the accumulated value with the sides of the next pair
+     * @param <U>      the type of the accumulated value
+     * @return the result of the fold
+     */
+    @SuppressWarnings("unchecked")
+    public <U> U foldLeft(final U identity, final Folder<U, ? super X, ? super Y> f) {
+        U acc = identity;
+        for (int i = 0; i < size; i++) {
+            acc = f.apply(acc, (X) firsts[i], (Y) seconds[i]);
+        }
+        return acc;
+    }
+
+    private int checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    private <A> List<A> view(final Object[] values) {
+        return new ArrayView<>(values, size);
+    }
+
+    private static final class ArrayView<A> extends AbstractList<A> implements RandomAccess {
+        private final Object[] values;
+        private final int size;
+
+        private ArrayView(final Object[] values, final int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public A get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+            }
+            return (A) values[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Accumulates pairs into two growing arrays. The arrays are trimmed when the list is built.
+     *
+     * @param <X> the type of the first elements
+     * @param <Y> the type of the second elements
+     */
+    public static final class Builder<X, Y> {
+        private Object[] firsts = new Object[16];
+        private Object[] seconds = new Object[16];
+        private int size;
+
+        private Builder() {
+        }
+
+        public Builder<X, Y> add(final X x, final Y y) {
+            if (size == firsts.length) {
+                firsts = Arrays.copyOf(firsts, size * 2);
+                seconds = Arrays.copyOf(seconds, size * 2);
+            }
+            firsts[size] = x;
+            seconds[size++] = y;
+            return this;
+        }
+
+        public PairList<X, Y> build() {
+            return size == 0
+                    ? empty()
+                    : new PairList<>(Arrays.copyOf(firsts, size), Arrays.copyOf(seconds, size), size);
+        }
+    }
+}
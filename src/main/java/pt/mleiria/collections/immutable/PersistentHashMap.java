@@ -0,0 +1,633 @@
+package pt.mleiria.collections.immutable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable, persistent hash map backed by a hash array mapped trie.
+ * <p>
+ * The hash of a key is consumed five bits at a time, from the lowest, to pick one of 32 slots at each level of the
+ * trie. A node only stores its occupied slots: two bitmaps tell whether a slot holds an entry or a child node, and
+ * the entries and children are packed in arrays in slot order, the position of a slot being the number of bits set
+ * below it. Lookups therefore visit at most seven nodes, about log<sub>32</sub> n in practice, and
+ * {@link #with}/{@link #without} copy only the nodes on the path to the key, sharing the rest of the trie with the
+ * original map. Keys whose 32-bit hashes are equal end up together in a collision node at the bottom of the trie.
+ * <p>
+ * A {@link Builder} edits the nodes it created in place instead of copying the path to every key, which halves
+ * the cost of bulk loading; nodes shared with a map already built are still copied.
+ * For long, or int, keys without boxing see {@link PersistentLongMap}.
+ * <p>
+ * The map is exposed as a read-only {@link java.util.Map}: the mutators inherited from {@link AbstractMap} throw
+ * {@link UnsupportedOperationException}. Keys and values must not be null.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final Object NOT_FOUND = new Object();
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final Object[] NO_ENTRIES = new Object[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY =
+            new PersistentHashMap<>(new BitmapNode(null, 0, 0, NO_ENTRIES, NO_CHILDREN), 0);
+
+    private final BitmapNode root;
+    private final int size;
+
+    private PersistentHashMap(final BitmapNode root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a map holding the entries of the given map. Persistent hash maps are returned as they are, since they
+     * can not be modified.
+     *
+     * @param map the source map
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return a map with the same entries
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> from(final Map<? extends K, ? extends V> map) {
+        return map instanceof PersistentHashMap
+                ? (PersistentHashMap<K, V>) map
+                : PersistentHashMap.<K, V>builder().putAll(map).build();
+    }
+
+    /**
+     * Returns a builder of maps, starting empty.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return a new builder
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>(empty());
+    }
+
+    /**
+     * Returns a builder starting with the entries of this map, to apply a batch of changes without copying the
+     * trie once per change.
+     *
+     * @return a new builder
+     */
+    public Builder<K, V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(final Object key) {
+        final Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND
+                ? null
+                : (V) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(final Object key, final V defaultValue) {
+        final Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND
+                ? defaultValue
+                : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return root.find(0, hash(key), key) != NOT_FOUND;
+    }
+
+    /**
+     * Returns a map associating the key with the value, replacing any previous value of the key.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return a new map with the entry, or this map if the key is already bound to the same value
+     */
+    public PersistentHashMap<K, V> with(final K key, final V value) {
+        final Change change = new Change();
+        final BitmapNode newRoot = root.put(null, 0, hash(key), key, Objects.requireNonNull(value), change);
+        return newRoot == root
+                ? this
+                : new PersistentHashMap<>(newRoot, size + change.delta);
+    }
+
+    /**
+     * Returns a map without the key.
+     *
+     * @param key the key
+     * @return a new map without the key, or this map if the key is absent
+     */
+    public PersistentHashMap<K, V> without(final Object key) {
+        final Change change = new Change();
+        final BitmapNode newRoot = (BitmapNode) root.remove(null, 0, hash(key), key, change);
+        return newRoot == root
+                ? this
+                : new PersistentHashMap<>(newRoot, size + change.delta);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(final Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The change in size made by an update.
+     */
+    private static final class Change {
+        int delta;
+    }
+
+    /**
+     * Builds maps by editing a trie in place. A builder may go on being used after {@link #build()}; the nodes it
+     * shares with the maps it built are then copied before being changed.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     */
+    public static final class Builder<K, V> {
+        private Object owner = new Object();
+        private BitmapNode root;
+        private int size;
+
+        private Builder(final PersistentHashMap<K, V> map) {
+            this.root = map.root;
+            this.size = map.size;
+        }
+
+        /**
+         * Associates the key with the value, replacing any previous value of the key.
+         *
+         * @param key   the key
+         * @param value the value
+         * @return this builder
+         */
+        public Builder<K, V> put(final K key, final V value) {
+            final Change change = new Change();
+            root = root.put(owner, 0, hash(key), key, Objects.requireNonNull(value), change);
+            size += change.delta;
+            return this;
+        }
+
+        /**
+         * Associates the keys of the map with their values.
+         *
+         * @param map the entries to add
+         * @return this builder
+         */
+        public Builder<K, V> putAll(final Map<? extends K, ? extends V> map) {
+            map.forEach(this::put);
+            return this;
+        }
+
+        /**
+         * Removes the key.
+         *
+         * @param key the key
+         * @return this builder
+         */
+        public Builder<K, V> remove(final Object key) {
+            final Change change = new Change();
+            root = (BitmapNode) root.remove(owner, 0, hash(key), key, change);
+            size += change.delta;
+            return this;
+        }
+
+        /**
+         * @return the number of entries added so far
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns a map of the entries added so far.
+         *
+         * @return the map
+         */
+        public PersistentHashMap<K, V> build() {
+            owner = new Object();
+            return size == 0
+                    ? empty()
+                    : new PersistentHashMap<>(root, size);
+        }
+    }
+
+    /**
+     * A node of the trie. Its entries are stored as key, value pairs. A node is only changed in place by the owner
+     * it was created for, and only while the owner is not null.
+     */
+    private abstract static class Node {
+        final Object owner;
+        Object[] entries;
+
+        Node(final Object owner, final Object[] entries) {
+            this.owner = owner;
+            this.entries = entries;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node put(Object owner, int shift, int hash, Object key, Object value, Change change);
+
+        abstract Node remove(Object owner, int shift, int hash, Object key, Change change);
+
+        abstract int childCount();
+
+        abstract Node child(int index);
+
+        void forEach(final BiConsumer<Object, Object> action) {
+            for (int i = 0; i < entries.length; i += 2) {
+                action.accept(entries[i], entries[i + 1]);
+            }
+            for (int i = 0; i < childCount(); i++) {
+                child(i).forEach(action);
+            }
+        }
+
+        /**
+         * Whether the node holds a single entry, which its parent can store in place of the node.
+         */
+        boolean isSingleEntry() {
+            return entries.length == 2 && childCount() == 0;
+        }
+    }
+
+    private static final class BitmapNode extends Node {
+        int dataMap;
+        int nodeMap;
+        Node[] children;
+
+        BitmapNode(final Object owner, final int dataMap, final int nodeMap, final Object[] entries,
+                   final Node[] children) {
+            super(owner, entries);
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.children = children;
+        }
+
+        @Override
+        int childCount() {
+            return children.length;
+        }
+
+        @Override
+        Node child(final int index) {
+            return children[index];
+        }
+
+        @Override
+        Object find(final int shift, final int hash, final Object key) {
+            final int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = 2 * index(dataMap, bit);
+                return key.equals(entries[index])
+                        ? entries[index + 1]
+                        : NOT_FOUND;
+            }
+            return (nodeMap & bit) != 0
+                    ? children[index(nodeMap, bit)].find(shift + BITS, hash, key)
+                    : NOT_FOUND;
+        }
+
+        @Override
+        BitmapNode put(final Object owner, final int shift, final int hash, final Object key, final Object value,
+                       final Change change) {
+            final int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = 2 * index(dataMap, bit);
+                final Object current = entries[index];
+                if (key.equals(current)) {
+                    if (entries[index + 1] == value) {
+                        return this;
+                    }
+                    final BitmapNode node = editable(owner);
+                    node.entries[index + 1] = value;
+                    return node;
+                }
+                change.delta = 1;
+                final Node child = merge(owner, shift + BITS, current, hash(current), entries[index + 1], key, hash,
+                        value);
+                return update(owner, dataMap ^ bit, nodeMap | bit, removePair(entries, index),
+                        insert(children, index(nodeMap, bit), child));
+            }
+            if ((nodeMap & bit) != 0) {
+                final int index = index(nodeMap, bit);
+                final Node child = children[index];
+                final Node newChild = child.put(owner, shift + BITS, hash, key, value, change);
+                if (newChild == child) {
+                    return this;
+                }
+                final BitmapNode node = editable(owner);
+                node.children[index] = newChild;
+                return node;
+            }
+            change.delta = 1;
+            return update(owner, dataMap | bit, nodeMap, insertPair(entries, 2 * index(dataMap, bit), key, value),
+                    children);
+        }
+
+        @Override
+        Node remove(final Object owner, final int shift, final int hash, final Object key, final Change change) {
+            final int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = 2 * index(dataMap, bit);
+                if (!key.equals(entries[index])) {
+                    return this;
+                }
+                change.delta = -1;
+                return update(owner, dataMap ^ bit, nodeMap, removePair(entries, index), children);
+            }
+            if ((nodeMap & bit) == 0) {
+                return this;
+            }
+            final int index = index(nodeMap, bit);
+            final Node child = children[index];
+            final Node newChild = child.remove(owner, shift + BITS, hash, key, change);
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild.isSingleEntry()) {
+                // the last entry below this slot moves up into it
+                return update(owner, dataMap | bit, nodeMap ^ bit,
+                        insertPair(entries, 2 * index(dataMap, bit), newChild.entries[0], newChild.entries[1]),
+                        removeChild(children, index));
+            }
+            final BitmapNode node = editable(owner);
+            node.children[index] = newChild;
+            return node;
+        }
+
+        /**
+         * Returns a node with the given content, this one if it belongs to the owner. A new node given to a builder
+         * gets its own copy of any array it would share with this one, since the builder changes it in place.
+         */
+        private BitmapNode update(final Object owner, final int dataMap, final int nodeMap, final Object[] entries,
+                                  final Node[] children) {
+            if (owner == null) {
+                return new BitmapNode(null, dataMap, nodeMap, entries, children);
+            }
+            if (owner != this.owner) {
+                return new BitmapNode(owner, dataMap, nodeMap,
+                        entries == this.entries ? entries.clone() : entries,
+                        children == this.children ? children.clone() : children);
+            }
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.entries = entries;
+            this.children = children;
+            return this;
+        }
+
+        private BitmapNode editable(final Object owner) {
+            return owner != null && owner == this.owner
+                    ? this
+                    : new BitmapNode(owner, dataMap, nodeMap, entries.clone(), children.clone());
+        }
+
+        /**
+         * Returns a node holding two entries whose hashes agree below the given shift.
+         */
+        private static Node merge(final Object owner, final int shift, final Object key1, final int hash1,
+                                  final Object value1, final Object key2, final int hash2, final Object value2) {
+            if (shift >= Integer.SIZE) {
+                return new CollisionNode(owner, hash1, new Object[]{key1, value1, key2, value2});
+            }
+            final int bit1 = bit(hash1, shift);
+            final int bit2 = bit(hash2, shift);
+            if (bit1 == bit2) {
+                return new BitmapNode(owner, 0, bit1, NO_ENTRIES,
+                        new Node[]{merge(owner, shift + BITS, key1, hash1, value1, key2, hash2, value2)});
+            }
+            final Object[] entries = Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new Object[]{key1, value1, key2, value2}
+                    : new Object[]{key2, value2, key1, value1};
+            return new BitmapNode(owner, bit1 | bit2, 0, entries, NO_CHILDREN);
+        }
+    }
+
+    /**
+     * The entries of distinct keys with the same hash, searched linearly.
+     */
+    private static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(final Object owner, final int hash, final Object[] entries) {
+            super(owner, entries);
+            this.hash = hash;
+        }
+
+        @Override
+        int childCount() {
+            return 0;
+        }
+
+        @Override
+        Node child(final int index) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        private int indexOf(final Object key) {
+            for (int i = 0; i < entries.length; i += 2) {
+                if (key.equals(entries[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(final int shift, final int hash, final Object key) {
+            final int index = indexOf(key);
+            return index < 0
+                    ? NOT_FOUND
+                    : entries[index + 1];
+        }
+
+        @Override
+        Node put(final Object owner, final int shift, final int hash, final Object key, final Object value,
+                 final Change change) {
+            final int index = indexOf(key);
+            if (index < 0) {
+                change.delta = 1;
+                return new CollisionNode(owner, hash, insertPair(entries, entries.length, key, value));
+            }
+            if (entries[index + 1] == value) {
+                return this;
+            }
+            final CollisionNode node = owner != null && owner == this.owner
+                    ? this
+                    : new CollisionNode(owner, hash, entries.clone());
+            node.entries[index + 1] = value;
+            return node;
+        }
+
+        @Override
+        Node remove(final Object owner, final int shift, final int hash, final Object key, final Change change) {
+            final int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            change.delta = -1;
+            return new CollisionNode(owner, hash, removePair(entries, index));
+        }
+    }
+
+    private static int bit(final int hash, final int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(final int bitmap, final int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static Object[] insertPair(final Object[] array, final int index, final Object key, final Object value) {
+        final Object[] copy = new Object[array.length + 2];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = key;
+        copy[index + 1] = value;
+        System.arraycopy(array, index, copy, index + 2, array.length - index);
+        return copy;
+    }
+
+    private static Object[] removePair(final Object[] array, final int index) {
+        if (array.length == 2) {
+            return NO_ENTRIES;
+        }
+        final Object[] copy = new Object[array.length - 2];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+        return copy;
+    }
+
+    private static Node[] insert(final Node[] array, final int index, final Node node) {
+        final Node[] copy = new Node[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = node;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static Node[] removeChild(final Node[] array, final int index) {
+        if (array.length == 1) {
+            return NO_CHILDREN;
+        }
+        final Node[] copy = new Node[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    /**
+     * Walks the trie depth first, keeping the path from the root in fixed arrays.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final Node[] nodes = new Node[Integer.SIZE / BITS + 2];
+        private final int[] next = new int[nodes.length];
+        private int depth;
+        private Node node;
+        private int entry;
+
+        EntryIterator(final Node root) {
+            nodes[0] = root;
+            node = root;
+            advance();
+        }
+
+        /**
+         * Moves to the next node with entries, if the current one has no entry left.
+         */
+        private void advance() {
+            while (node != null && entry >= node.entries.length) {
+                final Node parent = nodes[depth];
+                if (next[depth] < parent.childCount()) {
+                    node = parent.child(next[depth]++);
+                    nodes[++depth] = node;
+                    next[depth] = 0;
+                    entry = 0;
+                } else if (depth == 0) {
+                    node = null;
+                } else {
+                    nodes[depth--] = null;
+                    node = nodes[depth];
+                    entry = node.entries.length;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return node != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<K, V> next() {
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            final Entry<K, V> result = new SimpleImmutableEntry<>((K) node.entries[entry], (V) node.entries[entry + 1]);
+            entry += 2;
+            advance();
+            return result;
+        }
+    }
+}
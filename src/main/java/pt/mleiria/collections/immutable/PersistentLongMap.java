@@ -0,0 +1,484 @@
+package pt.mleiria.collections.immutable;
+
+import java.util.Objects;
+
+/**
+ * An immutable, persistent map from long keys to objects, a {@link PersistentHashMap} specialized to keep its keys
+ * unboxed. Int keys are stored as longs.
+ * <p>
+ * Nodes store their keys in a {@code long[]} beside the array of values, so neither lookups nor updates box the
+ * key. The trie is indexed by a 64-bit mix of the key; the mix is a bijection, so distinct keys never collide and
+ * a lookup visits at most 13 nodes, about log<sub>32</sub> n in practice. Updates copy the path to the key, a
+ * {@link Builder} edits its own nodes in place. Values must not be null.
+ *
+ * @param <V> the type of the values
+ */
+public final class PersistentLongMap<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final long[] NO_KEYS = new long[0];
+    private static final Object[] NO_VALUES = new Object[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentLongMap EMPTY =
+            new PersistentLongMap<>(new Node(null, 0, 0, NO_KEYS, NO_VALUES, NO_CHILDREN), 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentLongMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <V> the type of the values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a builder of maps, starting empty.
+     *
+     * @param <V> the type of the values
+     * @return a new builder
+     */
+    public static <V> Builder<V> builder() {
+        return new Builder<>(empty());
+    }
+
+    /**
+     * Returns a builder starting with the entries of this map.
+     *
+     * @return a new builder
+     */
+    public Builder<V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key the key
+     * @return the value of the key, or null if the key is absent
+     */
+    public V get(final long key) {
+        return getOrDefault(key, null);
+    }
+
+    /**
+     * @param key          the key
+     * @param defaultValue the value returned if the key is absent
+     * @return the value of the key, or the default value if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(final long key, final V defaultValue) {
+        final long hash = mix(key);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            final int bit = bit(hash, shift);
+            if ((node.dataMap & bit) != 0) {
+                final int index = index(node.dataMap, bit);
+                return node.keys[index] == key
+                        ? (V) node.values[index]
+                        : defaultValue;
+            }
+            if ((node.nodeMap & bit) == 0) {
+                return defaultValue;
+            }
+            node = node.children[index(node.nodeMap, bit)];
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return whether the map holds the key
+     */
+    public boolean containsKey(final long key) {
+        return getOrDefault(key, null) != null;
+    }
+
+    /**
+     * Returns a map associating the key with the value, replacing any previous value of the key.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return a new map with the entry, or this map if the key is already bound to the same value
+     */
+    public PersistentLongMap<V> with(final long key, final V value) {
+        final int[] change = new int[1];
+        final Node newRoot = root.put(null, 0, mix(key), key, Objects.requireNonNull(value), change);
+        return newRoot == root
+                ? this
+                : new PersistentLongMap<>(newRoot, size + change[0]);
+    }
+
+    /**
+     * Returns a map without the key.
+     *
+     * @param key the key
+     * @return a new map without the key, or this map if the key is absent
+     */
+    public PersistentLongMap<V> without(final long key) {
+        final int[] change = new int[1];
+        final Node newRoot = root.remove(null, 0, mix(key), key, change);
+        return newRoot == root
+                ? this
+                : new PersistentLongMap<>(newRoot, size + change[0]);
+    }
+
+    /**
+     * Receives the entries of a map.
+     *
+     * @param <V> the type of the values
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    /**
+     * Passes every entry to the action, in no particular order.
+     *
+     * @param action the action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final EntryConsumer<? super V> action) {
+        root.forEach((EntryConsumer<Object>) action);
+    }
+
+    /**
+     * @return the keys of the map, in the order of {@link #forEach}
+     */
+    public LongList keys() {
+        final LongList.Builder keys = LongList.builder();
+        forEach((key, value) -> keys.add(key));
+        return keys.build();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PersistentLongMap<?> other) || other.size != size) {
+            return false;
+        }
+        final boolean[] equal = {true};
+        forEach((key, value) -> equal[0] &= value.equals(other.get(key)));
+        return equal[0];
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] hash = new int[1];
+        forEach((key, value) -> hash[0] += Long.hashCode(key) ^ value.hashCode());
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> sb.append(sb.length() == 1 ? "" : ", ").append(key).append('=').append(value));
+        return sb.append('}').toString();
+    }
+
+    /**
+     * The finalizer of MurmurHash3, a bijection of the longs spreading every bit of the key over the whole hash.
+     */
+    private static long mix(final long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int bit(final long hash, final int shift) {
+        return 1 << ((int) (hash >>> shift) & MASK);
+    }
+
+    private static int index(final int bitmap, final int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    /**
+     * Builds maps by editing a trie in place. A builder may go on being used after {@link #build()}; the nodes it
+     * shares with the maps it built are then copied before being changed.
+     *
+     * @param <V> the type of the values
+     */
+    public static final class Builder<V> {
+        private final int[] change = new int[1];
+        private Object owner = new Object();
+        private Node root;
+        private int size;
+
+        private Builder(final PersistentLongMap<V> map) {
+            this.root = map.root;
+            this.size = map.size;
+        }
+
+        /**
+         * Associates the key with the value, replacing any previous value of the key.
+         *
+         * @param key   the key
+         * @param value the value
+         * @return this builder
+         */
+        public Builder<V> put(final long key, final V value) {
+            change[0] = 0;
+            root = root.put(owner, 0, mix(key), key, Objects.requireNonNull(value), change);
+            size += change[0];
+            return this;
+        }
+
+        /**
+         * Removes the key.
+         *
+         * @param key the key
+         * @return this builder
+         */
+        public Builder<V> remove(final long key) {
+            change[0] = 0;
+            root = root.remove(owner, 0, mix(key), key, change);
+            size += change[0];
+            return this;
+        }
+
+        /**
+         * @return the number of entries added so far
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns a map of the entries added so far.
+         *
+         * @return the map
+         */
+        public PersistentLongMap<V> build() {
+            owner = new Object();
+            return size == 0
+                    ? empty()
+                    : new PersistentLongMap<>(root, size);
+        }
+    }
+
+    /**
+     * A node of the trie, see {@link PersistentHashMap}. A node is only changed in place by the owner it was
+     * created for, and only while the owner is not null.
+     */
+    private static final class Node {
+        final Object owner;
+        int dataMap;
+        int nodeMap;
+        long[] keys;
+        Object[] values;
+        Node[] children;
+
+        Node(final Object owner, final int dataMap, final int nodeMap, final long[] keys, final Object[] values,
+             final Node[] children) {
+            this.owner = owner;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.values = values;
+            this.children = children;
+        }
+
+        Node put(final Object owner, final int shift, final long hash, final long key, final Object value,
+                 final int[] change) {
+            final int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = index(dataMap, bit);
+                final long current = keys[index];
+                if (current == key) {
+                    if (values[index] == value) {
+                        return this;
+                    }
+                    final Node node = editable(owner);
+                    node.values[index] = value;
+                    return node;
+                }
+                change[0] = 1;
+                final Node child = merge(owner, shift + BITS, current, mix(current), values[index], key, hash, value);
+                return update(owner, dataMap ^ bit, nodeMap | bit, removeKey(keys, index), removeValue(values, index),
+                        insertChild(children, index(nodeMap, bit), child));
+            }
+            if ((nodeMap & bit) != 0) {
+                final int index = index(nodeMap, bit);
+                final Node child = children[index];
+                final Node newChild = child.put(owner, shift + BITS, hash, key, value, change);
+                if (newChild == child) {
+                    return this;
+                }
+                final Node node = editable(owner);
+                node.children[index] = newChild;
+                return node;
+            }
+            change[0] = 1;
+            final int index = index(dataMap, bit);
+            return update(owner, dataMap | bit, nodeMap, insertKey(keys, index, key), insertValue(values, index, value),
+                    children);
+        }
+
+        Node remove(final Object owner, final int shift, final long hash, final long key, final int[] change) {
+            final int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                final int index = index(dataMap, bit);
+                if (keys[index] != key) {
+                    return this;
+                }
+                change[0] = -1;
+                return update(owner, dataMap ^ bit, nodeMap, removeKey(keys, index), removeValue(values, index),
+                        children);
+            }
+            if ((nodeMap & bit) == 0) {
+                return this;
+            }
+            final int index = index(nodeMap, bit);
+            final Node child = children[index];
+            final Node newChild = child.remove(owner, shift + BITS, hash, key, change);
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild.keys.length == 1 && newChild.children.length == 0) {
+                // the last entry below this slot moves up into it
+                final int dataIndex = index(dataMap, bit);
+                return update(owner, dataMap | bit, nodeMap ^ bit, insertKey(keys, dataIndex, newChild.keys[0]),
+                        insertValue(values, dataIndex, newChild.values[0]), removeChild(children, index));
+            }
+            final Node node = editable(owner);
+            node.children[index] = newChild;
+            return node;
+        }
+
+        void forEach(final EntryConsumer<Object> action) {
+            for (int i = 0; i < keys.length; i++) {
+                action.accept(keys[i], values[i]);
+            }
+            for (final Node child : children) {
+                child.forEach(action);
+            }
+        }
+
+        /**
+         * Returns a node with the given content, this one if it belongs to the owner. A new node given to a builder
+         * gets its own copy of any array it would share with this one, since the builder changes it in place.
+         */
+        private Node update(final Object owner, final int dataMap, final int nodeMap, final long[] keys,
+                            final Object[] values, final Node[] children) {
+            if (owner == null) {
+                return new Node(null, dataMap, nodeMap, keys, values, children);
+            }
+            if (owner != this.owner) {
+                return new Node(owner, dataMap, nodeMap, keys,
+                        values == this.values ? values.clone() : values,
+                        children == this.children ? children.clone() : children);
+            }
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.values = values;
+            this.children = children;
+            return this;
+        }
+
+        private Node editable(final Object owner) {
+            return owner != null && owner == this.owner
+                    ? this
+                    : new Node(owner, dataMap, nodeMap, keys, values.clone(), children.clone());
+        }
+
+        /**
+         * Returns a node holding two entries whose hashes agree below the given shift. Distinct keys have distinct
+         * hashes, so they part before the bits run out.
+         */
+        private static Node merge(final Object owner, final int shift, final long key1, final long hash1,
+                                  final Object value1, final long key2, final long hash2, final Object value2) {
+            final int bit1 = bit(hash1, shift);
+            final int bit2 = bit(hash2, shift);
+            if (bit1 == bit2) {
+                return new Node(owner, 0, bit1, NO_KEYS, NO_VALUES,
+                        new Node[]{merge(owner, shift + BITS, key1, hash1, value1, key2, hash2, value2)});
+            }
+            return Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new Node(owner, bit1 | bit2, 0, new long[]{key1, key2}, new Object[]{value1, value2},
+                    NO_CHILDREN)
+                    : new Node(owner, bit1 | bit2, 0, new long[]{key2, key1}, new Object[]{value2, value1},
+                    NO_CHILDREN);
+        }
+    }
+
+    private static long[] insertKey(final long[] array, final int index, final long key) {
+        final long[] copy = new long[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = key;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static long[] removeKey(final long[] array, final int index) {
+        if (array.length == 1) {
+            return NO_KEYS;
+        }
+        final long[] copy = new long[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    private static Object[] insertValue(final Object[] array, final int index, final Object value) {
+        final Object[] copy = new Object[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = value;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static Object[] removeValue(final Object[] array, final int index) {
+        if (array.length == 1) {
+            return NO_VALUES;
+        }
+        final Object[] copy = new Object[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+
+    private static Node[] insertChild(final Node[] array, final int index, final Node node) {
+        final Node[] copy = new Node[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        copy[index] = node;
+        System.arraycopy(array, index, copy, index + 1, array.length - index);
+        return copy;
+    }
+
+    private static Node[] removeChild(final Node[] array, final int index) {
+        if (array.length == 1) {
+            return NO_CHILDREN;
+        }
+        final Node[] copy = new Node[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, index);
+        System.arraycopy(array, index + 1, copy, index, array.length - index - 1);
+        return copy;
+    }
+}
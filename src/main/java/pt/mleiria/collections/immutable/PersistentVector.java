@@ -0,0 +1,342 @@
+package pt.mleiria.collections.immutable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, persistent vector backed by a 32-way trie with a tail buffer.
+ * <p>
+ * Elements live at the trie positions {@code [origin, origin + size)}. The last (possibly partial) block of 32
+ * elements is kept outside the trie, in the tail buffer, so appending only copies that small array until it is full.
+ * Prepending writes into the free slots in front of the origin with a path copy, growing the trie by one level when
+ * there is no room left, and {@link #tail()} simply moves the origin forward. Every operation shares the untouched
+ * parts of the trie with the original vector, so append, prepend and tail run in effectively constant time.
+ * <p>
+ * The vector is exposed as a read-only {@link java.util.List}: the mutators inherited from {@link AbstractList}
+ * throw {@link UnsupportedOperationException}.
+ *
+ * @param <A> the type of elements in the vector
+ */
+public final class PersistentVector<A> extends AbstractList<A> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final int MAX_SHIFT = 25;
+    private static final int MAX_CAPACITY = capacity(MAX_SHIFT);
+
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final Object[] EMPTY_TAIL = new Object[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentVector EMPTY = new PersistentVector<>(EMPTY_NODE, BITS, EMPTY_TAIL, 0, 0);
+
+    private final Object[] root;
+    private final int shift;
+    private final Object[] tail;
+    private final int origin;
+    private final int size;
+
+    private PersistentVector(final Object[] root, final int shift, final Object[] tail, final int origin,
+                             final int size) {
+        this.root = root;
+        this.shift = shift;
+        this.tail = tail;
+        this.origin = origin;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty vector.
+     *
+     * @param <A> the type of elements in the vector
+     * @return the empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <A> PersistentVector<A> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a vector holding the given elements, in order.
+     *
+     * @param as  the elements of the vector
+     * @param <A> the type of elements in the vector
+     * @return a new vector containing the given elements
+     */
+    @SafeVarargs
+    public static <A> PersistentVector<A> of(final A... as) {
+        return build(Arrays.asList(as).iterator(), 0);
+    }
+
+    /**
+     * Creates a vector holding the elements of the given collection, in iteration order.
+     * Persistent vectors are returned as they are, since they can not be modified.
+     *
+     * @param as  the source collection
+     * @param <A> the type of elements in the vector
+     * @return a vector containing the elements of the collection
+     */
+    @SuppressWarnings("unchecked")
+    public static <A> PersistentVector<A> from(final Collection<? extends A> as) {
+        return as instanceof PersistentVector
+                ? (PersistentVector<A>) as
+                : build(as.iterator(), 0);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public A get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        final int idx = origin + index;
+        final int tailOffset = tailOffset();
+        return idx >= tailOffset
+                ? (A) tail[idx - tailOffset]
+                : (A) leafFor(idx)[idx & MASK];
+    }
+
+    /**
+     * Returns the first element of the vector.
+     *
+     * @return the first element
+     * @throws IllegalStateException if the vector is empty
+     */
+    public A head() {
+        if (size == 0) {
+            throw new IllegalStateException("head called on empty vector");
+        }
+        return get(0);
+    }
+
+    /**
+     * Returns a vector with all elements except the first one. The trie is shared with this vector.
+     *
+     * @return the vector without its first element
+     * @throws IllegalStateException if the vector is empty
+     */
+    public PersistentVector<A> tail() {
+        if (size == 0) {
+            throw new IllegalStateException("tail called on empty vector");
+        }
+        return drop(1);
+    }
+
+    /**
+     * Returns a vector without its first {@code n} elements. The trie is shared with this vector.
+     *
+     * @param n the number of elements to drop
+     * @return the remaining vector
+     */
+    public PersistentVector<A> drop(final int n) {
+        if (n <= 0) {
+            return this;
+        }
+        if (n >= size) {
+            return empty();
+        }
+        final int newOrigin = origin + n;
+        // once only the tail buffer is left the trie can be released
+        final Object[] newRoot = newOrigin >= tailOffset() ? EMPTY_NODE : root;
+        return new PersistentVector<>(newRoot, shift, tail, newOrigin, size - n);
+    }
+
+    /**
+     * Returns a new vector with the given element added at the end.
+     *
+     * @param a the element to append
+     * @return a new vector ending with the element
+     */
+    public PersistentVector<A> append(final A a) {
+        final int end = origin + size;
+        final int tailOffset = tailOffset();
+        if (size == 0) {
+            final Object[] newTail = new Object[(origin & MASK) + 1];
+            newTail[origin & MASK] = a;
+            return new PersistentVector<>(root, shift, newTail, origin, 1);
+        }
+        if (end - tailOffset < WIDTH) {
+            final Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = a;
+            return new PersistentVector<>(root, shift, newTail, origin, size + 1);
+        }
+        if (tailOffset >= capacity(shift)) {
+            if (shift == MAX_SHIFT) {
+                return rebase(0).append(a);
+            }
+            final Object[] newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            return new PersistentVector<>(setLeaf(shift + BITS, newRoot, tailOffset, tail), shift + BITS,
+                    new Object[]{a}, origin, size + 1);
+        }
+        return new PersistentVector<>(setLeaf(shift, root, tailOffset, tail), shift, new Object[]{a}, origin, size + 1);
+    }
+
+    /**
+     * Returns a new vector with the given element added at the beginning.
+     *
+     * @param a the element to prepend
+     * @return a new vector starting with the element
+     */
+    public PersistentVector<A> prepend(final A a) {
+        if (size == 0) {
+            return PersistentVector.<A>empty().append(a);
+        }
+        if (origin == 0) {
+            if (shift == MAX_SHIFT) {
+                // recentre the elements so that both ends have room to grow
+                final int start = ((MAX_CAPACITY - size) / 2) & ~MASK;
+                if (start == 0) {
+                    throw new IllegalStateException("PersistentVector capacity exceeded");
+                }
+                return rebase(start).prepend(a);
+            }
+            // the old trie becomes the second child of a new root, leaving a full child of free slots in front
+            final int grown = capacity(shift);
+            final Object[] newRoot = new Object[WIDTH];
+            newRoot[1] = root;
+            return new PersistentVector<A>(newRoot, shift + BITS, tail, grown, size).prepend(a);
+        }
+        final int idx = origin - 1;
+        final int tailOffset = tailOffset();
+        if (idx >= tailOffset) {
+            final Object[] newTail = tail.clone();
+            newTail[idx - tailOffset] = a;
+            return new PersistentVector<>(root, shift, newTail, idx, size + 1);
+        }
+        return new PersistentVector<>(setElement(shift, root, idx, a), shift, tail, idx, size + 1);
+    }
+
+    @Override
+    public Iterator<A> iterator() {
+        return new Itr();
+    }
+
+    private final class Itr implements Iterator<A> {
+        private int index;
+        private int leafBase = -1;
+        private Object[] leaf;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public A next() {
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+            final int idx = origin + index++;
+            final int tailOffset = tailOffset();
+            if (idx >= tailOffset) {
+                return (A) tail[idx - tailOffset];
+            }
+            final int base = idx & ~MASK;
+            if (base != leafBase) {
+                leaf = leafFor(idx);
+                leafBase = base;
+            }
+            return (A) leaf[idx & MASK];
+        }
+    }
+
+    private int tailOffset() {
+        return size == 0
+                ? origin
+                : (origin + size - 1) & ~MASK;
+    }
+
+    private Object[] leafFor(final int idx) {
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(idx >>> level) & MASK];
+        }
+        return node;
+    }
+
+    /**
+     * Copies this vector into a fresh trie starting at the given origin, used when the trie can not grow anymore.
+     */
+    private PersistentVector<A> rebase(final int start) {
+        if (size > MAX_CAPACITY - WIDTH - start) {
+            throw new IllegalStateException("PersistentVector capacity exceeded");
+        }
+        return build(iterator(), start);
+    }
+
+    private static int capacity(final int shift) {
+        return 1 << (shift + BITS);
+    }
+
+    private static Object[] setLeaf(final int level, final Object[] node, final int idx, final Object[] leaf) {
+        final Object[] copy = node.clone();
+        final int sub = (idx >>> level) & MASK;
+        copy[sub] = level == BITS
+                ? leaf
+                : setLeaf(level - BITS, child(copy, sub), idx, leaf);
+        return copy;
+    }
+
+    private static Object[] setElement(final int level, final Object[] node, final int idx, final Object value) {
+        final Object[] copy = node.clone();
+        final int sub = (idx >>> level) & MASK;
+        copy[sub] = level == 0
+                ? value
+                : setElement(level - BITS, child(copy, sub), idx, value);
+        return copy;
+    }
+
+    private static Object[] child(final Object[] node, final int sub) {
+        return node[sub] == null ? EMPTY_NODE : (Object[]) node[sub];
+    }
+
+    private static <A> PersistentVector<A> build(final Iterator<? extends A> as, final int start) {
+        Object[] root = EMPTY_NODE;
+        int shift = BITS;
+        while (start >= capacity(shift)) {
+            shift += BITS;
+        }
+        Object[] leaf = new Object[WIDTH];
+        int index = start;
+        while (as.hasNext()) {
+            if (index != start && (index & MASK) == 0) {
+                final int leafOffset = index - WIDTH;
+                if (leafOffset >= capacity(shift)) {
+                    if (shift == MAX_SHIFT) {
+                        throw new IllegalStateException("PersistentVector capacity exceeded");
+                    }
+                    final Object[] newRoot = new Object[WIDTH];
+                    newRoot[0] = root;
+                    root = newRoot;
+                    shift += BITS;
+                }
+                root = setLeaf(shift, root, leafOffset, leaf);
+                leaf = new Object[WIDTH];
+            }
+            leaf[index & MASK] = as.next();
+            index++;
+        }
+        if (index == start) {
+            return empty();
+        }
+        final int tailOffset = (index - 1) & ~MASK;
+        return new PersistentVector<>(root, shift, Arrays.copyOf(leaf, index - tailOffset), start, index - start);
+    }
+}
@@ -0,0 +1,438 @@
+package pt.mleiria.collections.immutable;
+
+import pt.mleiria.dto.Pair;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static pt.mleiria.collections.immutable.TailCall.ret;
+import static pt.mleiria.collections.immutable.TailCall.sus;
+
+/**
+ * A lazy, memoized stream: a cons cell whose head and tail are only computed when first needed.
+ * <p>
+ * Transformations such as {@link #map}, {@link #filter} or {@link #takeWhile} build no intermediate collection;
+ * each element flows through the whole pipeline when the stream is consumed, so a pipeline is a single pass.
+ * Operations that may need to skip an unbounded number of elements are trampolined through {@link TailCall},
+ * so they can not overflow the stack.
+ * <p>
+ * Evaluated cells are memoized, which means a stream keeps every element it has produced reachable from its
+ * head. Consuming a large source in constant memory requires not holding on to the head of the stream: build the
+ * pipeline inline and consume it with the static {@link #foldLeft(Stream, Object, Function)},
+ * {@link #forEach(Stream, Consumer)} or {@link #toList(Stream)}, which let go of every cell once they have moved
+ * past it. The instance versions of these operations keep the stream they are called on reachable until they
+ * return.
+ *
+ * @param <A> the type of elements in the stream
+ */
+public abstract class Stream<A> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Stream EMPTY = new Empty();
+
+    public abstract A head();
+
+    public abstract Stream<A> tail();
+
+    public abstract boolean isEmpty();
+
+    public abstract Optional<A> headOption();
+
+    public abstract Stream<A> take(int n);
+
+    public abstract Stream<A> takeWhile(Function<A, Boolean> p);
+
+    private Stream() {
+    }
+
+    private static class Empty<A> extends Stream<A> {
+
+        @Override
+        public A head() {
+            throw new IllegalStateException("head called on empty stream");
+        }
+
+        @Override
+        public Stream<A> tail() {
+            throw new IllegalStateException("tail called on empty stream");
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public Optional<A> headOption() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Stream<A> take(int n) {
+            return this;
+        }
+
+        @Override
+        public Stream<A> takeWhile(Function<A, Boolean> p) {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "[NIL]";
+        }
+    }
+
+    private static class Cons<A> extends Stream<A> {
+        private Supplier<A> head;
+        private A h;
+        private Supplier<Stream<A>> tail;
+        private Stream<A> t;
+
+        private Cons(Supplier<A> head, Supplier<Stream<A>> tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        @Override
+        public A head() {
+            if (head != null) {
+                h = head.get();
+                head = null;
+            }
+            return h;
+        }
+
+        @Override
+        public Stream<A> tail() {
+            if (tail != null) {
+                t = tail.get();
+                tail = null;
+            }
+            return t;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public Optional<A> headOption() {
+            return Optional.ofNullable(head());
+        }
+
+        @Override
+        public Stream<A> take(int n) {
+            return n <= 0
+                    ? empty()
+                    : cons(this::head, () -> n == 1 ? empty() : tail().take(n - 1));
+        }
+
+        @Override
+        public Stream<A> takeWhile(Function<A, Boolean> p) {
+            return p.apply(head())
+                    ? cons(this::head, () -> tail().takeWhile(p))
+                    : empty();
+        }
+
+        @Override
+        public String toString() {
+            return "[" + head() + ", ...]";
+        }
+    }
+
+    /**
+     * Returns the empty stream.
+     *
+     * @param <A> the type of elements in the stream
+     * @return the empty stream
+     */
+    @SuppressWarnings("unchecked")
+    public static <A> Stream<A> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a stream from a lazily computed head and tail. Both suppliers are called at most once.
+     *
+     * @param head the supplier of the first element
+     * @param tail the supplier of the rest of the stream
+     * @param <A>  the type of elements in the stream
+     * @return a new non empty stream
+     */
+    public static <A> Stream<A> cons(Supplier<A> head, Supplier<Stream<A>> tail) {
+        return new Cons<>(head, tail);
+    }
+
+    /**
+     * Creates a stream from a lazily computed head and an already built tail.
+     *
+     * @param head the supplier of the first element
+     * @param tail the rest of the stream
+     * @param <A>  the type of elements in the stream
+     * @return a new non empty stream
+     */
+    public static <A> Stream<A> cons(Supplier<A> head, Stream<A> tail) {
+        return new Cons<>(head, () -> tail);
+    }
+
+    /**
+     * Creates a stream of the given elements.
+     *
+     * @param as  the elements of the stream
+     * @param <A> the type of elements in the stream
+     * @return a new stream containing the given elements
+     */
+    @SafeVarargs
+    public static <A> Stream<A> of(A... as) {
+        Stream<A> s = empty();
+        for (int i = as.length - 1; i >= 0; i--) {
+            final A a = as[i];
+            s = cons(() -> a, s);
+        }
+        return s;
+    }
+
+    /**
+     * Creates an infinite stream of the seed and the values obtained by repeatedly applying the function to it.
+     *
+     * @param seed the first element of the stream
+     * @param f    the function that computes the next element from the previous one
+     * @param <A>  the type of elements in the stream
+     * @return an infinite stream
+     */
+    public static <A> Stream<A> iterate(A seed, Function<A, A> f) {
+        return cons(() -> seed, () -> iterate(f.apply(seed), f));
+    }
+
+    /**
+     * Creates an infinite stream of consecutive integers.
+     *
+     * @param i the first integer of the stream
+     * @return an infinite stream of integers starting with i
+     */
+    public static Stream<Integer> from(int i) {
+        return iterate(i, x -> x + 1);
+    }
+
+    /**
+     * Generates a stream from a state, until the function returns an empty result.
+     *
+     * @param z   the initial state
+     * @param f   the function producing the next element and the next state from the current state
+     * @param <A> the type of elements in the stream
+     * @param <S> the type of the state
+     * @return the generated stream
+     */
+    public static <A, S> Stream<A> unfold(S z, Function<S, Optional<Pair<A, S>>> f) {
+        return f.apply(z)
+                .map(x -> cons(x::_1, () -> unfold(x._2(), f)))
+                .orElse(empty());
+    }
+
+    /**
+     * Creates a stream pulling its elements from an iterator, such as the lines of a file.
+     * Each element is requested from the iterator only once, when the stream reaches it.
+     *
+     * @param it  the source of elements
+     * @param <A> the type of elements in the stream
+     * @return a stream over the remaining elements of the iterator
+     */
+    public static <A> Stream<A> fromIterator(Iterator<A> it) {
+        if (!it.hasNext()) {
+            return empty();
+        }
+        final A a = it.next();
+        return cons(() -> a, () -> fromIterator(it));
+    }
+
+    /**
+     * Drops the first n elements of the stream.
+     *
+     * @param n the number of elements to drop
+     * @return the remaining stream
+     */
+    public Stream<A> drop(int n) {
+        return drop(this, n).eval();
+    }
+
+    private static <A> TailCall<Stream<A>> drop(Stream<A> s, int n) {
+        return n <= 0 || s.isEmpty()
+                ? ret(s)
+                : sus(() -> drop(s.tail(), n - 1));
+    }
+
+    /**
+     * Drops the leading elements of the stream satisfying the predicate.
+     *
+     * @param p the predicate
+     * @return the stream starting with the first element not satisfying the predicate
+     */
+    public Stream<A> dropWhile(Function<A, Boolean> p) {
+        return dropWhile(this, p).eval();
+    }
+
+    private static <A> TailCall<Stream<A>> dropWhile(Stream<A> s, Function<A, Boolean> p) {
+        return !s.isEmpty() && p.apply(s.head())
+                ? sus(() -> dropWhile(s.tail(), p))
+                : ret(s);
+    }
+
+    /**
+     * Folds the stream from the left. The whole stream is evaluated, so it must be finite, and stays in memory
+     * until the fold returns, see {@link #foldLeft(Stream, Object, Function)}.
+     *
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the accumulated value with the next element
+     * @param <B>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public <B> B foldLeft(B identity, Function<B, Function<A, B>> f) {
+        return foldLeft(this, identity, f);
+    }
+
+    /**
+     * Folds a stream from the left in constant memory: the cells already folded are not referenced any more, so
+     * they can be collected as long as the caller does not hold on to the stream either. The whole stream is
+     * evaluated, so it must be finite.
+     *
+     * @param s        the stream, not referenced by the caller afterwards
+     * @param identity the initial value for the fold operation
+     * @param f        the function that combines the accumulated value with the next element
+     * @param <A>      the type of elements in the stream
+     * @param <B>      the type of the accumulated value
+     * @return the result of the fold operation
+     */
+    public static <A, B> B foldLeft(Stream<A> s, B identity, Function<B, Function<A, B>> f) {
+        // a loop rather than a trampoline, whose first step would capture the head; s itself moves along
+        B acc = identity;
+        for (; !s.isEmpty(); s = s.tail()) {
+            acc = f.apply(acc).apply(s.head());
+        }
+        return acc;
+    }
+
+    /**
+     * Checks whether an element satisfies the predicate, evaluating the stream only up to that element.
+     *
+     * @param p the predicate
+     * @return true if some element satisfies the predicate
+     */
+    public boolean exists(Function<A, Boolean> p) {
+        return !dropWhile(x -> !p.apply(x)).isEmpty();
+    }
+
+    /**
+     * Applies an effect to every element of the stream. The whole stream is evaluated, so it must be finite, and
+     * stays in memory until the method returns, see {@link #forEach(Stream, Consumer)}.
+     *
+     * @param effect the effect to apply
+     */
+    public void forEach(Consumer<A> effect) {
+        forEach(this, effect);
+    }
+
+    /**
+     * Applies an effect to every element of a stream in constant memory, see
+     * {@link #foldLeft(Stream, Object, Function)}. The whole stream is evaluated, so it must be finite.
+     *
+     * @param s      the stream, not referenced by the caller afterwards
+     * @param effect the effect to apply
+     * @param <A>    the type of elements in the stream
+     */
+    public static <A> void forEach(Stream<A> s, Consumer<A> effect) {
+        for (; !s.isEmpty(); s = s.tail()) {
+            effect.accept(s.head());
+        }
+    }
+
+    public <B> Stream<B> map(Function<A, B> f) {
+        return isEmpty()
+                ? empty()
+                : cons(() -> f.apply(head()), () -> tail().map(f));
+    }
+
+    /**
+     * Keeps the elements satisfying the predicate. Elements are skipped up to the first match right away,
+     * the rest of the stream is filtered as it is consumed.
+     *
+     * @param p the predicate
+     * @return the filtered stream
+     */
+    public Stream<A> filter(Function<A, Boolean> p) {
+        final Stream<A> s = dropWhile(x -> !p.apply(x));
+        return s.isEmpty()
+                ? empty()
+                : cons(s::head, () -> s.tail().filter(p));
+    }
+
+    /**
+     * Appends a lazily computed stream to this one.
+     *
+     * @param s the supplier of the stream to append
+     * @return the concatenation of both streams
+     */
+    public Stream<A> append(Supplier<Stream<A>> s) {
+        return isEmpty()
+                ? s.get()
+                : cons(this::head, () -> tail().append(s));
+    }
+
+    public <B> Stream<B> flatMap(Function<A, Stream<B>> f) {
+        return flatMap(this, f).eval();
+    }
+
+    private static <A, B> TailCall<Stream<B>> flatMap(Stream<A> s, Function<A, Stream<B>> f) {
+        if (s.isEmpty()) {
+            return ret(empty());
+        }
+        final Stream<B> inner = f.apply(s.head());
+        return inner.isEmpty()
+                ? sus(() -> flatMap(s.tail(), f))
+                : ret(inner.append(() -> s.tail().flatMap(f)));
+    }
+
+    /**
+     * Combines this stream with another one element by element. The result ends with the shortest stream.
+     *
+     * @param other the stream to zip with
+     * @param f     the function combining the elements at the same position
+     * @param <B>   the type of elements in the other stream
+     * @param <C>   the type of elements in the resulting stream
+     * @return the stream of combined elements
+     */
+    public <B, C> Stream<C> zipWith(Stream<B> other, Function<A, Function<B, C>> f) {
+        return isEmpty() || other.isEmpty()
+                ? empty()
+                : cons(() -> f.apply(head()).apply(other.head()), () -> tail().zipWith(other.tail(), f));
+    }
+
+    public <B> Stream<Pair<A, B>> zip(Stream<B> other) {
+        return zipWith(other, a -> b -> new Pair<>(a, b));
+    }
+
+    /**
+     * Evaluates the stream into a list. The whole stream is evaluated, so it must be finite.
+     *
+     * @return a list with the elements of the stream
+     */
+    public List<A> toList() {
+        return toList(this);
+    }
+
+    /**
+     * Evaluates a stream into a list without keeping its cells, only the elements, in memory. The whole stream is
+     * evaluated, so it must be finite.
+     *
+     * @param s   the stream, not referenced by the caller afterwards
+     * @param <A> the type of elements in the stream
+     * @return a list with the elements of the stream
+     */
+    public static <A> List<A> toList(Stream<A> s) {
+        return foldLeft(s, List.<A>list(), acc -> acc::cons).reverse();
+    }
+}
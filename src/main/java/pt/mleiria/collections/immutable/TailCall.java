@@ -1,9 +1,19 @@
 package pt.mleiria.collections.immutable;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public abstract class TailCall<T> {
 
+    /**
+     * Maximum number of steps a recursive function should run directly on the call stack before suspending.
+     *
+     * @see #onStack(int)
+     */
+    public static final int MAX_STACK_DEPTH = 128;
+
     /**
      * Returns a TailCall object that represents the resumption of the function.
      *
@@ -11,21 +21,73 @@ public abstract class TailCall<T> {
      */
     public abstract TailCall<T> resume();
 
+    /**
+     * Determines if the function is a suspend function.
+     *
+     * @return true if the function is a suspend function, otherwise false
+     */
+    public abstract boolean isSuspend();
+
+    private TailCall() {
+    }
+
     /**
      * Evaluates the function and returns the result.
+     * <p>
+     * The trampoline dispatches on the concrete step type instead of bouncing through
+     * {@link #isSuspend()} and {@link #resume()}, and keeps the continuations of {@link #flatMap}
+     * on an explicit stack, so non tail recursive computations run in constant call stack space too.
      *
      * @return the result of the evaluation
      */
-    public abstract T eval();
+    @SuppressWarnings("unchecked")
+    public T eval() {
+        TailCall<?> current = this;
+        Deque<Function<Object, TailCall<?>>> continuations = null;
+        while (true) {
+            if (current instanceof Suspend<?> suspend) {
+                current = suspend.resume.get();
+            } else if (current instanceof FlatMap<?, ?> flatMap) {
+                if (flatMap.sub instanceof Return<?> ret) {
+                    current = ((Function<Object, TailCall<?>>) flatMap.f).apply(ret.t);
+                } else {
+                    if (continuations == null) {
+                        continuations = new ArrayDeque<>();
+                    }
+                    continuations.push((Function<Object, TailCall<?>>) flatMap.f);
+                    current = flatMap.sub;
+                }
+            } else {
+                final Object value = ((Return<?>) current).t;
+                if (continuations == null || continuations.isEmpty()) {
+                    return (T) value;
+                }
+                current = continuations.pop().apply(value);
+            }
+        }
+    }
 
     /**
-     * Determines if the function is a suspend function.
+     * Chains a computation depending on the result of this one.
+     * The chained computation is evaluated by the trampoline, so recursing inside f does not grow the call stack.
      *
-     * @return true if the function is a suspend function, otherwise false
+     * @param f   the function computing the next step from the result of this one
+     * @param <U> the type of the result of the next step
+     * @return a TailCall evaluating this step and then the one returned by f
      */
-    public abstract boolean isSuspend();
+    public <U> TailCall<U> flatMap(Function<T, TailCall<U>> f) {
+        return new FlatMap<>(this, f);
+    }
 
-    private TailCall() {
+    /**
+     * Transforms the result of this computation.
+     *
+     * @param f   the function applied to the result
+     * @param <U> the type of the transformed result
+     * @return a TailCall evaluating to the transformed result
+     */
+    public <U> TailCall<U> map(Function<T, U> f) {
+        return flatMap(t -> ret(f.apply(t)));
     }
 
     /**
@@ -34,7 +96,7 @@ public abstract class TailCall<T> {
      *
      * @param <T>
      */
-    public static class Return<T> extends TailCall<T> {
+    public static final class Return<T> extends TailCall<T> {
         private final T t;
 
         public Return(T t) {
@@ -42,9 +104,9 @@ public abstract class TailCall<T> {
         }
 
         /**
-         * A description of the entire Java function.
+         * Returns the wrapped value.
          *
-         * @return description of return value
+         * @return the result of the computation
          */
         @Override
         public T eval() {
@@ -62,9 +124,9 @@ public abstract class TailCall<T> {
         }
 
         /**
-         * A description of the entire Java function.
+         * A return can not be resumed.
          *
-         * @return description of return value
+         * @throws IllegalStateException always
          */
         @Override
         public TailCall<T> resume() {
@@ -78,7 +140,7 @@ public abstract class TailCall<T> {
      *
      * @param <T>
      */
-    public static class Suspend<T> extends TailCall<T> {
+    public static final class Suspend<T> extends TailCall<T> {
         private final Supplier<TailCall<T>> resume;
 
         public Suspend(Supplier<TailCall<T>> resume) {
@@ -86,37 +148,64 @@ public abstract class TailCall<T> {
         }
 
         /**
-         * Evaluates the function and returns the result.
+         * Returns whether the function is suspended or not.
          *
-         * @return the result of the evaluation
+         * @return true if the function is suspended, false otherwise
          */
         @Override
-        public T eval() {
-            TailCall<T> tailRec = this;
-            while (tailRec.isSuspend()) {
-                tailRec = tailRec.resume();
-            }
-            return tailRec.eval();
+        public boolean isSuspend() {
+            return true;
         }
 
         /**
-         * Returns whether the function is suspended or not.
+         * Resumes the execution of the Java function.
          *
-         * @return true if the function is suspended, false otherwise
+         * @return the result of resuming the function execution
          */
+        @Override
+        public TailCall<T> resume() {
+            return resume.get();
+        }
+    }
+
+    /**
+     * A step whose continuation depends on the result of a previous step.
+     *
+     * @param <A> the type of the result of the previous step
+     * @param <T> the type of the result of the continuation
+     */
+    private static final class FlatMap<A, T> extends TailCall<T> {
+        private final TailCall<A> sub;
+        private final Function<A, TailCall<T>> f;
+
+        private FlatMap(TailCall<A> sub, Function<A, TailCall<T>> f) {
+            this.sub = sub;
+            this.f = f;
+        }
+
         @Override
         public boolean isSuspend() {
             return true;
         }
 
         /**
-         * Resumes the execution of the Java function.
+         * Runs one step, reassociating nested flatMaps to the right.
          *
-         * @return the result of resuming the function execution
+         * @return the next step of the computation
          */
         @Override
         public TailCall<T> resume() {
-            return resume.get();
+            if (sub instanceof Return<A> ret) {
+                return f.apply(ret.t);
+            }
+            if (sub instanceof FlatMap<?, A> inner) {
+                return inner.reassociate(f);
+            }
+            return new FlatMap<>(sub.resume(), f);
+        }
+
+        private <B> TailCall<B> reassociate(Function<T, TailCall<B>> g) {
+            return new FlatMap<>(sub, a -> new FlatMap<>(f.apply(a), g));
         }
     }
 
@@ -140,4 +229,25 @@ public abstract class TailCall<T> {
         return new Suspend<>(s);
     }
 
+    /**
+     * Fast path for recursive functions: tells whether the next step may run directly on the call stack.
+     * <p>
+     * A function tracking its depth recurses directly while this returns true and suspends with the depth
+     * reset to zero otherwise, so only one step in {@link #MAX_STACK_DEPTH} allocates a Suspend and bounces:
+     * <pre>{@code
+     * TailCall<Integer> add(int x, int y, int depth) {
+     *     return y == 0
+     *             ? ret(x)
+     *             : onStack(depth)
+     *             ? add(x + 1, y - 1, depth + 1)
+     *             : sus(() -> add(x + 1, y - 1, 0));
+     * }
+     * }</pre>
+     *
+     * @param depth the number of steps run on the call stack since the last suspension
+     * @return true if the next step can run on the call stack
+     */
+    public static boolean onStack(int depth) {
+        return depth < MAX_STACK_DEPTH;
+    }
 }
@@ -0,0 +1,144 @@
+package pt.mleiria.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of non negative long values, such as latencies in nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets, in the manner of HDR histograms: every power of two is divided into
+ * 32 buckets of equal width, and values below 64 have a bucket each. The whole range of long values fits in a
+ * fixed array of counters, recording is a few bit operations and an atomic increment, and a percentile is known
+ * to within about 3% of its value. The count, sum, minimum and maximum are exact.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value the value
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        sum.add(v);
+        min.accumulate(v);
+        max.accumulate(v);
+    }
+
+    static int bucket(final long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     */
+    static long highestValue(final int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long sub = bucket - (long) shift * SUB_BUCKETS;
+        // wraps around to Long.MAX_VALUE for the last bucket
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Copies the current state of the histogram. Values recorded while copying may be partially included.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return count == 0
+                ? new Snapshot(copy, 0, 0, 0, 0)
+                : new Snapshot(copy, count, sum.sum(), min.get(), max.get());
+    }
+
+    /**
+     * The values of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long count, final long sum, final long min, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sum() {
+            return sum;
+        }
+
+        public long min() {
+            return min;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public double mean() {
+            return count == 0
+                    ? 0
+                    : (double) sum / count;
+        }
+
+        /**
+         * Returns the value below which the given fraction of the recorded values fall, to within the precision
+         * of the buckets. The result never exceeds the largest recorded value.
+         *
+         * @param quantile the fraction, from 0 to 1, such as 0.99 for the 99th percentile
+         * @return the value at the quantile, or 0 if nothing was recorded
+         */
+        public long percentile(final double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+            }
+            if (count == 0 || quantile == 0) {
+                return min;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, highestValue(i)));
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package pt.mleiria.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import pt.mleiria.io.utils.LineSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A set of validation rules compiled into a single plan.
+ * <p>
+ * Every rule applies a predicate to the node at a JSON pointer. The pointers of all the rules are merged into a
+ * tree when the plan is built, and a document is validated in one pass of a streaming parser that follows that
+ * tree: values no rule refers to are skipped without being built, and only the values at the pointers of the
+ * rules are read into nodes. Adding rules therefore adds the cost of evaluating their predicates, not of reading
+ * the document again.
+ * <p>
+ * Validation reports every violated rule, not only the first one. Rules on a pointer the document does not
+ * contain are evaluated against a missing node, so presence rules fail and optional ones can accept it.
+ * <pre>{@code
+ * JsonRules rules = JsonRules.builder()
+ *         .matches("/id", Validator.isPresent(), "id is required")
+ *         .equalTo("/status", "ok")
+ *         .present("/customer/address/city")
+ *         .build();
+ * List<JsonRules.Violation> violations = rules.validate(json);
+ * }</pre>
+ * A plan is immutable and can be used from several threads.
+ */
+public final class JsonRules {
+
+    private static final ObjectReader READER = new ObjectMapper().reader();
+
+    private static final JsonFactory FACTORY = READER.getFactory();
+
+    private static final Metrics.Timer VALIDATE = Metrics.global().timer("json.rules.validate");
+
+    private static final Metrics.Counter VIOLATIONS = Metrics.global().counter("json.rules.violations");
+
+    private final Node root;
+    private final int size;
+
+    /**
+     * A rule that a document does not satisfy.
+     *
+     * @param pointer the JSON pointer the rule applies to
+     * @param message the description of the rule
+     */
+    public record Violation(String pointer, String message) {
+    }
+
+    /**
+     * The violations of one record of a batch.
+     *
+     * @param record     the position of the record among the non blank lines of the file, from 0
+     * @param violations the rules the record does not satisfy
+     */
+    public record Failure(int record, List<Violation> violations) {
+    }
+
+    /**
+     * The outcome of validating a batch of records.
+     *
+     * @param records  the number of records validated
+     * @param failures the records with violations, in file order
+     */
+    public record Report(int records, List<Failure> failures) {
+
+        public boolean isValid() {
+            return failures.isEmpty();
+        }
+    }
+
+    private record Rule(String pointer, Predicate<JsonNode> test, String message) {
+    }
+
+    /**
+     * A step of the compiled pointer tree, with the rules ending at this step.
+     */
+    private static final class Node {
+        private final int id;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private final List<Rule> rules = new ArrayList<>();
+
+        private Node(final int id) {
+            this.id = id;
+        }
+    }
+
+    private JsonRules(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Validates a document.
+     *
+     * @param jsonData the JSON document
+     * @return the violated rules, empty if the document is valid
+     */
+    public List<Violation> validate(final String jsonData) {
+        final long start = VALIDATE.start();
+        final List<Violation> violations = check(jsonData);
+        VIOLATIONS.add(violations.size());
+        VALIDATE.stop(start);
+        return violations;
+    }
+
+    private List<Violation> check(final String jsonData) {
+        final List<Violation> violations = new ArrayList<>();
+        final boolean[] visited = new boolean[size];
+        try (final JsonParser parser = FACTORY.createParser(jsonData)) {
+            if (parser.nextToken() != null) {
+                visit(parser, root, visited, violations);
+            }
+        } catch (final IOException x) {
+            return List.of(new Violation("", "Malformed JSON: " + x.getMessage()));
+        }
+        checkMissing(root, visited, violations);
+        return violations;
+    }
+
+    /**
+     * Validates a file of JSON documents, one per line, in parallel. Gzip compressed files are accepted.
+     *
+     * @param path the path of the file
+     * @return the number of records and the violations of the invalid ones
+     * @throws IOException if the file can not be opened or read
+     */
+    public Report validateLines(final String path) throws IOException {
+        final List<List<Violation>> results;
+        try (final LineSource<String> lines = LineSource.open(path)) {
+            results = lines.stream().parallel().map(this::validate).toList();
+        } catch (final UncheckedIOException x) {
+            throw x.getCause();
+        }
+        final List<Failure> failures = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.get(i).isEmpty()) {
+                failures.add(new Failure(i, results.get(i)));
+            }
+        }
+        return new Report(results.size(), failures);
+    }
+
+    /**
+     * Reads the value the parser is positioned on, following the pointer tree from the given step.
+     */
+    private static void visit(final JsonParser parser, final Node node, final boolean[] visited,
+                              final List<Violation> violations) throws IOException {
+        if (!node.rules.isEmpty()) {
+            final JsonNode value = READER.readTree(parser);
+            evaluate(value == null ? MissingNode.getInstance() : value, node, visited, violations);
+            return;
+        }
+        visited[node.id] = true;
+        final JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final Node child = node.children.get(parser.getCurrentName());
+                parser.nextToken();
+                if (child == null || visited[child.id]) {
+                    parser.skipChildren();
+                } else {
+                    visit(parser, child, visited, violations);
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                final Node child = node.children.get(Integer.toString(index++));
+                if (child == null || visited[child.id]) {
+                    parser.skipChildren();
+                } else {
+                    visit(parser, child, visited, violations);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the rules of a step and of every step below it against a value already read.
+     */
+    private static void evaluate(final JsonNode value, final Node node, final boolean[] visited,
+                                 final List<Violation> violations) {
+        visited[node.id] = true;
+        for (final Rule rule : node.rules) {
+            if (!rule.test().test(value)) {
+                violations.add(new Violation(rule.pointer(), rule.message()));
+            }
+        }
+        for (final Map.Entry<String, Node> child : node.children.entrySet()) {
+            final JsonNode childValue = value.isArray()
+                    ? value.path(index(child.getKey()))
+                    : value.path(child.getKey());
+            evaluate(childValue, child.getValue(), visited, violations);
+        }
+    }
+
+    private static int index(final String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (final NumberFormatException x) {
+            return -1;
+        }
+    }
+
+    /**
+     * Evaluates the rules of the steps the document does not reach against a missing node.
+     */
+    private static void checkMissing(final Node node, final boolean[] visited, final List<Violation> violations) {
+        if (!visited[node.id]) {
+            evaluate(MissingNode.getInstance(), node, visited, violations);
+            return;
+        }
+        for (final Node child : node.children.values()) {
+            checkMissing(child, visited, violations);
+        }
+    }
+
+    /**
+     * Collects rules and compiles them into a plan.
+     */
+    public static final class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a rule on the node at a pointer.
+         *
+         * @param pointer the JSON pointer of the node, "" for the whole document
+         * @param test    the predicate the node must satisfy, given a missing node if the document has none
+         * @param message the description of the rule, reported when it is violated
+         * @return this builder
+         */
+        public Builder node(final String pointer, final Predicate<JsonNode> test, final String message) {
+            JsonPointer.compile(pointer);
+            rules.add(new Rule(pointer, test, message));
+            return this;
+        }
+
+        /**
+         * Adds a rule on the text of the value at a pointer, such as {@link Validator#isPresent()}.
+         * The predicate is given the text of a scalar value, or null if the value is missing, null or a container.
+         *
+         * @param pointer the JSON pointer of the value
+         * @param test    the predicate the text must satisfy
+         * @param message the description of the rule
+         * @return this builder
+         */
+        public Builder matches(final String pointer, final Predicate<String> test, final String message) {
+            return node(pointer, value -> test.test(value.isValueNode() && !value.isNull() ? value.asText() : null),
+                    message);
+        }
+
+        /**
+         * Requires a value at a pointer, which may be null.
+         *
+         * @param pointer the JSON pointer of the value
+         * @return this builder
+         */
+        public Builder present(final String pointer) {
+            return node(pointer, value -> !value.isMissingNode(), pointer + " is required");
+        }
+
+        /**
+         * Requires a string value equal to the given one at a pointer.
+         *
+         * @param pointer the JSON pointer of the value
+         * @param value   the expected value
+         * @return this builder
+         */
+        public Builder equalTo(final String pointer, final String value) {
+            return node(pointer, node -> value.equals(node.textValue()), pointer + " must be " + value);
+        }
+
+        /**
+         * Compiles the rules into a plan.
+         *
+         * @return the plan
+         */
+        public JsonRules build() {
+            final int[] ids = {0};
+            final Node root = new Node(ids[0]++);
+            for (final Rule rule : rules) {
+                Node node = root;
+                for (JsonPointer p = JsonPointer.compile(rule.pointer()); !p.matches(); p = p.tail()) {
+                    node = node.children.computeIfAbsent(p.getMatchingProperty(), k -> new Node(ids[0]++));
+                }
+                node.rules.add(rule);
+            }
+            return new JsonRules(root, ids[0]);
+        }
+    }
+}
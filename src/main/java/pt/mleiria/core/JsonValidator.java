@@ -1,28 +1,143 @@
 package pt.mleiria.core;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.MissingNode;
 
 import java.io.IOException;
 import java.util.Optional;
 import java.util.function.BiPredicate;
 
+/**
+ * Looks up fields of JSON documents.
+ * <p>
+ * The lookups by name and by JSON pointer read the document with a streaming parser and only build the requested
+ * value, skipping the others without building them. The whole document is still read, so the lookups agree with a
+ * parsed {@link Document}: a malformed document yields no value, and a duplicated field resolves to its last
+ * occurrence. To look up several values of the same document, parse it once into a {@link Document}.
+ * <p>
+ * All methods share one thread-safe mapper and reader.
+ */
 public class JsonValidator {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final ObjectReader READER = MAPPER.reader();
+
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private static final Metrics.Timer LOOKUP = Metrics.global().timer("json.lookup");
 
     /**
      * Retrieves a specific JSON node from a JSON data string.
      *
      * @param jsonData the JSON data string
      * @param nodeName the name of the node to retrieve
-     * @return an Optional containing the requested JSON node, or an empty Optional if it cannot be found
+     * @return an Optional containing the requested JSON node, a missing node if the document has no such top level
+     * field, or an empty Optional if the document cannot be parsed
      */
     public static Optional<JsonNode> getJsonNode(final String jsonData, final String nodeName) {
-        try {
-            return Optional.of(new ObjectMapper().readTree(jsonData).path(nodeName));
+        final long start = LOOKUP.start();
+        try (final JsonParser parser = FACTORY.createParser(jsonData)) {
+            return Optional.of(find(parser, parser.nextToken(), JsonPointer.empty().appendProperty(nodeName), false));
         } catch (IOException e) {
             return Optional.empty();
+        } finally {
+            LOOKUP.stop(start);
+        }
+    }
+
+    /**
+     * Retrieves the node at a JSON pointer, such as {@code /order/items/0/sku}, from a JSON data string.
+     *
+     * @param jsonData the JSON data string
+     * @param pointer  the JSON pointer of the node
+     * @return an Optional containing the node, a missing node if there is no node at the pointer, or an empty
+     * Optional if the document cannot be parsed
+     */
+    public static Optional<JsonNode> getJsonNodeAt(final String jsonData, final String pointer) {
+        return getJsonNodeAt(jsonData, JsonPointer.compile(pointer));
+    }
+
+    /**
+     * Retrieves the node at a compiled JSON pointer from a JSON data string.
+     *
+     * @param jsonData the JSON data string
+     * @param pointer  the JSON pointer of the node
+     * @return an Optional containing the node, a missing node if there is no node at the pointer, or an empty
+     * Optional if the document cannot be parsed
+     */
+    public static Optional<JsonNode> getJsonNodeAt(final String jsonData, final JsonPointer pointer) {
+        final long start = LOOKUP.start();
+        try (final JsonParser parser = FACTORY.createParser(jsonData)) {
+            return Optional.of(find(parser, parser.nextToken(), pointer, true));
+        } catch (IOException e) {
+            return Optional.empty();
+        } finally {
+            LOOKUP.stop(start);
+        }
+    }
+
+    /**
+     * Reads the value the parser is positioned on to its end, building only the node at the pointer. Values not on
+     * the way are skipped. Like a tree built from the document, a duplicated field resolves to its last occurrence.
+     * Array elements are only matched by index when {@code indexArrays} is set.
+     */
+    private static JsonNode find(final JsonParser parser, final JsonToken token, final JsonPointer pointer,
+                                 final boolean indexArrays) throws IOException {
+        if (token == null) {
+            return MissingNode.getInstance();
+        }
+        if (pointer.matches()) {
+            final JsonNode node = READER.readTree(parser);
+            return node == null
+                    ? MissingNode.getInstance()
+                    : node;
+        }
+        JsonNode found = MissingNode.getInstance();
+        if (token == JsonToken.START_OBJECT) {
+            final String name = pointer.getMatchingProperty();
+            while (next(parser) == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = next(parser);
+                if (field.equals(name)) {
+                    found = find(parser, value, pointer.tail(), indexArrays);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY && indexArrays && pointer.getMatchingIndex() >= 0) {
+            final int index = pointer.getMatchingIndex();
+            int i = 0;
+            JsonToken element;
+            while ((element = next(parser)) != JsonToken.END_ARRAY) {
+                if (i++ == index) {
+                    found = find(parser, element, pointer.tail(), indexArrays);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
         }
+        return found;
+    }
+
+    /**
+     * Moves to the next token inside a value, failing at the end of the input.
+     */
+    private static JsonToken next(final JsonParser parser) throws IOException {
+        final JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new JsonParseException(parser, "Unexpected end of input");
+        }
+        return token;
     }
 
     /**
@@ -38,16 +153,88 @@ public class JsonValidator {
 
     /**
      * Returns a BiPredicate that checks if a given node with a specified value is present in the provided JSON data.
+     * The JSON data is parsed once, when the predicate is created, and reused by every test.
      *
      * @param jsonData the JSON data to search in
      * @return the BiPredicate that checks if the node with the specified value is present
      */
     public static BiPredicate<String, String> isNodePresentWithValue(final String jsonData) {
-        return
-                (nodeName, nodeValue) ->
-                        getJsonNode(jsonData, nodeName).map(JsonNode::textValue)
-                                .filter(elem -> elem.equals(nodeValue))
-                                .isPresent();
+        final Optional<Document> document = Document.parse(jsonData);
+        return (nodeName, nodeValue) -> document.map(d -> d.hasValue(nodeName, nodeValue)).orElse(false);
+    }
+
+    /**
+     * A parsed JSON document, for running many lookups on the same data.
+     */
+    public static final class Document {
+        private final JsonNode root;
+
+        private Document(final JsonNode root) {
+            this.root = root;
+        }
+
+        /**
+         * Parses a JSON data string.
+         *
+         * @param jsonData the JSON data string
+         * @return the parsed document, or empty if the data cannot be parsed
+         */
+        public static Optional<Document> parse(final String jsonData) {
+            try {
+                final JsonNode root = READER.readTree(jsonData);
+                return Optional.of(new Document(root == null ? MissingNode.getInstance() : root));
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        }
+
+        public JsonNode root() {
+            return root;
+        }
+
+        /**
+         * Returns a top level field of the document.
+         *
+         * @param nodeName the name of the field
+         * @return the node, a missing node if there is no such field
+         */
+        public JsonNode get(final String nodeName) {
+            return root.path(nodeName);
+        }
+
+        /**
+         * Returns the node at a JSON pointer, such as {@code /order/items/0/sku}.
+         *
+         * @param pointer the JSON pointer of the node
+         * @return the node, a missing node if there is no node at the pointer
+         */
+        public JsonNode at(final JsonPointer pointer) {
+            return root.at(pointer);
+        }
+
+        public JsonNode at(final String pointer) {
+            return root.at(pointer);
+        }
 
+        /**
+         * Returns the text of a top level field.
+         *
+         * @param nodeName the name of the field
+         * @return the text, or empty if the field does not exist or is not a string
+         */
+        public Optional<String> value(final String nodeName) {
+            return Optional.ofNullable(get(nodeName).textValue());
+        }
+
+        /**
+         * Tells whether a top level field is a string equal to the given value.
+         *
+         * @param nodeName  the name of the field
+         * @param nodeValue the expected value
+         * @return true if the field has the value
+         */
+        public boolean hasValue(final String nodeName, final String nodeValue) {
+            return value(nodeName).filter(v -> v.equals(nodeValue)).isPresent();
+        }
     }
 }
@@ -0,0 +1,313 @@
+package pt.mleiria.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A registry of named timers, counters and gauges.
+ * <p>
+ * Instruments are created on first use and then shared, so a class looks its instruments up once, into static
+ * fields, and only touches them on the hot path. Timers record nanoseconds into a {@link Histogram}; timing a
+ * block takes two calls and allocates nothing:
+ * <pre>{@code
+ * private static final Metrics.Timer PARSE = Metrics.global().timer("csv.parse");
+ *
+ * final long start = PARSE.start();
+ * ...
+ * PARSE.stop(start);
+ * }</pre>
+ * Counters are {@link LongAdder}s, which stripe their cells across contending threads. Gauges are read when a
+ * snapshot is taken.
+ * <p>
+ * The state of a registry can be exported as JSON or in the Prometheus text format, in memory or to a file
+ * replaced atomically, so that a collector never reads a partial export.
+ */
+public final class Metrics {
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final Map<String, Object> instruments = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry the library reports to.
+     *
+     * @return the global registry
+     */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the timer with the given name, creating it if needed.
+     *
+     * @param name the name of the timer, such as {@code io.load}
+     * @return the timer
+     * @throws IllegalArgumentException if the name belongs to another kind of instrument
+     */
+    public Timer timer(final String name) {
+        return instrument(name, Timer.class);
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     * @throws IllegalArgumentException if the name belongs to another kind of instrument
+     */
+    public Counter counter(final String name) {
+        return instrument(name, Counter.class);
+    }
+
+    /**
+     * Registers a gauge, replacing any previous gauge of the same name.
+     *
+     * @param name  the name of the gauge
+     * @param value the function reading the current value
+     * @throws IllegalArgumentException if the name belongs to another kind of instrument
+     */
+    public void gauge(final String name, final DoubleSupplier value) {
+        instruments.compute(name, (k, previous) -> {
+            if (previous != null && !(previous instanceof Gauge)) {
+                throw new IllegalArgumentException(name + " is already a " + previous.getClass().getSimpleName());
+            }
+            return new Gauge(value);
+        });
+    }
+
+    private <T> T instrument(final String name, final Class<T> type) {
+        final Object instrument = instruments.computeIfAbsent(name, k -> type == Timer.class
+                ? new Timer()
+                : new Counter());
+        if (!type.isInstance(instrument)) {
+            throw new IllegalArgumentException(name + " is already a " + instrument.getClass().getSimpleName());
+        }
+        return type.cast(instrument);
+    }
+
+    /**
+     * Reads every instrument of the registry.
+     *
+     * @return the values of the instruments, sorted by name
+     */
+    public Snapshot snapshot() {
+        final Map<String, Histogram.Snapshot> timers = new TreeMap<>();
+        final Map<String, Long> counters = new TreeMap<>();
+        final Map<String, Double> gauges = new TreeMap<>();
+        instruments.forEach((name, instrument) -> {
+            if (instrument instanceof Timer timer) {
+                timers.put(name, timer.snapshot());
+            } else if (instrument instanceof Counter counter) {
+                counters.put(name, counter.sum());
+            } else {
+                gauges.put(name, ((Gauge) instrument).value.getAsDouble());
+            }
+        });
+        return new Snapshot(timers, counters, gauges);
+    }
+
+    /**
+     * Writes a snapshot of the registry as JSON, replacing the file atomically.
+     *
+     * @param file the destination
+     * @throws IOException if the file can not be written
+     */
+    public void writeJson(final Path file) throws IOException {
+        write(file, snapshot().toJson());
+    }
+
+    /**
+     * Writes a snapshot of the registry in the Prometheus text format, replacing the file atomically.
+     *
+     * @param file the destination, such as a file read by the node exporter textfile collector
+     * @throws IOException if the file can not be written
+     */
+    public void writePrometheus(final Path file) throws IOException {
+        write(file, snapshot().toPrometheus());
+    }
+
+    private static void write(final Path file, final String content) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, content, UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Measures durations in nanoseconds.
+     */
+    public static final class Timer {
+        private final Histogram histogram = new Histogram();
+
+        private Timer() {
+        }
+
+        /**
+         * Starts timing.
+         *
+         * @return the start time, to be given to {@link #stop(long)}
+         */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Records the time elapsed since a start time.
+         *
+         * @param start the value returned by {@link #start()}
+         * @return the elapsed time in nanoseconds
+         */
+        public long stop(final long start) {
+            final long elapsed = System.nanoTime() - start;
+            histogram.record(elapsed);
+            return elapsed;
+        }
+
+        /**
+         * Records a duration measured elsewhere.
+         *
+         * @param nanos the duration in nanoseconds
+         */
+        public void record(final long nanos) {
+            histogram.record(nanos);
+        }
+
+        public Histogram.Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+    }
+
+    /**
+     * Counts events.
+     */
+    public static final class Counter {
+        private final LongAdder adder = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            adder.increment();
+        }
+
+        public void add(final long n) {
+            adder.add(n);
+        }
+
+        public long sum() {
+            return adder.sum();
+        }
+    }
+
+    private record Gauge(DoubleSupplier value) {
+    }
+
+    /**
+     * The values of the instruments of a registry at one point in time.
+     *
+     * @param timers   the timers, in nanoseconds
+     * @param counters the counters
+     * @param gauges   the gauges
+     */
+    public record Snapshot(Map<String, Histogram.Snapshot> timers, Map<String, Long> counters,
+                           Map<String, Double> gauges) {
+
+        /**
+         * Formats the snapshot as a JSON object with a member per kind of instrument. Timers report their count,
+         * sum, minimum, maximum, mean and main percentiles in nanoseconds.
+         *
+         * @return the JSON text
+         */
+        public String toJson() {
+            final ObjectNode root = MAPPER.createObjectNode();
+            final ObjectNode timerNodes = root.putObject("timers");
+            timers.forEach((name, h) -> {
+                final ObjectNode node = timerNodes.putObject(name);
+                node.put("count", h.count());
+                node.put("sum", h.sum());
+                node.put("min", h.min());
+                node.put("max", h.max());
+                node.put("mean", h.mean());
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    node.put(PERCENTILE_NAMES[i], h.percentile(QUANTILES[i]));
+                }
+            });
+            final ObjectNode counterNodes = root.putObject("counters");
+            counters.forEach(counterNodes::put);
+            final ObjectNode gaugeNodes = root.putObject("gauges");
+            gauges.forEach(gaugeNodes::put);
+            return root.toPrettyString();
+        }
+
+        /**
+         * Formats the snapshot in the Prometheus text format. Timers become summaries in seconds, counters get
+         * the {@code _total} suffix, and names are sanitized, {@code io.load} becoming {@code io_load_seconds}.
+         *
+         * @return the exposition text
+         */
+        public String toPrometheus() {
+            final StringBuilder out = new StringBuilder();
+            timers.forEach((name, h) -> {
+                final String metric = sanitize(name) + "_seconds";
+                out.append("# TYPE ").append(metric).append(" summary\n");
+                for (final double q : QUANTILES) {
+                    out.append(metric).append("{quantile=\"").append(q).append("\"} ")
+                            .append(seconds(h.percentile(q))).append('\n');
+                }
+                out.append(metric).append("_sum ").append(seconds(h.sum())).append('\n');
+                out.append(metric).append("_count ").append(h.count()).append('\n');
+            });
+            counters.forEach((name, value) -> {
+                final String metric = sanitize(name) + "_total";
+                out.append("# TYPE ").append(metric).append(" counter\n");
+                out.append(metric).append(' ').append(value).append('\n');
+            });
+            gauges.forEach((name, value) -> {
+                final String metric = sanitize(name);
+                out.append("# TYPE ").append(metric).append(" gauge\n");
+                out.append(metric).append(' ').append(value).append('\n');
+            });
+            return out.toString();
+        }
+
+        private static String seconds(final long nanos) {
+            return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+        }
+
+        private static String sanitize(final String name) {
+            final StringBuilder metric = new StringBuilder(name.length());
+            for (int i = 0; i < name.length(); i++) {
+                final char c = name.charAt(i);
+                metric.append(Character.isLetterOrDigit(c) && c < 128 || c == '_' || c == ':'
+                        ? c
+                        : '_');
+            }
+            return Character.isDigit(metric.charAt(0))
+                    ? "_" + metric
+                    : metric.toString();
+        }
+    }
+}
@@ -8,13 +8,32 @@ public final class StopWatch {
         start = System.nanoTime();
     }
 
+    /**
+     * Calculates the elapsed time in nanoseconds since the start of the function.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Records the elapsed time since the start of the function in a timer.
+     *
+     * @param timer the timer
+     * @return the elapsed time in nanoseconds
+     */
+    public long recordTo(final Metrics.Timer timer) {
+        return timer.stop(start);
+    }
+
     /**
      * Calculates the elapsed time in milliseconds since the start of the function.
      *
      * @return the elapsed time in milliseconds
      */
     public String elapsedTime() {
-        final long duration = (System.nanoTime() - start) / 1_000_000;
+        final long duration = elapsedNanos() / 1_000_000;
         return " {Running Time: " + duration + " msecs";
     }
 }
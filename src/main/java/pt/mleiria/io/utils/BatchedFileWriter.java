@@ -0,0 +1,426 @@
+package pt.mleiria.io.utils;
+
+import pt.mleiria.core.Metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A long-lived writer appending records to a file in large batches.
+ * <p>
+ * Records are copied into a direct buffer. Full buffers are handed to a background thread, which writes every
+ * buffer waiting at that moment with a single gathering write to the file channel and then, depending on the
+ * {@link Sync} policy, forces them to disk with a single fsync: a group commit. Writers only block when all
+ * buffers are waiting to be written, which bounds the memory used by the writer.
+ * <p>
+ * Buffers that are not full are written after at most the configured delay, or when {@link #flush()} or
+ * {@link #close()} is called. The writer is safe to use from several threads; every record is written as a whole.
+ * <p>
+ * A failure of the background thread is not lost: the next call to {@link #write}, {@link #flush()} or
+ * {@link #close()} throws it, and the writer accepts no more records.
+ */
+public final class BatchedFileWriter implements AutoCloseable {
+
+    /**
+     * When written data is forced to the storage device.
+     */
+    public enum Sync {
+        /**
+         * Never, the operating system decides when to write its caches.
+         */
+        NONE,
+        /**
+         * After every batch, so data is durable when {@link #flush()} returns.
+         */
+        GROUP,
+        /**
+         * Once, when the writer is closed.
+         */
+        CLOSE
+    }
+
+    private static final byte NEWLINE = '\n';
+
+    private static final Metrics.Timer WRITE_BATCH = Metrics.global().timer("io.writer.batch");
+
+    private static final Metrics.Counter BYTES = Metrics.global().counter("io.writer.bytes");
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Sync sync;
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final long maxDelayNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition bufferAvailable = lock.newCondition();
+    private final Condition batchWritten = lock.newCondition();
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+    private final Deque<ByteBuffer> pending = new ArrayDeque<>();
+    private final Thread flusher;
+    private ByteBuffer current;
+    private int allocated;
+    private long submitted;
+    private long completed;
+    private boolean closing;
+    private IOException failure;
+
+    private BatchedFileWriter(final Builder builder) throws IOException {
+        this.path = builder.path;
+        this.channel = builder.append
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.sync = builder.sync;
+        this.bufferSize = builder.bufferSize;
+        this.maxBuffers = builder.maxBuffers;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxDelayMillis);
+        this.current = ByteBuffer.allocateDirect(bufferSize);
+        this.allocated = 1;
+        this.flusher = new Thread(this::flushLoop, "BatchedFileWriter-" + path.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Returns a builder for a writer of the given file.
+     *
+     * @param fileName the file to write
+     * @return a new builder, with 1 MB buffers, 4 buffers, a 100 ms delay and {@link Sync#NONE}
+     */
+    public static Builder builder(final String fileName) {
+        return new Builder(Paths.get(fileName));
+    }
+
+    /**
+     * Writes a record followed by a newline, encoded in UTF-8.
+     *
+     * @param record the record to write
+     * @throws IOException if the writer is closed or a previous batch could not be written
+     */
+    public void write(final String record) throws IOException {
+        final byte[] bytes = record.getBytes(UTF_8);
+        lock.lock();
+        try {
+            awaitCurrent();
+            put(bytes);
+            if (!current.hasRemaining()) {
+                submit();
+            }
+            current.put(NEWLINE);
+            if (!current.hasRemaining()) {
+                submit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes raw bytes, without adding a newline.
+     *
+     * @param bytes the bytes to write
+     * @throws IOException if the writer is closed or a previous batch could not be written
+     */
+    public void write(final byte[] bytes) throws IOException {
+        lock.lock();
+        try {
+            awaitCurrent();
+            put(bytes);
+            if (!current.hasRemaining()) {
+                submit();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(final byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!current.hasRemaining()) {
+                submit();
+            }
+            final int n = Math.min(current.remaining(), bytes.length - offset);
+            current.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    /**
+     * Writes every record accepted so far and, with {@link Sync#GROUP}, forces it to disk.
+     *
+     * @throws IOException if a batch could not be written
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            awaitCurrent();
+            if (current.position() > 0) {
+                submit();
+            }
+            awaitCompleted(submitted);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every record accepted so far, stops the background thread and closes the file.
+     *
+     * @throws IOException if a batch could not be written or the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closing) {
+                return;
+            }
+            while (current == null && failure == null) {
+                bufferAvailable.awaitUninterruptibly();
+            }
+            if (failure == null && current.position() > 0) {
+                try {
+                    submit();
+                } catch (final IOException x) {
+                    // the failure is reported once the file is closed
+                }
+            }
+            closing = true;
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (final InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+        try (channel) {
+            if (failure == null && sync == Sync.CLOSE) {
+                channel.force(false);
+            }
+        }
+        if (failure != null) {
+            throw new IOException("Writing " + path + " failed", failure);
+        }
+    }
+
+    /**
+     * Waits while another thread is waiting for a free buffer in the middle of a record, then checks the writer
+     * can still be used.
+     */
+    private void awaitCurrent() throws IOException {
+        while (current == null && failure == null && !closing) {
+            bufferAvailable.awaitUninterruptibly();
+        }
+        ensureOpen();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (failure != null) {
+            throw new IOException("Writing " + path + " failed", failure);
+        }
+        if (closing) {
+            throw new IOException("Writer of " + path + " is closed");
+        }
+    }
+
+    /**
+     * Hands the current buffer to the flusher and takes an empty one, waiting for one if all are in use.
+     */
+    private void submit() throws IOException {
+        pending.add(current.flip());
+        submitted++;
+        workAvailable.signal();
+        current = null;
+        while (free.isEmpty() && allocated == maxBuffers && failure == null) {
+            bufferAvailable.awaitUninterruptibly();
+        }
+        if (failure != null) {
+            throw new IOException("Writing " + path + " failed", failure);
+        }
+        current = free.isEmpty()
+                ? newBuffer()
+                : free.poll();
+        bufferAvailable.signalAll();
+    }
+
+    private ByteBuffer newBuffer() {
+        allocated++;
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void awaitCompleted(final long target) throws IOException {
+        while (completed < target && failure == null) {
+            batchWritten.awaitUninterruptibly();
+        }
+        if (failure != null) {
+            throw new IOException("Writing " + path + " failed", failure);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            final ByteBuffer[] batch;
+            final long target;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closing) {
+                    if (workAvailable.awaitNanos(maxDelayNanos) <= 0 && pending.isEmpty()) {
+                        submitLate();
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending.toArray(new ByteBuffer[0]);
+                pending.clear();
+                target = submitted;
+            } catch (final InterruptedException x) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            IOException error = null;
+            try {
+                writeBatch(batch);
+            } catch (final IOException x) {
+                error = x;
+            }
+            lock.lock();
+            try {
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+                for (final ByteBuffer buffer : batch) {
+                    free.add(buffer.clear());
+                }
+                completed = target;
+                bufferAvailable.signalAll();
+                batchWritten.signalAll();
+                if (failure != null) {
+                    pending.clear();
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Submits a buffer that has waited longer than the maximum delay, if a spare buffer can replace it.
+     */
+    private void submitLate() {
+        if (current == null || current.position() == 0 || (free.isEmpty() && allocated == maxBuffers)) {
+            return;
+        }
+        pending.add(current.flip());
+        submitted++;
+        current = free.isEmpty()
+                ? newBuffer()
+                : free.poll();
+    }
+
+    private void writeBatch(final ByteBuffer[] batch) throws IOException {
+        final long start = WRITE_BATCH.start();
+        long remaining = 0;
+        for (final ByteBuffer buffer : batch) {
+            remaining += buffer.remaining();
+        }
+        BYTES.add(remaining);
+        while (remaining > 0) {
+            remaining -= channel.write(batch);
+        }
+        if (sync == Sync.GROUP) {
+            channel.force(false);
+        }
+        WRITE_BATCH.stop(start);
+    }
+
+    /**
+     * Configures a {@link BatchedFileWriter}.
+     */
+    public static final class Builder {
+        private final Path path;
+        private boolean append;
+        private Sync sync = Sync.NONE;
+        private int bufferSize = 1 << 20;
+        private int maxBuffers = 4;
+        private long maxDelayMillis = 100;
+
+        private Builder(final Path path) {
+            this.path = path;
+        }
+
+        /**
+         * Appends to the file instead of truncating it.
+         */
+        public Builder append(final boolean append) {
+            this.append = append;
+            return this;
+        }
+
+        public Builder sync(final Sync sync) {
+            this.sync = sync;
+            return this;
+        }
+
+        /**
+         * Sets the size of every buffer, which is also the largest batch handed to the flusher at once.
+         */
+        public Builder bufferSize(final int bufferSize) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of buffers, that is how many batches may wait to be written before writers block.
+         */
+        public Builder maxBuffers(final int maxBuffers) {
+            if (maxBuffers < 2) {
+                throw new IllegalArgumentException("At least two buffers are needed: " + maxBuffers);
+            }
+            this.maxBuffers = maxBuffers;
+            return this;
+        }
+
+        /**
+         * Sets how long a record may wait in a buffer that is not full before it is written.
+         */
+        public Builder maxDelayMillis(final long maxDelayMillis) {
+            if (maxDelayMillis < 1) {
+                throw new IllegalArgumentException("Delay must be positive: " + maxDelayMillis);
+            }
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Opens the file and starts the background thread.
+         *
+         * @return a new writer, which must be closed
+         * @throws IOException if the file can not be opened
+         */
+        public BatchedFileWriter open() throws IOException {
+            return new BatchedFileWriter(this);
+        }
+    }
+}
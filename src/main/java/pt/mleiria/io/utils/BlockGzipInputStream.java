@@ -0,0 +1,278 @@
+package pt.mleiria.io.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a block compressed gzip file, inflating many blocks in parallel.
+ * <p>
+ * A block compressed file is a sequence of small gzip members, each recording its own compressed size in a
+ * {@code BC} extra subfield, as written by {@link BlockGzipOutputStream} or by {@code bgzip}. Knowing where every
+ * member ends, the stream reads members ahead of the consumer and inflates them concurrently on the common
+ * fork-join pool, keeping a window of blocks in flight. Blocks are returned in order, so the consumer sees the
+ * same bytes as with a sequential decompressor, without waiting for the inflater while the window is full.
+ * <p>
+ * Every member is checked against the CRC and size recorded in its trailer.
+ */
+public final class BlockGzipInputStream extends InputStream {
+
+    static final int ID1 = 0x1f;
+    static final int ID2 = 0x8b;
+    static final int DEFLATE = 8;
+    static final int FEXTRA = 4;
+    private static final int FHCRC = 2;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 8;
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final InputStream in;
+    private final int window;
+    private final Deque<Future<byte[]>> inflating = new ArrayDeque<>();
+    private byte[] block = new byte[0];
+    private int position;
+    private boolean lastMemberRead;
+    private boolean closed;
+
+    /**
+     * Creates a stream keeping twice as many blocks in flight as there are threads in the common pool.
+     *
+     * @param in the compressed input, positioned at the start of a member
+     */
+    public BlockGzipInputStream(final InputStream in) {
+        this(in, 2 * Math.max(1, ForkJoinPool.getCommonPoolParallelism()) + 2);
+    }
+
+    /**
+     * Creates a stream keeping the given number of blocks in flight.
+     *
+     * @param in     the compressed input, positioned at the start of a member
+     * @param window the number of blocks read and inflated ahead of the consumer
+     */
+    public BlockGzipInputStream(final InputStream in, final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        this.in = in;
+        this.window = window;
+    }
+
+    /**
+     * Returns the size of the gzip member starting with the given header, if it records one.
+     *
+     * @param header the first bytes of a member
+     * @param length the number of valid bytes in header
+     * @return the size of the member in bytes, or -1 if the header has no {@code BC} subfield
+     */
+    static int blockSize(final byte[] header, final int length) {
+        if (length < HEADER_SIZE || (header[0] & 0xff) != ID1 || (header[1] & 0xff) != ID2
+                || header[2] != DEFLATE || (header[3] & FEXTRA) == 0) {
+            return -1;
+        }
+        final int extraLength = unsignedShort(header, 10);
+        final int end = Math.min(length, HEADER_SIZE + extraLength);
+        for (int i = HEADER_SIZE; i + 4 <= end; ) {
+            final int subfieldLength = unsignedShort(header, i + 2);
+            if (header[i] == 'B' && header[i + 1] == 'C' && subfieldLength == 2 && i + 6 <= end) {
+                return unsignedShort(header, i + 4) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+        return -1;
+    }
+
+    private static int unsignedShort(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int intLE(final byte[] bytes, final int offset) {
+        return unsignedShort(bytes, offset) | unsignedShort(bytes, offset + 2) << 16;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureBlock()) {
+            return -1;
+        }
+        final int n = Math.min(len, block.length - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return block.length - position;
+    }
+
+    private boolean ensureBlock() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (position == block.length) {
+            fillWindow();
+            final Future<byte[]> next = inflating.poll();
+            if (next == null) {
+                return false;
+            }
+            block = await(next);
+            position = 0;
+            fillWindow();
+        }
+        return true;
+    }
+
+    private static byte[] await(final Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating");
+        } catch (final ExecutionException x) {
+            final Throwable cause = x.getCause();
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void fillWindow() throws IOException {
+        while (!lastMemberRead && inflating.size() < window) {
+            final byte[] member = readMember();
+            if (member == null) {
+                lastMemberRead = true;
+            } else {
+                inflating.add(CompletableFuture.supplyAsync(() -> inflate(member), ForkJoinPool.commonPool()));
+            }
+        }
+    }
+
+    /**
+     * Reads the next member whole, or returns null at the end of the input.
+     */
+    private byte[] readMember() throws IOException {
+        final byte[] header = new byte[HEADER_SIZE];
+        final int first = in.readNBytes(header, 0, HEADER_SIZE);
+        if (first == 0) {
+            return null;
+        }
+        if (first < HEADER_SIZE) {
+            throw new EOFException("Truncated gzip member header");
+        }
+        final byte[] extra = new byte[unsignedShort(header, 10)];
+        if (in.readNBytes(extra, 0, extra.length) < extra.length) {
+            throw new EOFException("Truncated gzip member header");
+        }
+        final byte[] start = new byte[HEADER_SIZE + extra.length];
+        System.arraycopy(header, 0, start, 0, HEADER_SIZE);
+        System.arraycopy(extra, 0, start, HEADER_SIZE, extra.length);
+        final int size = blockSize(start, start.length);
+        if (size < 0) {
+            throw new IOException("Gzip member is not block compressed");
+        }
+        if (size < start.length + TRAILER_SIZE) {
+            throw new IOException("Invalid gzip block size " + size);
+        }
+        final byte[] member = new byte[size];
+        System.arraycopy(start, 0, member, 0, start.length);
+        if (in.readNBytes(member, start.length, size - start.length) < size - start.length) {
+            throw new EOFException("Truncated gzip member");
+        }
+        return member;
+    }
+
+    private static byte[] inflate(final byte[] member) {
+        try {
+            final int flags = member[3];
+            int offset = HEADER_SIZE + unsignedShort(member, 10);
+            if ((flags & FNAME) != 0) {
+                offset = skipZeroTerminated(member, offset);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                offset = skipZeroTerminated(member, offset);
+            }
+            if ((flags & FHCRC) != 0) {
+                offset += 2;
+            }
+            final int trailer = member.length - TRAILER_SIZE;
+            final int expectedCrc = intLE(member, trailer);
+            final int size = intLE(member, trailer + 4);
+            if (size < 0 || offset > trailer) {
+                throw new IOException("Invalid gzip block");
+            }
+            final byte[] data = new byte[size];
+            final Inflater inflater = INFLATERS.get();
+            inflater.reset();
+            inflater.setInput(member, offset, trailer - offset);
+            int n = 0;
+            while (n < size && !inflater.finished()) {
+                final int inflated = inflater.inflate(data, n, size - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != size) {
+                throw new IOException("Corrupt gzip block: expected " + size + " bytes, inflated " + n);
+            }
+            final CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw new IOException("Corrupt gzip block: CRC mismatch");
+            }
+            return data;
+        } catch (final IOException x) {
+            throw new UncheckedIOException(x);
+        } catch (final DataFormatException x) {
+            throw new UncheckedIOException(new IOException("Corrupt gzip block", x));
+        }
+    }
+
+    private static int skipZeroTerminated(final byte[] bytes, final int from) throws IOException {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                return i + 1;
+            }
+        }
+        throw new IOException("Unterminated gzip header field");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (final Future<byte[]> future : inflating) {
+            future.cancel(false);
+        }
+        inflating.clear();
+        in.close();
+    }
+}
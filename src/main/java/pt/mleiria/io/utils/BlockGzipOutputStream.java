@@ -0,0 +1,129 @@
+package pt.mleiria.io.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses data into a sequence of independent gzip members of at most 64 KB, each recording its compressed
+ * size in a {@code BC} extra subfield. The output is a valid multi-member gzip file that any gzip tool can read,
+ * and that {@link BlockGzipInputStream} decompresses in parallel. The layout is the one of {@code bgzip}, so the
+ * files can be read by the tools of that format too.
+ */
+public final class BlockGzipOutputStream extends OutputStream {
+
+    /**
+     * Maximum number of uncompressed bytes per block, small enough for an incompressible block to fit in 64 KB.
+     */
+    static final int BLOCK_SIZE = 0xff00;
+
+    private static final int MAX_MEMBER_SIZE = 0x10000;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] compressed = new byte[MAX_MEMBER_SIZE];
+    private int length;
+    private boolean closed;
+
+    public BlockGzipOutputStream(final OutputStream out) {
+        this(out, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param out   the destination of the compressed data
+     * @param level the compression level, from 0 to 9
+     */
+    public BlockGzipOutputStream(final OutputStream out, final int level) {
+        this.out = out;
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (length == BLOCK_SIZE) {
+            writeBlock(block, length);
+        }
+        block[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (length == BLOCK_SIZE) {
+                writeBlock(block, length);
+            }
+            final int n = Math.min(remaining, BLOCK_SIZE - length);
+            System.arraycopy(b, offset, block, length, n);
+            length += n;
+            offset += n;
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Compresses the pending bytes into a block, so that everything written so far can be decompressed.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (length > 0) {
+            writeBlock(block, length);
+        }
+        out.flush();
+    }
+
+    private void writeBlock(final byte[] data, final int size) throws IOException {
+        deflater.reset();
+        deflater.setInput(data, 0, size);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        crc.reset();
+        crc.update(data, 0, size);
+        final int memberSize = 18 + compressedLength + 8;
+        final byte[] header = {
+                (byte) BlockGzipInputStream.ID1, (byte) BlockGzipInputStream.ID2, BlockGzipInputStream.DEFLATE,
+                BlockGzipInputStream.FEXTRA, 0, 0, 0, 0, 0, (byte) 0xff,
+                6, 0, 'B', 'C', 2, 0, (byte) (memberSize - 1), (byte) ((memberSize - 1) >>> 8)
+        };
+        out.write(header);
+        out.write(compressed, 0, compressedLength);
+        writeIntLE((int) crc.getValue());
+        writeIntLE(size);
+        length = 0;
+    }
+
+    private void writeIntLE(final int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * Writes the pending bytes and an empty end of file block, then closes the destination.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (out) {
+            if (length > 0) {
+                writeBlock(block, length);
+            }
+            writeBlock(EMPTY, 0);
+        } finally {
+            deflater.end();
+        }
+    }
+}
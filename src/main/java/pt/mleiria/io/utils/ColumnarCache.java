@@ -0,0 +1,264 @@
+package pt.mleiria.io.utils;
+
+import pt.mleiria.io.utils.NumericTable.Layout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * A binary, columnar cache of a parsed numeric file.
+ * <p>
+ * A cache file starts with a header holding the shape of the table, the type of every column, the settings of the
+ * reader that parsed it and the size and modification time of the source file it was parsed from. The columns
+ * follow, one after the other, as little endian doubles aligned on 8 bytes:
+ * <pre>
+ *  0  magic "MLCC"          4 bytes
+ *  4  version               int
+ *  8  rows                  long
+ * 16  columns               int
+ * 20  reader settings       int, delimiter and header flag, 0 if unknown
+ * 24  source size           long
+ * 32  source modified (ms)  long
+ * 40  column types          1 byte per column, padded to a multiple of 8
+ *  …  column 0 … column n-1 rows doubles each
+ * </pre>
+ * Opening a cache maps every column into memory, so it takes the same time whatever the size of the table and
+ * pages are only read from disk when the columns are accessed.
+ */
+public final class ColumnarCache {
+
+    /**
+     * Extension appended to the name of a source file to name its cache.
+     */
+    public static final String EXTENSION = ".mlcc";
+
+    private static final byte[] MAGIC = {'M', 'L', 'C', 'C'};
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 40;
+
+    private static final byte DOUBLE = 1;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Settings recorded by caches written without a reader, matching no reader.
+     */
+    private static final int UNKNOWN_SETTINGS = 0;
+
+    /**
+     * Settings passed when opening a cache to accept whatever reader wrote it.
+     */
+    private static final int ANY_SETTINGS = -1;
+
+    private ColumnarCache() {
+    }
+
+    /**
+     * The size and modification time of a source file, as recorded in the header of its cache.
+     */
+    private record Stamp(long size, long modified) {
+
+        static Stamp of(final Path source) throws IOException {
+            final BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+            return new Stamp(attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    /**
+     * Returns the path of the cache of a source file, next to it.
+     *
+     * @param source the source file
+     * @return the path of its cache
+     */
+    public static Path cachePath(final Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Reads a numeric file through its cache. The cache is used when it matches the current size and
+     * modification time of the source and was parsed with the same delimiter and header setting as the reader,
+     * otherwise the source is parsed with the reader and the cache rewritten.
+     *
+     * @param source the numeric text file
+     * @param reader the reader parsing the source when the cache is stale
+     * @return the table, memory-mapped from the cache
+     * @throws IOException if the source can not be read or the cache can not be written
+     */
+    public static ColumnarTable load(final Path source, final NumericCsvReader reader) throws IOException {
+        final Path cache = cachePath(source);
+        final Stamp stamp = Stamp.of(source);
+        final int settings = reader.parseSettings();
+        if (Files.isRegularFile(cache)) {
+            try {
+                final Optional<ColumnarTable> table = open(cache, stamp, settings);
+                if (table.isPresent()) {
+                    return table.get();
+                }
+            } catch (final IOException x) {
+                // unreadable cache, rebuilt below
+            }
+        }
+        write(reader.withLayout(Layout.COLUMN_MAJOR).read(source.toString()), cache, stamp, settings);
+        return open(cache);
+    }
+
+    /**
+     * Writes a table to a cache file, recording the current size and modification time of its source. The reader
+     * settings are recorded as unknown, so {@link #load} parses the source again. The cache is written to a
+     * temporary file first and moved in place, so readers never see a partial cache.
+     *
+     * @param table  the parsed table
+     * @param cache  the cache file
+     * @param source the file the table was parsed from
+     * @throws IOException if the source attributes can not be read or the cache can not be written
+     */
+    public static void write(final NumericTable table, final Path cache, final Path source) throws IOException {
+        write(table, cache, Stamp.of(source), UNKNOWN_SETTINGS);
+    }
+
+    private static void write(final NumericTable table, final Path cache, final Stamp stamp, final int settings)
+            throws IOException {
+        final Path parent = cache.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(parent, cache.getFileName().toString(), ".tmp");
+        try {
+            try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer header = ByteBuffer.allocate(dataOffset(table.columns()))
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .put(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(table.rows())
+                        .putInt(table.columns())
+                        .putInt(settings)
+                        .putLong(stamp.size())
+                        .putLong(stamp.modified());
+                for (int c = 0; c < table.columns(); c++) {
+                    header.put(DOUBLE);
+                }
+                writeFully(channel, header.clear());
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                final DoubleBuffer doubles = buffer.asDoubleBuffer();
+                final boolean columnMajor = table.layout() == Layout.COLUMN_MAJOR;
+                for (int c = 0; c < table.columns(); c++) {
+                    for (int r = 0; r < table.rows(); ) {
+                        doubles.clear();
+                        if (columnMajor) {
+                            final int n = Math.min(doubles.remaining(), table.rows() - r);
+                            doubles.put(table.values(), c * table.rows() + r, n);
+                            r += n;
+                        } else {
+                            while (doubles.hasRemaining() && r < table.rows()) {
+                                doubles.put(table.values()[r * table.columns() + c]);
+                                r++;
+                            }
+                        }
+                        writeFully(channel, buffer.clear().limit(doubles.position() * Double.BYTES));
+                    }
+                }
+                channel.force(false);
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Opens a cache file without checking its source.
+     *
+     * @param cache the cache file
+     * @return the table, memory-mapped from the cache
+     * @throws IOException if the file can not be read or is not a valid cache
+     */
+    public static ColumnarTable open(final Path cache) throws IOException {
+        return open(cache, null, ANY_SETTINGS).orElseThrow();
+    }
+
+    /**
+     * Opens a cache file if it is still fresh, that is if its source has the size and modification time recorded
+     * when the cache was written. The reader settings are not checked.
+     *
+     * @param cache  the cache file
+     * @param source the file the cache was built from
+     * @return the table, or empty if the source changed since
+     * @throws IOException if a file can not be read or the cache is not valid
+     */
+    public static Optional<ColumnarTable> open(final Path cache, final Path source) throws IOException {
+        return open(cache, Stamp.of(source), ANY_SETTINGS);
+    }
+
+    private static Optional<ColumnarTable> open(final Path cache, final Stamp stamp, final int settings)
+            throws IOException {
+        try (final FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.flip();
+            final byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+                throw new IOException("Not a columnar cache: " + cache);
+            }
+            final long rows = header.getLong();
+            final int columns = header.getInt();
+            final int recordedSettings = header.getInt();
+            final Stamp recorded = new Stamp(header.getLong(), header.getLong());
+            if (stamp != null && !stamp.equals(recorded)
+                    || settings != ANY_SETTINGS && settings != recordedSettings) {
+                return Optional.empty();
+            }
+            if (rows < 0 || rows > Integer.MAX_VALUE || columns < 0
+                    || channel.size() != dataOffset(columns) + rows * columns * Double.BYTES) {
+                throw new IOException("Corrupt columnar cache: " + cache);
+            }
+            final ByteBuffer types = ByteBuffer.allocate(columns);
+            readFully(channel, types, HEADER_SIZE);
+            for (int c = 0; c < columns; c++) {
+                if (types.get(c) != DOUBLE) {
+                    throw new IOException("Unsupported column type " + types.get(c) + " in " + cache);
+                }
+            }
+            final long columnSize = rows * Double.BYTES;
+            final DoubleBuffer[] data = new DoubleBuffer[columns];
+            for (int c = 0; c < columns; c++) {
+                data[c] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset(columns) + c * columnSize, columnSize)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+            }
+            return Optional.of(new ColumnarTable(data, (int) rows));
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, p);
+            if (n < 0) {
+                throw new IOException("Truncated columnar cache");
+            }
+            p += n;
+        }
+    }
+
+    private static int dataOffset(final int columns) {
+        return (HEADER_SIZE + columns + 7) & ~7;
+    }
+}
@@ -0,0 +1,102 @@
+package pt.mleiria.io.utils;
+
+import pt.mleiria.io.utils.NumericTable.Layout;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A table of numbers stored column by column, either on the heap or memory-mapped from a {@link ColumnarCache}.
+ * <p>
+ * Every column is a {@link DoubleBuffer}, so a mapped table is read straight from the page cache without being
+ * copied into the heap.
+ */
+public final class ColumnarTable {
+
+    private final DoubleBuffer[] columns;
+    private final int rows;
+
+    ColumnarTable(final DoubleBuffer[] columns, final int rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Views a table as columns. A column-major table is shared, a row-major one is copied.
+     *
+     * @param table the source table
+     * @return the columns of the table
+     */
+    public static ColumnarTable of(final NumericTable table) {
+        final NumericTable source = table.layout() == Layout.COLUMN_MAJOR
+                ? table
+                : transpose(table);
+        final DoubleBuffer[] columns = new DoubleBuffer[source.columns()];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = DoubleBuffer.wrap(source.values(), c * source.rows(), source.rows()).slice();
+        }
+        return new ColumnarTable(columns, source.rows());
+    }
+
+    private static NumericTable transpose(final NumericTable table) {
+        final double[] values = new double[table.values().length];
+        final int rows = table.rows();
+        final int columns = table.columns();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                values[c * rows + r] = table.values()[r * columns + c];
+            }
+        }
+        return new NumericTable(values, rows, columns, Layout.COLUMN_MAJOR);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns.length;
+    }
+
+    /**
+     * Returns a read-only view of a column, positioned at its first row.
+     *
+     * @param column the index of the column
+     * @return the values of the column
+     */
+    public DoubleBuffer column(final int column) {
+        return columns[column].asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row    the row of the cell
+     * @param column the column of the cell
+     * @return the value of the cell, NaN if it was missing
+     */
+    public double get(final int row, final int column) {
+        return columns[column].get(row);
+    }
+
+    /**
+     * Copies the table into a single array.
+     *
+     * @param layout the layout of the copy
+     * @return a heap table with the same cells
+     */
+    public NumericTable toNumericTable(final Layout layout) {
+        final int width = columns.length;
+        final double[] values = new double[rows * width];
+        for (int c = 0; c < width; c++) {
+            final DoubleBuffer column = columns[c];
+            if (layout == Layout.COLUMN_MAJOR) {
+                column.get(0, values, c * rows, rows);
+            } else {
+                for (int r = 0; r < rows; r++) {
+                    values[r * width + c] = column.get(r);
+                }
+            }
+        }
+        return new NumericTable(values, rows, width, layout);
+    }
+}
@@ -0,0 +1,178 @@
+package pt.mleiria.io.utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens files that may be gzip compressed, detecting the compression from their content.
+ * <p>
+ * Block compressed files, see {@link BlockGzipOutputStream}, are inflated in parallel by a
+ * {@link BlockGzipInputStream}. Other gzip files, including plain multi-member ones whose member boundaries are
+ * only known by inflating them, are inflated by a {@link GZIPInputStream} on a background thread, ahead of the
+ * consumer, so that parsing and inflating still overlap. Uncompressed files are returned as they are.
+ */
+public final class Compression {
+
+    private static final int PEEK_SIZE = 64;
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int READ_AHEAD_CHUNKS = 16;
+
+    private Compression() {
+    }
+
+    /**
+     * Tells whether a file starts with the gzip magic number.
+     *
+     * @param file the file to test
+     * @return true if the file is gzip compressed
+     * @throws IOException if the file can not be read
+     */
+    public static boolean isGzip(final Path file) throws IOException {
+        try (final InputStream in = Files.newInputStream(file)) {
+            return in.read() == BlockGzipInputStream.ID1 && in.read() == BlockGzipInputStream.ID2;
+        }
+    }
+
+    /**
+     * Opens a file for reading its uncompressed content.
+     *
+     * @param file the file, compressed or not
+     * @return a stream of the uncompressed bytes of the file
+     * @throws IOException if the file can not be opened
+     */
+    public static InputStream open(final Path file) throws IOException {
+        final BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), CHUNK_SIZE);
+        try {
+            in.mark(PEEK_SIZE);
+            final byte[] header = in.readNBytes(PEEK_SIZE);
+            in.reset();
+            if (header.length < 2 || (header[0] & 0xff) != BlockGzipInputStream.ID1
+                    || (header[1] & 0xff) != BlockGzipInputStream.ID2) {
+                return in;
+            }
+            return BlockGzipInputStream.blockSize(header, header.length) > 0
+                    ? new BlockGzipInputStream(in)
+                    : new ReadAheadInputStream(new GZIPInputStream(in, CHUNK_SIZE));
+        } catch (final IOException | RuntimeException x) {
+            in.close();
+            throw x;
+        }
+    }
+
+    /**
+     * Reads a stream on a background thread into a bounded queue of chunks.
+     */
+    private static final class ReadAheadInputStream extends InputStream {
+        private static final byte[] END = new byte[0];
+
+        private final InputStream in;
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(READ_AHEAD_CHUNKS);
+        private final Thread reader;
+        private volatile IOException failure;
+        private volatile boolean closed;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private boolean done;
+
+        private ReadAheadInputStream(final InputStream in) {
+            this.in = in;
+            this.reader = new Thread(this::readAhead, "Compression-read-ahead");
+            this.reader.setDaemon(true);
+            this.reader.start();
+        }
+
+        private void readAhead() {
+            try {
+                while (!closed) {
+                    final byte[] buffer = new byte[CHUNK_SIZE];
+                    final int n = in.readNBytes(buffer, 0, CHUNK_SIZE);
+                    if (n == 0) {
+                        break;
+                    }
+                    chunks.put(n == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, n));
+                }
+            } catch (final IOException x) {
+                failure = x;
+            } catch (final InterruptedException x) {
+                return;
+            }
+            try {
+                chunks.put(END);
+            } catch (final InterruptedException x) {
+                // closed while waiting, nobody is left to read the end marker
+            }
+        }
+
+        private boolean ensureChunk() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (position == chunk.length) {
+                if (done) {
+                    return false;
+                }
+                try {
+                    chunk = chunks.take();
+                } catch (final InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while inflating");
+                }
+                position = 0;
+                if (chunk == END) {
+                    done = true;
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureChunk()
+                    ? chunk[position++] & 0xff
+                    : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureChunk()) {
+                return -1;
+            }
+            final int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            reader.interrupt();
+            chunks.clear();
+            try {
+                reader.join();
+            } catch (final InterruptedException x) {
+                Thread.currentThread().interrupt();
+            }
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package pt.mleiria.io.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An index of the regular files of a directory, recording the name, size and modification time of each file.
+ * <p>
+ * Every change to the index gets the next number of a sequence, and the index keeps the files ordered by the
+ * sequence number of their last change. Asking what changed since a given snapshot is therefore answered from
+ * the index, in time proportional to the number of changes, without listing the directory. Deleted files are
+ * kept as tombstones so that deletions are reported too, until they are {@link #compact compacted}.
+ * <p>
+ * The index is brought up to date either by a full {@link #rescan()}, which only records the files that differ,
+ * or incrementally by {@link #watch() watching} the directory: a background thread then applies the events of
+ * the file system as they arrive, falling back to a rescan when events were lost.
+ * <p>
+ * An index can be saved and loaded again, so that a job restarting later still answers what changed since a
+ * snapshot it has seen before; a rescan after loading records what changed while nobody was watching.
+ */
+public final class DirectoryIndex implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(DirectoryIndex.class.getName());
+
+    private static final int MAGIC = 0x4D4C4458;
+
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final NavigableMap<Long, String> changes = new TreeMap<>();
+    private final Object scanLock = new Object();
+    private final Runnable afterListing;
+    private long sequence;
+    private WatchService watcher;
+    private Thread watchThread;
+
+    /**
+     * The state of a file in the index.
+     *
+     * @param name     the name of the file in the directory
+     * @param size     the size of the file in bytes, 0 for a deleted file
+     * @param modified the modification time of the file in milliseconds, 0 for a deleted file
+     * @param sequence the sequence number of the last change of the file
+     * @param deleted  whether the file was deleted
+     */
+    public record Entry(String name, long size, long modified, long sequence, boolean deleted) {
+    }
+
+    private DirectoryIndex(final Path directory) {
+        this(directory, () -> {
+        });
+    }
+
+    /**
+     * Creates an empty index whose rescans run the given action between listing the directory and applying the
+     * listing, so that tests can change the directory in between.
+     */
+    DirectoryIndex(final Path directory, final Runnable afterListing) {
+        this.directory = directory;
+        this.afterListing = afterListing;
+    }
+
+    /**
+     * Lists a directory into a new index.
+     *
+     * @param directory the directory to index
+     * @return an index of the regular files of the directory
+     * @throws IOException if the directory can not be listed
+     */
+    public static DirectoryIndex scan(final Path directory) throws IOException {
+        final DirectoryIndex index = new DirectoryIndex(directory);
+        index.rescan();
+        return index;
+    }
+
+    /**
+     * Loads an index saved by {@link #save(Path)}. The index reflects the directory at the time it was saved.
+     *
+     * @param file the saved index
+     * @return the loaded index
+     * @throws IOException if the file can not be read or is not an index
+     */
+    public static DirectoryIndex load(final Path file) throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a directory index: " + file);
+            }
+            final DirectoryIndex index = new DirectoryIndex(Paths.get(in.readUTF()));
+            index.sequence = in.readLong();
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readBoolean());
+                index.entries.put(entry.name(), entry);
+                index.changes.put(entry.sequence(), entry.name());
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Saves the index, replacing the file atomically.
+     *
+     * @param file the file to write
+     * @throws IOException if the file can not be written
+     */
+    public void save(final Path file) throws IOException {
+        final Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                ".tmp");
+        try {
+            try (final DataOutputStream out =
+                         new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                synchronized (this) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(directory.toString());
+                    out.writeLong(sequence);
+                    out.writeInt(entries.size());
+                    for (final Entry entry : entries.values()) {
+                        out.writeUTF(entry.name());
+                        out.writeLong(entry.size());
+                        out.writeLong(entry.modified());
+                        out.writeLong(entry.sequence());
+                        out.writeBoolean(entry.deleted());
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the current snapshot, to be passed later to {@link #changesSince(long)}.
+     *
+     * @return the sequence number of the last change
+     */
+    public synchronized long snapshot() {
+        return sequence;
+    }
+
+    /**
+     * Returns the files created, modified or deleted after a snapshot, in the order of their last change.
+     * A file changed several times is reported once, in its latest state.
+     *
+     * @param snapshot a value returned by {@link #snapshot()}
+     * @return the changed files, deleted ones flagged as such
+     */
+    public synchronized List<Entry> changesSince(final long snapshot) {
+        final List<Entry> changed = new ArrayList<>();
+        for (final String name : changes.tailMap(snapshot, false).values()) {
+            changed.add(entries.get(name));
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the files currently in the directory, in no particular order.
+     *
+     * @return the entries that are not deleted
+     */
+    public synchronized List<Entry> files() {
+        final List<Entry> files = new ArrayList<>(entries.size());
+        for (final Entry entry : entries.values()) {
+            if (!entry.deleted()) {
+                files.add(entry);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the entry of a file, if it is in the directory.
+     *
+     * @param name the name of the file
+     * @return the entry, empty if the file does not exist or was deleted
+     */
+    public synchronized Optional<Entry> get(final String name) {
+        final Entry entry = entries.get(name);
+        return entry == null || entry.deleted()
+                ? Optional.empty()
+                : Optional.of(entry);
+    }
+
+    /**
+     * Forgets the deletions recorded up to a snapshot. Callers must no longer ask for changes since an
+     * earlier snapshot, as those deletions would not be reported.
+     *
+     * @param snapshot the last snapshot whose deletions are forgotten
+     */
+    public synchronized void compact(final long snapshot) {
+        final Iterator<Map.Entry<Long, String>> it = changes.headMap(snapshot, true).entrySet().iterator();
+        while (it.hasNext()) {
+            final String name = it.next().getValue();
+            if (entries.get(name).deleted()) {
+                entries.remove(name);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Lists the directory and records the files that were created, modified or deleted since the last update.
+     * Rescans and the events of the watcher are applied one at a time, so an event can not be overwritten by an
+     * older listing; queries are not blocked while the directory is listed.
+     *
+     * @throws IOException if the directory can not be listed
+     */
+    public void rescan() throws IOException {
+        synchronized (scanLock) {
+            final Map<String, BasicFileAttributes> listed = new HashMap<>();
+            try (final DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (final Path file : stream) {
+                    try {
+                        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                                LinkOption.NOFOLLOW_LINKS);
+                        if (attributes.isRegularFile()) {
+                            listed.put(file.getFileName().toString(), attributes);
+                        }
+                    } catch (final NoSuchFileException x) {
+                        // deleted while listing
+                    }
+                }
+            }
+            afterListing.run();
+            synchronized (this) {
+                for (final Map.Entry<String, BasicFileAttributes> file : listed.entrySet()) {
+                    update(file.getKey(), file.getValue());
+                }
+                for (final Entry entry : new ArrayList<>(entries.values())) {
+                    if (!entry.deleted() && !listed.containsKey(entry.name())) {
+                        delete(entry.name());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts updating the index from the events of the file system, on a background thread.
+     * A rescan is done first, so that changes made before watching started are not missed.
+     *
+     * @throws IOException if the directory can not be watched or listed
+     */
+    public void watch() throws IOException {
+        final Thread thread;
+        synchronized (this) {
+            if (watcher != null) {
+                return;
+            }
+            watcher = directory.getFileSystem().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            final WatchService service = watcher;
+            watchThread = new Thread(() -> watchLoop(service), "DirectoryIndex-" + directory.getFileName());
+            watchThread.setDaemon(true);
+            thread = watchThread;
+        }
+        // outside the monitor of the index, which is always taken after the scan lock
+        rescan();
+        thread.start();
+    }
+
+    private void watchLoop(final WatchService service) {
+        try {
+            while (true) {
+                final WatchKey key = service.take();
+                boolean overflow = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        refresh(((Path) event.context()).toString());
+                    }
+                }
+                if (overflow) {
+                    rescan();
+                }
+                if (!key.reset()) {
+                    LOG.warning(() -> "Directory " + directory + " is no longer accessible");
+                    return;
+                }
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException x) {
+            // closed
+        } catch (final IOException x) {
+            LOG.log(Level.SEVERE, x.getMessage(), x);
+        }
+    }
+
+    /**
+     * Looks at a single file again and records its current state.
+     */
+    private void refresh(final String name) {
+        synchronized (scanLock) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(directory.resolve(name), BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+            } catch (final IOException x) {
+                attributes = null;
+            }
+            synchronized (this) {
+                if (attributes != null && attributes.isRegularFile()) {
+                    update(name, attributes);
+                } else {
+                    delete(name);
+                }
+            }
+        }
+    }
+
+    private void update(final String name, final BasicFileAttributes attributes) {
+        final long size = attributes.size();
+        final long modified = attributes.lastModifiedTime().toMillis();
+        final Entry old = entries.get(name);
+        if (old != null && !old.deleted() && old.size() == size && old.modified() == modified) {
+            return;
+        }
+        record(old, new Entry(name, size, modified, ++sequence, false));
+    }
+
+    private void delete(final String name) {
+        final Entry old = entries.get(name);
+        if (old == null || old.deleted()) {
+            return;
+        }
+        record(old, new Entry(name, 0, 0, ++sequence, true));
+    }
+
+    private void record(final Entry old, final Entry entry) {
+        if (old != null) {
+            changes.remove(old.sequence());
+        }
+        entries.put(entry.name(), entry);
+        changes.put(entry.sequence(), entry.name());
+    }
+
+    /**
+     * Stops watching the directory. The index can still be queried and rescanned.
+     *
+     * @throws IOException if the watch service can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        final WatchService service;
+        final Thread thread;
+        synchronized (this) {
+            service = watcher;
+            thread = watchThread;
+            watcher = null;
+            watchThread = null;
+        }
+        if (service == null) {
+            return;
+        }
+        service.close();
+        try {
+            thread.join();
+        } catch (final InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package pt.mleiria.io.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the regular files of a directory tree whose names match a filter, walking the tree in parallel.
+ * <p>
+ * Every directory is listed by its own fork-join task, so sibling directories are read concurrently. Walking
+ * a tree is bound by the file system rather than the CPU, which is why the walk runs on a pool of its own,
+ * larger than the number of cores by default. File names are matched against a set of extensions or a glob
+ * compiled once, when the finder is created.
+ * <p>
+ * Matching files are passed to a consumer as soon as they are found, from the walking threads. Symbolic links
+ * are not followed. Directories that can not be read are counted and skipped.
+ */
+public final class FileFinder {
+
+    private static final Logger LOG = Logger.getLogger(FileFinder.class.getName());
+
+    private final Predicate<Path> filter;
+    private final int maxDepth;
+    private final int parallelism;
+
+    private FileFinder(final Predicate<Path> filter, final int maxDepth, final int parallelism) {
+        this.filter = filter;
+        this.maxDepth = maxDepth;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * The outcome of a search.
+     *
+     * @param matched      the number of files passed to the consumer
+     * @param files        the number of regular files visited
+     * @param directories  the number of directories listed
+     * @param errors       the number of directories that could not be listed
+     * @param elapsedNanos the duration of the search
+     */
+    public record Result(long matched, long files, long directories, long errors, long elapsedNanos) {
+
+        public long elapsedMillis() {
+            return elapsedNanos / 1_000_000;
+        }
+    }
+
+    /**
+     * Returns a finder of the files with one of the given extensions, ignoring case.
+     *
+     * @param extensions the extensions, without the dot
+     * @return a new finder
+     */
+    public static FileFinder withExtensions(final String... extensions) {
+        final String[] suffixes = new String[extensions.length];
+        for (int i = 0; i < extensions.length; i++) {
+            suffixes[i] = "." + extensions[i].toLowerCase(Locale.ROOT);
+        }
+        return new FileFinder(file -> hasSuffix(file.getFileName().toString(), suffixes), Integer.MAX_VALUE,
+                defaultParallelism());
+    }
+
+    /**
+     * Returns a finder of the files whose name matches a glob, such as {@code *.{jpg,png}}.
+     *
+     * @param glob the glob matched against the file name only
+     * @return a new finder
+     */
+    public static FileFinder withGlob(final String glob) {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        return new FileFinder(file -> matcher.matches(file.getFileName()), Integer.MAX_VALUE, defaultParallelism());
+    }
+
+    private static int defaultParallelism() {
+        return Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private static boolean hasSuffix(final String name, final String[] suffixes) {
+        for (final String suffix : suffixes) {
+            if (name.regionMatches(true, name.length() - suffix.length(), suffix, 0, suffix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Limits how deep the search goes: 0 only visits the files of the root directory.
+     *
+     * @param maxDepth the maximum depth of the visited directories below the root
+     * @return a finder with the same filter and the given depth
+     */
+    public FileFinder withMaxDepth(final int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative: " + maxDepth);
+        }
+        return new FileFinder(filter, maxDepth, parallelism);
+    }
+
+    /**
+     * Sets the number of threads listing directories concurrently.
+     *
+     * @param parallelism the number of threads
+     * @return a finder with the same filter and the given parallelism
+     */
+    public FileFinder withParallelism(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        return new FileFinder(filter, maxDepth, parallelism);
+    }
+
+    /**
+     * Searches a directory tree, passing every matching file to the consumer as soon as it is found.
+     *
+     * @param root the root of the tree
+     * @param sink the consumer of the matching files, called concurrently from several threads
+     * @return the counts and duration of the search
+     */
+    public Result find(final Path root, final Consumer<? super Path> sink) {
+        final long start = System.nanoTime();
+        final Counters counters = new Counters();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new ListTask(root, 0, sink, counters));
+        } finally {
+            pool.shutdown();
+        }
+        return new Result(counters.matched.sum(), counters.files.sum(), counters.directories.sum(),
+                counters.errors.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * Searches a directory tree and collects the matching files, in no particular order.
+     *
+     * @param root the root of the tree
+     * @return the matching files
+     */
+    public List<Path> findAll(final Path root) {
+        final ConcurrentLinkedQueue<Path> found = new ConcurrentLinkedQueue<>();
+        find(root, found::add);
+        return new ArrayList<>(found);
+    }
+
+    private static final class Counters {
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder files = new LongAdder();
+        private final LongAdder directories = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    private final class ListTask extends RecursiveAction {
+        private final Path directory;
+        private final int depth;
+        private final Consumer<? super Path> sink;
+        private final Counters counters;
+
+        private ListTask(final Path directory, final int depth, final Consumer<? super Path> sink,
+                         final Counters counters) {
+            this.directory = directory;
+            this.depth = depth;
+            this.sink = sink;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            final List<ListTask> subdirectories = new ArrayList<>();
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                counters.directories.increment();
+                for (final Path entry : entries) {
+                    final BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (final IOException x) {
+                        continue;
+                    }
+                    if (attributes.isRegularFile()) {
+                        counters.files.increment();
+                        if (filter.test(entry)) {
+                            counters.matched.increment();
+                            sink.accept(entry);
+                        }
+                    } else if (attributes.isDirectory() && depth < maxDepth) {
+                        final ListTask task = new ListTask(entry, depth + 1, sink, counters);
+                        task.fork();
+                        subdirectories.add(task);
+                    }
+                }
+            } catch (final IOException x) {
+                counters.errors.increment();
+                LOG.log(Level.FINE, x, () -> "Skipping " + directory);
+            }
+            for (final ListTask task : subdirectories) {
+                task.join();
+            }
+        }
+    }
+}
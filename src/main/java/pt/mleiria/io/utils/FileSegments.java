@@ -0,0 +1,86 @@
+package pt.mleiria.io.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Splits a file into segments ending right after a newline, so that each segment holds whole lines
+ * and can be mapped and parsed independently.
+ */
+final class FileSegments {
+
+    private static final int PROBE_SIZE = 8192;
+
+    private FileSegments() {
+    }
+
+    /**
+     * Returns the boundaries of segments of about {@code targetSize} bytes: segment i spans
+     * {@code [bounds[i], bounds[i + 1])}. A segment only grows past the target to finish its last line.
+     *
+     * @param channel    the file to split
+     * @param targetSize the approximate size of a segment in bytes
+     * @return the offsets where segments start, followed by the size of the file
+     * @throws IOException if the file can not be read
+     */
+    static long[] split(final FileChannel channel, final long targetSize) throws IOException {
+        final long size = channel.size();
+        long[] bounds = new long[16];
+        int n = 0;
+        bounds[n++] = 0;
+        final ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long position = 0;
+        while (size - position > targetSize) {
+            final long next = nextLineStart(channel, position + targetSize, size, probe);
+            if (next >= size) {
+                break;
+            }
+            if (n == bounds.length) {
+                bounds = Arrays.copyOf(bounds, n * 2);
+            }
+            bounds[n++] = next;
+            position = next;
+        }
+        if (size > 0) {
+            if (n == bounds.length) {
+                bounds = Arrays.copyOf(bounds, n + 1);
+            }
+            bounds[n++] = size;
+        }
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Chooses a segment size giving every worker of the pool a few segments, within sensible bounds.
+     *
+     * @param fileSize    the size of the file in bytes
+     * @param parallelism the number of workers
+     * @param minSize     the smallest segment worth a task of its own
+     * @param maxSize     the largest segment to map at once
+     * @return the target segment size
+     */
+    static long targetSize(final long fileSize, final int parallelism, final long minSize, final long maxSize) {
+        return Math.max(minSize, Math.min(maxSize, fileSize / (4L * Math.max(1, parallelism))));
+    }
+
+    private static long nextLineStart(final FileChannel channel, final long from, final long size,
+                                      final ByteBuffer probe) throws IOException {
+        long position = from;
+        while (position < size) {
+            probe.clear();
+            final int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
@@ -1,20 +1,28 @@
 package pt.mleiria.io.utils;
 
 import pt.mleiria.collections.immutable.CollectionUtilities;
+import pt.mleiria.collections.immutable.Conc;
+import pt.mleiria.core.Metrics;
 import pt.mleiria.core.StopWatch;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import static java.nio.file.Files.newInputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.Paths.get;
 
 public class FileUtilities {
@@ -27,6 +35,24 @@ public class FileUtilities {
             .mapToDouble(Double::valueOf)
             .toArray();
 
+    private static final long MIN_SEGMENT_SIZE = 1L << 20;
+
+    private static final long MAX_SEGMENT_SIZE = 64L << 20;
+
+    private static final Metrics.Timer LOAD = Metrics.global().timer("io.load");
+
+    private static final Metrics.Timer LOAD_PARALLEL = Metrics.global().timer("io.load.parallel");
+
+    private static final Metrics.Timer LOAD_NUMERIC = Metrics.global().timer("io.load.numeric");
+
+    private static final Metrics.Timer LOAD_NUMERIC_CACHED = Metrics.global().timer("io.load.numeric.cached");
+
+    private static final Metrics.Timer FIND_JPG = Metrics.global().timer("io.find.jpg");
+
+    private static final Metrics.Counter LINES = Metrics.global().counter("io.load.lines");
+
+    private static final Metrics.Counter ERRORS = Metrics.global().counter("io.load.errors");
+
     private FileUtilities() {
     }
 
@@ -38,9 +64,10 @@ public class FileUtilities {
      * @return a list of strings
      */
     public static List<String> load(String path) {
+        final long start = LOAD.start();
         final Path file = get(path);
         final List<String> data = new ArrayList<>();
-        try (final InputStream in = newInputStream(file);
+        try (final InputStream in = Compression.open(file);
              final BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -50,14 +77,18 @@ public class FileUtilities {
             }
         } catch (final IOException x) {
             LOG.log(Level.SEVERE, x.getMessage(), x);
+            ERRORS.increment();
         }
+        LINES.add(data.size());
+        LOAD.stop(start);
         return CollectionUtilities.list(data);
     }
 
     public static <R> List<R> load(final String path, final Function<String, R> function) {
+        final long start = LOAD.start();
         final Path file = get(path);
         final List<R> data = new ArrayList<>();
-        try (final InputStream in = newInputStream(file);
+        try (final InputStream in = Compression.open(file);
              final BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
             String line;
             while ((line = reader.readLine()) != null) {
@@ -67,19 +98,212 @@ public class FileUtilities {
             }
         } catch (final IOException x) {
             LOG.severe(x.getMessage());
+            ERRORS.increment();
         }
+        LINES.add(data.size());
+        LOAD.stop(start);
         return CollectionUtilities.list(data);
     }
 
+    /**
+     * Loads a UTF-8 file in parallel, mapping every non blank line with the given function.
+     * <p>
+     * The file is memory-mapped in segments split at line boundaries, and the segments are decoded and mapped
+     * concurrently on the common fork-join pool. The result keeps the order of the lines and is assembled by
+     * concatenating the segment results, without copying them. Gzip files can not be split and are streamed
+     * through {@link #forEachLine} instead, with the lines inflated and mapped ahead of the collecting thread.
+     *
+     * @param path     the path of the file
+     * @param function the function applied to every line, which must be safe to call from several threads
+     * @param <R>      the type of the mapped lines
+     * @return an unmodifiable list of the mapped lines, in file order
+     */
+    public static <R> List<R> loadParallel(final String path, final Function<String, R> function) {
+        final long start = LOAD_PARALLEL.start();
+        final List<R> data = readParallel(path, function);
+        LINES.add(data.size());
+        LOAD_PARALLEL.stop(start);
+        return data;
+    }
+
+    private static <R> List<R> readParallel(final String path, final Function<String, R> function) {
+        try {
+            if (Compression.isGzip(get(path))) {
+                final Conc.Builder<R> data = Conc.builder();
+                forEachLine(path, function, data::add);
+                return data.build();
+            }
+        } catch (final IOException x) {
+            LOG.log(Level.SEVERE, x.getMessage(), x);
+            ERRORS.increment();
+            return CollectionUtilities.list();
+        }
+        try (final FileChannel channel = FileChannel.open(get(path), StandardOpenOption.READ)) {
+            final long targetSize = FileSegments.targetSize(channel.size(), ForkJoinPool.getCommonPoolParallelism(),
+                    MIN_SEGMENT_SIZE, MAX_SEGMENT_SIZE);
+            final long[] bounds = FileSegments.split(channel, targetSize);
+            final List<ForkJoinTask<Conc<R>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                final long start = bounds[i];
+                final long end = bounds[i + 1];
+                tasks.add(ForkJoinPool.commonPool().submit(() -> parseSegment(channel, start, end, function)));
+            }
+            Conc<R> data = Conc.empty();
+            for (final ForkJoinTask<Conc<R>> task : tasks) {
+                data = Conc.concat(data, task.join());
+            }
+            return data;
+        } catch (final IOException | UncheckedIOException x) {
+            LOG.log(Level.SEVERE, x.getMessage(), x);
+            ERRORS.increment();
+        }
+        return CollectionUtilities.list();
+    }
+
+    private static <R> Conc<R> parseSegment(final FileChannel channel, final long start, final long end,
+                                            final Function<String, R> function) {
+        final MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (final IOException x) {
+            throw new UncheckedIOException(x);
+        }
+        final Conc.Builder<R> data = Conc.builder();
+        final int limit = buffer.limit();
+        byte[] line = new byte[256];
+        int lineStart = 0;
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && buffer.get(i) != '\n') {
+                continue;
+            }
+            int lineEnd = i;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            final int length = lineEnd - lineStart;
+            if (length > 0) {
+                if (line.length < length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buffer.get(lineStart, line, 0, length);
+                final String decoded = new String(line, 0, length, UTF_8);
+                if (!decoded.trim().isEmpty()) {
+                    data.add(function.apply(decoded));
+                }
+            }
+            lineStart = i + 1;
+        }
+        return data.build();
+    }
+
+    /**
+     * Streams the non blank lines of a UTF-8 file, mapped by the function, into the sink in file order.
+     * Memory use does not depend on the size of the file, see {@link LineSource}.
+     *
+     * @param path     the path of the file
+     * @param function the function applied to every line
+     * @param sink     the consumer of the mapped lines
+     * @param <R>      the type of the mapped lines
+     * @return the number of lines passed to the sink, up to the first read error if any
+     */
+    public static <R> long forEachLine(final String path, final Function<String, R> function,
+                                       final Consumer<? super R> sink) {
+        long count = 0;
+        try (final LineSource<R> source = LineSource.open(path, function)) {
+            while (source.hasNext()) {
+                sink.accept(source.next());
+                count++;
+            }
+        } catch (final IOException | UncheckedIOException x) {
+            LOG.log(Level.SEVERE, x.getMessage(), x);
+            ERRORS.increment();
+        }
+        return count;
+    }
+
+    /**
+     * Publishes the non blank lines of a UTF-8 file, mapped by the function, to a reactive subscriber.
+     * <p>
+     * Every subscription reads the file from the start on its own thread, with a bounded read-ahead: the reader
+     * runs ahead of the requests of the subscriber by at most {@link LineSource#DEFAULT_CAPACITY} lines in its
+     * {@link LineSource} plus {@link Flow#defaultBufferSize()} items in the publisher, and then blocks, so a slow
+     * subscriber holds back the reader instead of buffering the whole file.
+     * The file is closed when the last line has been delivered, on error, or when the subscription is cancelled.
+     *
+     * @param path     the path of the file
+     * @param function the function applied to every line
+     * @param <R>      the type of the mapped lines
+     * @return a cold publisher of the mapped lines
+     */
+    public static <R> Flow.Publisher<R> publish(final String path, final Function<String, R> function) {
+        return subscriber -> {
+            final SubmissionPublisher<R> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            final Thread thread = new Thread(() -> {
+                try (final LineSource<R> source = LineSource.open(path, function)) {
+                    while (source.hasNext() && publisher.hasSubscribers()) {
+                        publisher.submit(source.next());
+                    }
+                    publisher.close();
+                } catch (final IOException | RuntimeException x) {
+                    publisher.closeExceptionally(x);
+                }
+            }, "FileUtilities-publish-" + path);
+            thread.setDaemon(true);
+            thread.start();
+        };
+    }
+
+    /**
+     * Loads a comma separated file of numbers into a row-major table without boxing, see {@link NumericCsvReader}.
+     *
+     * @param path the path of the file
+     * @return the table of the values in the file
+     */
+    public static NumericTable loadNumeric(final String path) {
+        final long start = LOAD_NUMERIC.start();
+        try {
+            return NumericCsvReader.csv().read(path);
+        } catch (final IOException x) {
+            LOG.log(Level.SEVERE, x.getMessage(), x);
+            ERRORS.increment();
+        } finally {
+            LOAD_NUMERIC.stop(start);
+        }
+        return NumericTable.empty(NumericTable.Layout.ROW_MAJOR);
+    }
+
+    /**
+     * Loads a comma separated file of numbers through its binary cache, see {@link ColumnarCache}.
+     * The first load parses the file and writes the cache next to it, later loads map the cache as long as the
+     * file is not modified.
+     *
+     * @param path the path of the file
+     * @return the columns of the file
+     */
+    public static ColumnarTable loadNumericCached(final String path) {
+        final long start = LOAD_NUMERIC_CACHED.start();
+        try {
+            return ColumnarCache.load(get(path), NumericCsvReader.csv());
+        } catch (final IOException x) {
+            LOG.log(Level.SEVERE, x.getMessage(), x);
+            ERRORS.increment();
+        } finally {
+            LOAD_NUMERIC_CACHED.stop(start);
+        }
+        return ColumnarTable.of(loadNumeric(path));
+    }
+
     /**
      * @param path
      * @param skipFirstRow
      * @return
      */
     public static List<String> load(final String path, final boolean skipFirstRow) {
+        final long start = LOAD.start();
         final Path file = get(path);
         final List<String> data = new ArrayList<>();
-        try (final InputStream in = newInputStream(file);
+        try (final InputStream in = Compression.open(file);
              final BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
             String line;
             if (skipFirstRow) {
@@ -90,7 +314,10 @@ public class FileUtilities {
             }
         } catch (final IOException x) {
             LOG.severe(x.getMessage());
+            ERRORS.increment();
         }
+        LINES.add(data.size());
+        LOAD.stop(start);
         return CollectionUtilities.list(data);
     }
 
@@ -116,20 +343,24 @@ public class FileUtilities {
 
     /**
      * @param sDir
-     * @return a Set of all jpg files in dir and sub dirs
+     * @return all jpg files in dir and sub dirs, see {@link FileFinder}
      */
     public static File[] loadJPG(String sDir) {
         final StopWatch sw = new StopWatch();
-        final Set<File> fileSet = new HashSet<>();
-        try (final Stream<Path> stream = Files.find(Paths.get(sDir), 999,
-                (p, bfa) -> bfa.isRegularFile() && p.getFileName().toString().matches(".*\\.(?i)jpg"))) {
-            stream.parallel().forEach(elem -> fileSet.add(elem.toFile()));
-
-        } catch (IOException e) {
-            LOG.severe(() -> String.valueOf(e));
+        final List<File> files = new ArrayList<>();
+        final FileFinder.Result result = FileFinder.withExtensions("jpg")
+                .withMaxDepth(999)
+                .find(Paths.get(sDir), p -> {
+                    synchronized (files) {
+                        files.add(p.toFile());
+                    }
+                });
+        if (result.errors() > 0) {
+            LOG.severe(() -> String.format("Could not list %d directories under %s", result.errors(), sDir));
         }
-        LOG.info(String.format("Loaded %d in %s", fileSet.size(), sw.elapsedTime()));
-        return fileSet.toArray(new File[0]);
+        sw.recordTo(FIND_JPG);
+        LOG.info(String.format("Loaded %d in %s", result.matched(), sw.elapsedTime()));
+        return files.toArray(new File[0]);
     }
 
     public String loadFileToString(final String filePath){
@@ -0,0 +1,214 @@
+package pt.mleiria.io.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streams the non blank lines of a UTF-8 file, mapped by a function, in constant memory.
+ * Gzip compressed files are decompressed transparently, see {@link Compression}.
+ * <p>
+ * A background thread reads and maps the lines ahead of the consumer into a bounded buffer. When the buffer is
+ * full the reader blocks until the consumer catches up, so at most a fixed number of records is held in memory
+ * whatever the size of the file. Lines are handed over in small batches to keep the synchronization cost per
+ * line low.
+ * <p>
+ * The file is closed as soon as the last line has been read, or when {@link #close()} returns, whichever comes
+ * first. Always use the source in a try-with-resources block:
+ * <pre>{@code
+ * try (LineSource<double[]> source = LineSource.open(path, strToStrArr.andThen(strArrToDbl))) {
+ *     while (source.hasNext()) {
+ *         train(source.next());
+ *     }
+ * }
+ * }</pre>
+ * A failure while reading or mapping a line is rethrown by {@link #hasNext()} or {@link #next()} once the records
+ * read before it have been consumed.
+ *
+ * @param <R> the type of the mapped lines
+ */
+public final class LineSource<R> implements Iterator<R>, AutoCloseable {
+
+    /**
+     * Number of records buffered ahead of the consumer when no capacity is given.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final Object[] END = new Object[0];
+
+    private final BlockingQueue<Object[]> queue;
+    private final Thread reader;
+    private volatile boolean closed;
+    private volatile RuntimeException failure;
+    private Object[] batch = new Object[0];
+    private int position;
+    private boolean done;
+
+    private LineSource(final BufferedReader in, final Function<String, R> function, final int capacity,
+                       final String name) {
+        final int batchSize = Math.min(BATCH_SIZE, capacity);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity / batchSize));
+        this.reader = new Thread(() -> read(in, function, batchSize), "LineSource-" + name);
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * Opens a file as a source of its non blank lines.
+     *
+     * @param path the path of the file
+     * @return a new source, which must be closed
+     * @throws IOException if the file can not be opened
+     */
+    public static LineSource<String> open(final String path) throws IOException {
+        return open(path, Function.identity());
+    }
+
+    /**
+     * Opens a file as a source of its non blank lines mapped by the function, with the default capacity.
+     *
+     * @param path     the path of the file
+     * @param function the function applied to every line, on the reading thread
+     * @param <R>      the type of the mapped lines
+     * @return a new source, which must be closed
+     * @throws IOException if the file can not be opened
+     */
+    public static <R> LineSource<R> open(final String path, final Function<String, R> function) throws IOException {
+        return open(path, function, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens a file as a source of its non blank lines mapped by the function.
+     *
+     * @param path     the path of the file
+     * @param function the function applied to every line, on the reading thread
+     * @param capacity the maximum number of records read ahead of the consumer
+     * @param <R>      the type of the mapped lines
+     * @return a new source, which must be closed
+     * @throws IOException if the file can not be opened
+     */
+    public static <R> LineSource<R> open(final String path, final Function<String, R> function, final int capacity)
+            throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        final BufferedReader in = new BufferedReader(new InputStreamReader(Compression.open(Paths.get(path)), UTF_8));
+        return new LineSource<>(in, function, capacity, path);
+    }
+
+    private void read(final BufferedReader in, final Function<String, R> function, final int batchSize) {
+        try (in) {
+            Object[] lines = new Object[batchSize];
+            int size = 0;
+            String line;
+            while (!closed && (line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                lines[size++] = function.apply(line);
+                if (size == batchSize) {
+                    queue.put(lines);
+                    lines = new Object[batchSize];
+                    size = 0;
+                }
+            }
+            if (size > 0) {
+                queue.put(size == batchSize ? lines : Arrays.copyOf(lines, size));
+            }
+        } catch (final IOException x) {
+            failure = new UncheckedIOException(x);
+        } catch (final InterruptedException x) {
+            return;
+        } catch (final RuntimeException x) {
+            failure = x;
+        }
+        try {
+            queue.put(END);
+        } catch (final InterruptedException x) {
+            // closed while waiting, nobody is left to read the end marker
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (position < batch.length) {
+            return true;
+        }
+        if (done || closed) {
+            return false;
+        }
+        try {
+            batch = queue.take();
+        } catch (final InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next line", x);
+        }
+        position = 0;
+        if (batch == END) {
+            done = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public R next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("next called on exhausted line source");
+        }
+        final R r = (R) batch[position];
+        batch[position++] = null;
+        return r;
+    }
+
+    /**
+     * Returns a sequential stream over the remaining records. Closing the stream closes the source.
+     *
+     * @return a stream of the remaining records
+     */
+    public Stream<R> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Stops the reading thread and closes the file. Records still buffered are discarded.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        batch = END;
+        position = 0;
+        reader.interrupt();
+        queue.clear();
+        try {
+            reader.join();
+        } catch (final InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+        queue.clear();
+    }
+}
@@ -0,0 +1,485 @@
+package pt.mleiria.io.utils;
+
+import pt.mleiria.io.utils.NumericTable.Layout;
+import pt.mleiria.math.ColumnStatistics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Reads delimited files of numbers straight into a preallocated {@link NumericTable}.
+ * <p>
+ * The file is memory-mapped in segments split at line boundaries. A first parallel pass counts the rows of
+ * every segment so the table can be allocated once, then a second parallel pass parses the digits of every cell
+ * from the mapped bytes directly into its slot. Common decimal values are converted without creating any object;
+ * only cells needing more than 15 significant digits or an exponent out of the exact range fall back to
+ * {@link Double#parseDouble(String)}.
+ * <p>
+ * Blank lines are skipped. Empty cells, and cells missing at the end of a short row, are read as NaN.
+ */
+public final class NumericCsvReader {
+
+    private static final long MIN_SEGMENT_SIZE = 1L << 20;
+
+    private static final long MAX_SEGMENT_SIZE = 64L << 20;
+
+    private static final int MAX_LINE_SIZE = 1 << 30;
+
+    private static final int WINDOW_SIZE = 1 << 20;
+
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte delimiter;
+    private final boolean skipHeader;
+    private final Layout layout;
+
+    private NumericCsvReader(final byte delimiter, final boolean skipHeader, final Layout layout) {
+        this.delimiter = delimiter;
+        this.skipHeader = skipHeader;
+        this.layout = layout;
+    }
+
+    /**
+     * Returns a reader of comma separated files without header, producing row-major tables.
+     *
+     * @return a new reader
+     */
+    public static NumericCsvReader csv() {
+        return new NumericCsvReader((byte) ',', false, Layout.ROW_MAJOR);
+    }
+
+    /**
+     * Returns a copy of this reader using another cell delimiter.
+     *
+     * @param delimiter the delimiter, which must be an ASCII character
+     * @return a new reader
+     */
+    public NumericCsvReader withDelimiter(final char delimiter) {
+        if (delimiter > 127) {
+            throw new IllegalArgumentException("Delimiter must be an ASCII character: " + delimiter);
+        }
+        return new NumericCsvReader((byte) delimiter, skipHeader, layout);
+    }
+
+    /**
+     * Returns a copy of this reader skipping, or not, the first line of the file.
+     *
+     * @param skipHeader true if the first line is a header
+     * @return a new reader
+     */
+    public NumericCsvReader withHeader(final boolean skipHeader) {
+        return new NumericCsvReader(delimiter, skipHeader, layout);
+    }
+
+    /**
+     * Returns a copy of this reader producing tables with another layout.
+     *
+     * @param layout the layout of the tables
+     * @return a new reader
+     */
+    public NumericCsvReader withLayout(final Layout layout) {
+        return new NumericCsvReader(delimiter, skipHeader, layout);
+    }
+
+    /**
+     * Returns the settings changing which cells are parsed out of a file, the delimiter in the low byte and the
+     * header flag above it, as recorded by {@link ColumnarCache}. The layout is not part of them.
+     */
+    int parseSettings() {
+        return (delimiter & 0xFF) | (skipHeader ? 1 << 8 : 0);
+    }
+
+    /**
+     * Reads a file into a table. A gzip compressed file is inflated into memory first, see {@link Compression}, in
+     * segments of at most 64 MB, so its uncompressed size is bounded by the heap rather than by the size of an
+     * array.
+     *
+     * @param path the path of the file
+     * @return the table of the values in the file
+     * @throws IOException if the file can not be read
+     */
+    public NumericTable read(final String path) throws IOException {
+        return read(segments(path), null);
+    }
+
+    /**
+     * Reads a file into a table, gathering the statistics of its columns while the cells are parsed. Every
+     * segment of the file is summarized by the thread parsing it, and the summaries are merged at the end.
+     *
+     * @param path the path of the file
+     * @return the table of the values in the file and the statistics of its columns
+     * @throws IOException if the file can not be read
+     */
+    public Summarized readWithStatistics(final String path) throws IOException {
+        final ByteBuffer[] segments = segments(path);
+        final ColumnStatistics[] statistics = new ColumnStatistics[segments.length];
+        final NumericTable table = read(segments, statistics);
+        final ColumnStatistics merged = ColumnStatistics.create(table.columns());
+        for (final ColumnStatistics segment : statistics) {
+            if (segment != null) {
+                merged.merge(segment);
+            }
+        }
+        return new Summarized(table, merged);
+    }
+
+    /**
+     * A table and the statistics of its columns.
+     *
+     * @param table      the table
+     * @param statistics the statistics of its columns
+     */
+    public record Summarized(NumericTable table, ColumnStatistics statistics) {
+    }
+
+    private ByteBuffer[] segments(final String path) throws IOException {
+        if (Compression.isGzip(Paths.get(path))) {
+            return inflate(Paths.get(path), (int) FileSegments.targetSize(Files.size(Paths.get(path)),
+                    ForkJoinPool.getCommonPoolParallelism(), MIN_SEGMENT_SIZE, MAX_SEGMENT_SIZE));
+        }
+        try (final FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            final long[] bounds = FileSegments.split(channel, FileSegments.targetSize(channel.size(),
+                    ForkJoinPool.getCommonPoolParallelism(), MIN_SEGMENT_SIZE, MAX_SEGMENT_SIZE));
+            final ByteBuffer[] segments = new ByteBuffer[Math.max(0, bounds.length - 1)];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer into a table. The position of the buffer is not changed.
+     *
+     * @param buffer the bytes to read
+     * @return the table of the values in the buffer
+     */
+    public NumericTable read(final ByteBuffer buffer) {
+        return read(new ByteBuffer[]{buffer.slice()}, null);
+    }
+
+    /**
+     * Inflates a compressed file into segments of the target size, each ending after its last whole line. The
+     * partial line is carried over to the next segment, and a segment grows only for a line longer than itself.
+     */
+    private static ByteBuffer[] inflate(final Path file, final int targetSize) throws IOException {
+        final List<ByteBuffer> segments = new ArrayList<>();
+        try (final InputStream in = Compression.open(file)) {
+            byte[] chunk = new byte[targetSize];
+            int size = 0;
+            while ((size += in.readNBytes(chunk, size, chunk.length - size)) == chunk.length) {
+                int end = size;
+                while (end > 0 && chunk[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    if (chunk.length > MAX_LINE_SIZE / 2) {
+                        throw new IOException("Line longer than " + MAX_LINE_SIZE + " bytes in " + file);
+                    }
+                    chunk = Arrays.copyOf(chunk, 2 * chunk.length);
+                    continue;
+                }
+                final byte[] next = new byte[Math.max(targetSize, 2 * (size - end))];
+                System.arraycopy(chunk, end, next, 0, size - end);
+                segments.add(ByteBuffer.wrap(chunk, 0, end));
+                chunk = next;
+                size -= end;
+            }
+            if (size > 0) {
+                segments.add(ByteBuffer.wrap(chunk, 0, size));
+            }
+        }
+        return segments.toArray(new ByteBuffer[0]);
+    }
+
+    /**
+     * Parses the segments into a table, and each segment into its own statistics when an array for them is given.
+     */
+    private NumericTable read(final ByteBuffer[] segments, final ColumnStatistics[] statistics) {
+        final int[] firstRows = new int[segments.length + 1];
+        IntStream.range(0, segments.length).parallel()
+                .forEach(i -> firstRows[i + 1] = countRows(segments[i], skipHeader && i == 0));
+        for (int i = 0; i < segments.length; i++) {
+            firstRows[i + 1] += firstRows[i];
+        }
+        final int rows = firstRows[segments.length];
+        if (rows == 0) {
+            return NumericTable.empty(layout);
+        }
+        final int columns = countColumns(segments);
+        if ((long) rows * columns > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Table of " + rows + "x" + columns + " does not fit in an array");
+        }
+        final NumericTable table = new NumericTable(new double[rows * columns], rows, columns, layout);
+        IntStream.range(0, segments.length).parallel().forEach(i -> {
+            final ColumnStatistics segmentStatistics = statistics == null ? null : ColumnStatistics.create(columns);
+            parseRows(segments[i], skipHeader && i == 0, table, firstRows[i], segmentStatistics);
+            if (statistics != null) {
+                statistics[i] = segmentStatistics;
+            }
+        });
+        return table;
+    }
+
+    private int countRows(final ByteBuffer segment, final boolean skipFirstLine) {
+        return foldWindows(segment, skipFirstLine, 0, (rows, bytes, from, to) -> {
+            int count = rows;
+            boolean blank = true;
+            for (int i = from; i < to; i++) {
+                final byte b = bytes[i];
+                if (b == '\n') {
+                    if (!blank) {
+                        count++;
+                    }
+                    blank = true;
+                } else if (blank && !isSpace(b)) {
+                    blank = false;
+                }
+            }
+            return blank
+                    ? count
+                    : count + 1;
+        });
+    }
+
+    private int countColumns(final ByteBuffer[] segments) {
+        for (int i = 0; i < segments.length; i++) {
+            final ByteBuffer segment = segments[i];
+            int lineStart = skipHeader && i == 0 ? nextLine(segment, 0) : 0;
+            while (lineStart < segment.limit()) {
+                final int next = nextLine(segment, lineStart);
+                int columns = 1;
+                boolean blank = true;
+                for (int j = lineStart; j < next; j++) {
+                    final byte b = segment.get(j);
+                    if (b == delimiter) {
+                        columns++;
+                    }
+                    if (b != '\n' && !isSpace(b)) {
+                        blank = false;
+                    }
+                }
+                if (!blank) {
+                    return columns;
+                }
+                lineStart = next;
+            }
+        }
+        return 0;
+    }
+
+    private void parseRows(final ByteBuffer segment, final boolean skipFirstLine, final NumericTable table,
+                           final int firstRow, final ColumnStatistics statistics) {
+        final double[] values = table.values();
+        final int columns = table.columns();
+        final int rowStride = layout == Layout.ROW_MAJOR ? columns : 1;
+        final int columnStride = layout == Layout.ROW_MAJOR ? 1 : table.rows();
+        foldWindows(segment, skipFirstLine, firstRow, (firstWindowRow, bytes, from, to) -> {
+            int row = firstWindowRow;
+            int i = from;
+            while (i < to) {
+                int j = i;
+                while (j < to && isSpace(bytes[j])) {
+                    j++;
+                }
+                if (j == to || bytes[j] == '\n') {
+                    i = j + 1;
+                    continue;
+                }
+                final int base = row * rowStride;
+                int column = 0;
+                while (true) {
+                    int cellEnd = i;
+                    byte b = 0;
+                    while (cellEnd < to && (b = bytes[cellEnd]) != delimiter && b != '\n') {
+                        cellEnd++;
+                    }
+                    if (column == columns) {
+                        throw new IllegalStateException("Row " + row + " has more than " + columns + " columns");
+                    }
+                    values[base + column * columnStride] = parse(bytes, i, cellEnd);
+                    column++;
+                    i = cellEnd + 1;
+                    if (cellEnd == to || b == '\n') {
+                        break;
+                    }
+                }
+                for (; column < columns; column++) {
+                    values[base + column * columnStride] = Double.NaN;
+                }
+                if (statistics != null) {
+                    for (int c = 0; c < columns; c++) {
+                        statistics.add(c, values[base + c * columnStride]);
+                    }
+                }
+                row++;
+            }
+            return row;
+        });
+    }
+
+    @FunctionalInterface
+    private interface WindowFold {
+        int apply(int rows, byte[] bytes, int from, int to);
+    }
+
+    /**
+     * Copies the segment into a scratch array one window of whole lines at a time, so the parsing loops run over
+     * a plain array. Only the last window may end without a newline. The row count is threaded through the
+     * windows.
+     */
+    private static int foldWindows(final ByteBuffer segment, final boolean skipFirstLine, final int firstRow,
+                                   final WindowFold f) {
+        int rows = firstRow;
+        final int limit = segment.limit();
+        int position = skipFirstLine ? nextLine(segment, 0) : 0;
+        byte[] scratch = new byte[Math.min(WINDOW_SIZE, Math.max(1, limit - position))];
+        while (position < limit) {
+            final int length = Math.min(scratch.length, limit - position);
+            segment.get(position, scratch, 0, length);
+            int end = length;
+            if (position + length < limit) {
+                while (end > 0 && scratch[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    scratch = new byte[scratch.length * 2];
+                    continue;
+                }
+            }
+            rows = f.apply(rows, scratch, 0, end);
+            position += end;
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the position following the end of the line starting at {@code from}.
+     */
+    private static int nextLine(final ByteBuffer segment, final int from) {
+        final int limit = segment.limit();
+        for (int i = from; i < limit; i++) {
+            if (segment.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return limit;
+    }
+
+    private static boolean isSpace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Parses the number in {@code [from, to)}, NaN if the cell is empty.
+     */
+    static double parse(final byte[] buffer, final int from, final int to) {
+        int start = from;
+        int end = to;
+        while (start < end && isSpace(buffer[start])) {
+            start++;
+        }
+        while (end > start && isSpace(buffer[end - 1])) {
+            end--;
+        }
+        if (start == end) {
+            return Double.NaN;
+        }
+        int i = start;
+        boolean negative = false;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        byte b;
+        while (i < end && (b = buffer[i]) >= '0' && b <= '9') {
+            anyDigit = true;
+            if (digits < 19) {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                digits++;
+            }
+            i++;
+        }
+        if (i < end && buffer[i] == '.') {
+            i++;
+            while (i < end && (b = buffer[i]) >= '0' && b <= '9') {
+                anyDigit = true;
+                if (digits < 19) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    exponent--;
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                } else {
+                    digits++;
+                }
+                i++;
+            }
+        }
+        if (anyDigit && i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negativeExponent = buffer[i] == '-';
+                i++;
+            }
+            int e = 0;
+            boolean anyExponentDigit = false;
+            while (i < end && (b = buffer[i]) >= '0' && b <= '9') {
+                anyExponentDigit = true;
+                if (e < 100_000) {
+                    e = e * 10 + (b - '0');
+                }
+                i++;
+            }
+            if (!anyExponentDigit) {
+                return parseSlow(buffer, start, end);
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (!anyDigit || i != end) {
+            return parseSlow(buffer, start, end);
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (digits > MAX_FAST_DIGITS || exponent < -22 || exponent > 22) {
+            return parseSlow(buffer, start, end);
+        }
+        final double value = exponent >= 0
+                ? mantissa * POWERS_OF_TEN[exponent]
+                : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private static double parseSlow(final byte[] buffer, final int from, final int to) {
+        return Double.parseDouble(new String(buffer, from, to - from, US_ASCII));
+    }
+}
@@ -0,0 +1,76 @@
+package pt.mleiria.io.utils;
+
+/**
+ * A dense table of numbers stored in a single array, as read by {@link NumericCsvReader}.
+ *
+ * @param values  the cells of the table, laid out according to {@code layout}
+ * @param rows    the number of rows
+ * @param columns the number of columns
+ * @param layout  how the cells are laid out in {@code values}
+ */
+public record NumericTable(double[] values, int rows, int columns, Layout layout) {
+
+    public enum Layout {
+        /**
+         * The cells of a row are contiguous: cell (r, c) is at {@code r * columns + c}.
+         */
+        ROW_MAJOR,
+        /**
+         * The cells of a column are contiguous: cell (r, c) is at {@code c * rows + r}.
+         */
+        COLUMN_MAJOR
+    }
+
+    /**
+     * Returns the empty table.
+     *
+     * @param layout the layout of the table
+     * @return a table without rows nor columns
+     */
+    public static NumericTable empty(final Layout layout) {
+        return new NumericTable(new double[0], 0, 0, layout);
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row    the row of the cell
+     * @param column the column of the cell
+     * @return the value of the cell, NaN if it was missing
+     */
+    public double get(final int row, final int column) {
+        return values[index(row, column)];
+    }
+
+    /**
+     * Returns the position of a cell in {@link #values()}.
+     *
+     * @param row    the row of the cell
+     * @param column the column of the cell
+     * @return the index of the cell
+     */
+    public int index(final int row, final int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Cell (" + row + ", " + column + ") out of bounds for "
+                    + rows + "x" + columns + " table");
+        }
+        return layout == Layout.ROW_MAJOR
+                ? row * columns + column
+                : column * rows + row;
+    }
+
+    /**
+     * Copies the table into one array per row, for code working with jagged matrices.
+     *
+     * @return the rows of the table
+     */
+    public double[][] toArray() {
+        final double[][] matrix = new double[rows][columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                matrix[r][c] = get(r, c);
+            }
+        }
+        return matrix;
+    }
+}
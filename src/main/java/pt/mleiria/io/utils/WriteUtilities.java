@@ -1,39 +1,47 @@
 package pt.mleiria.io.utils;
 
-import java.io.FileWriter;
+import pt.mleiria.core.Metrics;
+
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public class WriteUtilities {
 
     private static final Logger LOG = Logger.getLogger(WriteUtilities.class.getName());
 
+    private static final Metrics.Timer WRITE = Metrics.global().timer("io.write");
+
+    private static final Metrics.Counter ERRORS = Metrics.global().counter("io.write.errors");
+
     private WriteUtilities(){}
 
     /**
+     * Writes every element on its own line, in UTF-8, through a buffered writer.
      *
      * @param fileName
      * @param contents
      */
     public static void writeToFile(final String fileName, final List<String> contents) {
-        try (final FileWriter myWriter = new FileWriter(fileName)) {
-            contents.forEach(elem -> {
-                try {
-                    myWriter.write(elem + "\n");
-                } catch (IOException e) {
-                    LOG.severe("An error occurred.");
-                    e.printStackTrace();
-                }
-            });
+        final long start = WRITE.start();
+        try (final BufferedWriter myWriter = Files.newBufferedWriter(Paths.get(fileName), UTF_8)) {
+            for (final String elem : contents) {
+                myWriter.write(elem);
+                myWriter.write('\n');
+            }
             LOG.info("Successfully wrote to the file.");
         } catch (IOException e) {
-            LOG.severe("An error occurred.");
-            e.printStackTrace();
+            LOG.log(Level.SEVERE, "An error occurred writing " + fileName, e);
+            ERRORS.increment();
         }
+        WRITE.stop(start);
     }
 
     /**
@@ -42,27 +50,47 @@ public class WriteUtilities {
      * @param contents
      */
     public static void writeToFile(final String fileName, final String contents) {
-        try (final FileWriter myWriter = new FileWriter(fileName)) {
+        final long start = WRITE.start();
+        try (final BufferedWriter myWriter = Files.newBufferedWriter(Paths.get(fileName), UTF_8)) {
             myWriter.write(contents);
             LOG.info("Successfully wrote to the file.");
         } catch (IOException e) {
-            LOG.severe("An error occurred.");
-            e.printStackTrace();
+            LOG.log(Level.SEVERE, "An error occurred writing " + fileName, e);
+            ERRORS.increment();
         }
+        WRITE.stop(start);
     }
 
     /**
-     * Append to file
+     * Append to file. The file is opened and closed on every call, use {@link #openAppender(String)} to append
+     * many records.
      *
      * @param fileName
      * @param contents
      */
     public static void appendToFile(final String fileName, final String contents) {
+        final long start = WRITE.start();
         try {
-            Files.write(Paths.get(fileName), contents.getBytes(), StandardOpenOption.APPEND);
+            Files.write(Paths.get(fileName), contents.getBytes(UTF_8), StandardOpenOption.APPEND);
         } catch (IOException e) {
-            LOG.severe("An error occurred.");
-            e.printStackTrace();
+            LOG.log(Level.SEVERE, "An error occurred appending to " + fileName, e);
+            ERRORS.increment();
         }
+        WRITE.stop(start);
+    }
+
+    /**
+     * Opens a long-lived writer appending records to a file, creating it if needed, see {@link BatchedFileWriter}.
+     * Records are fsynced in groups, so a record is durable once {@link BatchedFileWriter#flush()} returns.
+     *
+     * @param fileName the file to append to
+     * @return a new writer, which must be closed
+     * @throws IOException if the file can not be opened
+     */
+    public static BatchedFileWriter openAppender(final String fileName) throws IOException {
+        return BatchedFileWriter.builder(fileName)
+                .append(true)
+                .sync(BatchedFileWriter.Sync.GROUP)
+                .open();
     }
 }
@@ -0,0 +1,95 @@
+package pt.mleiria.math;
+
+/**
+ * The Cholesky decomposition {@code A = L L'} of a symmetric positive definite matrix, for solving the linear
+ * systems of normal equations and covariance matrices.
+ * <p>
+ * Only the lower triangle of the matrix is read. Decomposing costs about n³/6 multiplications, each solve about n².
+ */
+public final class Cholesky {
+
+    private final double[] lower;
+    private final int size;
+
+    private Cholesky(final double[] lower, final int size) {
+        this.lower = lower;
+        this.size = size;
+    }
+
+    /**
+     * Decomposes a matrix.
+     *
+     * @param matrix a symmetric positive definite matrix
+     * @return the decomposition
+     * @throws IllegalArgumentException if the matrix is not square
+     * @throws ArithmeticException      if the matrix is not positive definite, up to rounding
+     */
+    public static Cholesky of(final DenseMatrix matrix) {
+        if (matrix.rows() != matrix.columns()) {
+            throw new IllegalArgumentException("Matrix is not square: " + matrix.rows() + "x" + matrix.columns());
+        }
+        final int n = matrix.rows();
+        final double[] l = matrix.toRowMajorArray();
+        for (int j = 0; j < n; j++) {
+            final int rowJ = j * n;
+            double diagonal = l[rowJ + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= l[rowJ + k] * l[rowJ + k];
+            }
+            if (!(diagonal > 0)) {
+                throw new ArithmeticException("Matrix is not positive definite at column " + j);
+            }
+            final double root = Math.sqrt(diagonal);
+            l[rowJ + j] = root;
+            for (int i = j + 1; i < n; i++) {
+                final int rowI = i * n;
+                double sum = l[rowI + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[rowI + k] * l[rowJ + k];
+                }
+                l[rowI + j] = sum / root;
+            }
+            for (int k = j + 1; k < n; k++) {
+                l[rowJ + k] = 0;
+            }
+        }
+        return new Cholesky(l, n);
+    }
+
+    /**
+     * Returns the lower triangular factor.
+     *
+     * @return the matrix L
+     */
+    public DenseMatrix lower() {
+        return DenseMatrix.wrap(size, size, lower.clone());
+    }
+
+    /**
+     * Solves {@code A x = b} by forward and back substitution.
+     *
+     * @param b the right hand side
+     * @return the solution x
+     */
+    public double[] solve(final double[] b) {
+        if (b.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " values, got " + b.length);
+        }
+        final double[] x = b.clone();
+        for (int i = 0; i < size; i++) {
+            double sum = x[i];
+            for (int k = 0; k < i; k++) {
+                sum -= lower[i * size + k] * x[k];
+            }
+            x[i] = sum / lower[i * size + i];
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int k = i + 1; k < size; k++) {
+                sum -= lower[k * size + i] * x[k];
+            }
+            x[i] = sum / lower[i * size + i];
+        }
+        return x;
+    }
+}
@@ -0,0 +1,337 @@
+package pt.mleiria.math;
+
+import pt.mleiria.io.utils.NumericTable;
+
+import java.util.stream.IntStream;
+
+/**
+ * Summary statistics of the columns of a table, gathered in one pass: the count, mean and variance by Welford's
+ * method, the exact minimum and maximum, and approximate quantiles from a {@link KllSketch} per column.
+ * <p>
+ * Statistics of separate parts of a table, such as the chunks read by different threads, are merged into the
+ * statistics of the whole with {@link #merge}, in any grouping, so they can be gathered in parallel or while a
+ * file is parsed, see {@link pt.mleiria.io.utils.NumericCsvReader#readWithStatistics NumericCsvReader}. Missing
+ * values, read as NaN, are not counted.
+ * <p>
+ * {@link #standardize} and {@link #rescale} then transform a table in place. Statistics are not thread safe.
+ */
+public final class ColumnStatistics {
+
+    private static final int MIN_CHUNK_ROWS = 1 << 14;
+
+    private final long[] counts;
+    private final double[] means;
+    private final double[] squares;
+    private final double[] mins;
+    private final double[] maxs;
+    private final KllSketch[] sketches;
+
+    private ColumnStatistics(final int columns, final int k) {
+        this.counts = new long[columns];
+        this.means = new double[columns];
+        this.squares = new double[columns];
+        this.mins = new double[columns];
+        this.maxs = new double[columns];
+        this.sketches = new KllSketch[columns];
+        for (int c = 0; c < columns; c++) {
+            mins[c] = Double.NaN;
+            maxs[c] = Double.NaN;
+            sketches[c] = KllSketch.create(k);
+        }
+    }
+
+    /**
+     * Copies statistics, to merge them with themselves.
+     */
+    private ColumnStatistics(final ColumnStatistics other) {
+        this.counts = other.counts.clone();
+        this.means = other.means.clone();
+        this.squares = other.squares.clone();
+        this.mins = other.mins.clone();
+        this.maxs = other.maxs.clone();
+        this.sketches = new KllSketch[other.sketches.length];
+        for (int c = 0; c < sketches.length; c++) {
+            sketches[c] = other.sketches[c].copy();
+        }
+    }
+
+    /**
+     * Creates empty statistics, with quantile sketches of the default accuracy.
+     *
+     * @param columns the number of columns
+     * @return the statistics
+     */
+    public static ColumnStatistics create(final int columns) {
+        return create(columns, KllSketch.DEFAULT_K);
+    }
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param columns the number of columns
+     * @param k       the accuracy parameter of the quantile sketches, see {@link KllSketch#create(int)}
+     * @return the statistics
+     */
+    public static ColumnStatistics create(final int columns, final int k) {
+        if (columns < 0) {
+            throw new IllegalArgumentException("Negative number of columns: " + columns);
+        }
+        return new ColumnStatistics(columns, k);
+    }
+
+    /**
+     * Gathers the statistics of a table, splitting large tables into chunks of rows summarized in parallel.
+     *
+     * @param table the table
+     * @return the statistics of its columns
+     */
+    public static ColumnStatistics of(final NumericTable table) {
+        final int rows = table.rows();
+        final int chunks = Math.max(1, rows / MIN_CHUNK_ROWS);
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(i -> {
+                    final ColumnStatistics statistics = create(table.columns());
+                    statistics.addRows(table, chunkStart(rows, chunks, i), chunkStart(rows, chunks, i + 1));
+                    return statistics;
+                })
+                .reduce(ColumnStatistics::merge)
+                .orElseGet(() -> create(table.columns()));
+    }
+
+    private static int chunkStart(final int rows, final int chunks, final int chunk) {
+        return (int) ((long) rows * chunk / chunks);
+    }
+
+    private void addRows(final NumericTable table, final int from, final int to) {
+        final double[] values = table.values();
+        final int columns = table.columns();
+        if (table.layout() == NumericTable.Layout.ROW_MAJOR) {
+            for (int r = from; r < to; r++) {
+                for (int c = 0; c < columns; c++) {
+                    add(c, values[r * columns + c]);
+                }
+            }
+        } else {
+            for (int c = 0; c < columns; c++) {
+                final int base = c * table.rows();
+                for (int r = from; r < to; r++) {
+                    add(c, values[base + r]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a value to a column. NaN values are ignored.
+     *
+     * @param column the column
+     * @param value  the value
+     */
+    public void add(final int column, final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        final long n = ++counts[column];
+        final double delta = value - means[column];
+        means[column] += delta / n;
+        squares[column] += delta * (value - means[column]);
+        if (n == 1 || value < mins[column]) {
+            mins[column] = value;
+        }
+        if (n == 1 || value > maxs[column]) {
+            maxs[column] = value;
+        }
+        sketches[column].add(value);
+    }
+
+    /**
+     * Adds a row, one value per column.
+     *
+     * @param row the values of the row
+     */
+    public void addRow(final double... row) {
+        if (row.length != counts.length) {
+            throw new IllegalArgumentException("Expected " + counts.length + " values, got " + row.length);
+        }
+        for (int c = 0; c < row.length; c++) {
+            add(c, row[c]);
+        }
+    }
+
+    /**
+     * Adds the statistics of other values of the same columns to these, as if they had been added here. The other
+     * statistics are not changed; statistics merged with themselves count their values twice.
+     *
+     * @param other the statistics to merge, with sketches of the same accuracy
+     * @return these statistics
+     */
+    public ColumnStatistics merge(final ColumnStatistics other) {
+        if (other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Expected " + counts.length + " columns, got " + other.counts.length);
+        }
+        if (counts.length > 0 && other.sketches[0].k() != sketches[0].k()) {
+            throw new IllegalArgumentException("Expected sketches of k " + sketches[0].k() + ", got "
+                    + other.sketches[0].k());
+        }
+        if (other == this) {
+            return merge(new ColumnStatistics(this));
+        }
+        for (int c = 0; c < counts.length; c++) {
+            final long m = other.counts[c];
+            if (m == 0) {
+                continue;
+            }
+            final long n = counts[c];
+            final long total = n + m;
+            final double delta = other.means[c] - means[c];
+            means[c] += delta * m / total;
+            squares[c] += other.squares[c] + delta * delta * ((double) n * m / total);
+            mins[c] = n == 0 ? other.mins[c] : Math.min(mins[c], other.mins[c]);
+            maxs[c] = n == 0 ? other.maxs[c] : Math.max(maxs[c], other.maxs[c]);
+            counts[c] = total;
+            sketches[c].merge(other.sketches[c]);
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int columns() {
+        return counts.length;
+    }
+
+    /**
+     * @param column the column
+     * @return the number of values of the column, missing values excluded
+     */
+    public long count(final int column) {
+        return counts[column];
+    }
+
+    /**
+     * @param column the column
+     * @return the mean of the column, NaN if it has no values
+     */
+    public double mean(final int column) {
+        return counts[column] == 0
+                ? Double.NaN
+                : means[column];
+    }
+
+    /**
+     * @param column the column
+     * @return the population variance of the column, NaN if it has no values
+     */
+    public double variance(final int column) {
+        return counts[column] == 0
+                ? Double.NaN
+                : squares[column] / counts[column];
+    }
+
+    /**
+     * @param column the column
+     * @return the population standard deviation of the column, NaN if it has no values
+     */
+    public double standardDeviation(final int column) {
+        return Math.sqrt(variance(column));
+    }
+
+    /**
+     * @param column the column
+     * @return the smallest value of the column, NaN if it has no values
+     */
+    public double min(final int column) {
+        return mins[column];
+    }
+
+    /**
+     * @param column the column
+     * @return the largest value of the column, NaN if it has no values
+     */
+    public double max(final int column) {
+        return maxs[column];
+    }
+
+    /**
+     * Estimates a quantile of a column, see {@link KllSketch#quantile(double)}.
+     *
+     * @param column   the column
+     * @param quantile the fraction, from 0 to 1, such as 0.5 for the median
+     * @return the estimated value, NaN if the column has no values
+     */
+    public double quantile(final int column, final double quantile) {
+        return sketches[column].quantile(quantile);
+    }
+
+    /**
+     * Standardizes a table in place, subtracting from every value the mean of its column and dividing by the
+     * standard deviation. Constant columns are only centered, missing values stay NaN.
+     *
+     * @param table a table with the columns summarized here
+     * @return the same table
+     */
+    public NumericTable standardize(final NumericTable table) {
+        final double[] shift = new double[counts.length];
+        final double[] factor = new double[counts.length];
+        for (int c = 0; c < counts.length; c++) {
+            final double deviation = standardDeviation(c);
+            shift[c] = counts[c] == 0 ? 0 : means[c];
+            factor[c] = deviation > 0 ? 1 / deviation : 1;
+        }
+        return transform(table, shift, factor);
+    }
+
+    /**
+     * Rescales a table in place to the range [0, 1], mapping the minimum of every column to 0 and its maximum to
+     * 1. Constant columns become 0, missing values stay NaN.
+     *
+     * @param table a table with the columns summarized here
+     * @return the same table
+     */
+    public NumericTable rescale(final NumericTable table) {
+        final double[] shift = new double[counts.length];
+        final double[] factor = new double[counts.length];
+        for (int c = 0; c < counts.length; c++) {
+            final double range = maxs[c] - mins[c];
+            shift[c] = counts[c] == 0 ? 0 : mins[c];
+            factor[c] = range > 0 ? 1 / range : 1;
+        }
+        return transform(table, shift, factor);
+    }
+
+    /**
+     * Replaces every value v of column c by {@code (v - shift[c]) * factor[c]}, in parallel over chunks of rows.
+     */
+    private NumericTable transform(final NumericTable table, final double[] shift, final double[] factor) {
+        if (table.columns() != counts.length) {
+            throw new IllegalArgumentException("Expected " + counts.length + " columns, got " + table.columns());
+        }
+        final double[] values = table.values();
+        final int rows = table.rows();
+        final int columns = table.columns();
+        final int chunks = Math.max(1, rows / MIN_CHUNK_ROWS);
+        final boolean rowMajor = table.layout() == NumericTable.Layout.ROW_MAJOR;
+        IntStream.range(0, chunks).parallel().forEach(i -> {
+            final int from = chunkStart(rows, chunks, i);
+            final int to = chunkStart(rows, chunks, i + 1);
+            if (rowMajor) {
+                for (int r = from; r < to; r++) {
+                    final int base = r * columns;
+                    for (int c = 0; c < columns; c++) {
+                        values[base + c] = (values[base + c] - shift[c]) * factor[c];
+                    }
+                }
+            } else {
+                for (int c = 0; c < columns; c++) {
+                    final double s = shift[c];
+                    final double f = factor[c];
+                    for (int j = c * rows + from; j < c * rows + to; j++) {
+                        values[j] = (values[j] - s) * f;
+                    }
+                }
+            }
+        });
+        return table;
+    }
+}
@@ -0,0 +1,471 @@
+package pt.mleiria.math;
+
+import pt.mleiria.io.utils.FileUtilities;
+import pt.mleiria.io.utils.NumericTable;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * An immutable dense matrix of doubles, stored row by row in one contiguous array.
+ * <p>
+ * Cell (r, c) is at {@code r * columns + c}, so a row is a contiguous run of memory and whole-matrix operations
+ * are plain loops over one array. The multiplication works on square blocks small enough to stay in the CPU cache
+ * and reads both operands along their rows, and the transposition copies block by block. Operations on matrices
+ * with more than about 64K cells, or products of more than about 256K multiplications, are split over the common
+ * fork-join pool; smaller ones run on the calling thread, where splitting would cost more than it saves.
+ * <p>
+ * Every operation returns a new matrix. Matrices built with {@link #wrap} or from a {@link NumericTable} share the
+ * given array, which must not be modified afterwards.
+ */
+public final class DenseMatrix {
+
+    private static final int BLOCK = 64;
+
+    private static final long PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final long MULTIPLY_PARALLEL_THRESHOLD = 1 << 18;
+
+    private final double[] values;
+    private final int rows;
+    private final int columns;
+
+    private DenseMatrix(final double[] values, final int rows, final int columns) {
+        this.values = values;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Returns a matrix of zeros.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @return the matrix
+     */
+    public static DenseMatrix zeros(final int rows, final int columns) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("Negative dimensions " + rows + "x" + columns);
+        }
+        return new DenseMatrix(new double[Math.multiplyExact(rows, columns)], rows, columns);
+    }
+
+    /**
+     * Returns the identity matrix.
+     *
+     * @param size the number of rows and columns
+     * @return the matrix
+     */
+    public static DenseMatrix identity(final int size) {
+        final DenseMatrix identity = zeros(size, size);
+        for (int i = 0; i < size; i++) {
+            identity.values[i * size + i] = 1;
+        }
+        return identity;
+    }
+
+    /**
+     * Wraps an array of cells laid out row by row, without copying it.
+     *
+     * @param rows    the number of rows
+     * @param columns the number of columns
+     * @param values  the cells, which must not be modified afterwards
+     * @return the matrix
+     */
+    public static DenseMatrix wrap(final int rows, final int columns, final double... values) {
+        if (rows < 0 || columns < 0 || (long) rows * columns != values.length) {
+            throw new IllegalArgumentException("Cannot lay out " + values.length + " values as a "
+                    + rows + "x" + columns + " matrix");
+        }
+        return new DenseMatrix(values, rows, columns);
+    }
+
+    /**
+     * Copies a jagged array into a matrix.
+     *
+     * @param matrix the rows of the matrix, all of the same length
+     * @return the matrix
+     */
+    public static DenseMatrix of(final double[][] matrix) {
+        final int columns = matrix.length == 0
+                ? 0
+                : matrix[0].length;
+        final double[] values = new double[Math.multiplyExact(matrix.length, columns)];
+        for (int r = 0; r < matrix.length; r++) {
+            if (matrix[r].length != columns) {
+                throw new IllegalArgumentException("Row " + r + " has " + matrix[r].length + " columns, expected "
+                        + columns);
+            }
+            System.arraycopy(matrix[r], 0, values, r * columns, columns);
+        }
+        return new DenseMatrix(values, matrix.length, columns);
+    }
+
+    /**
+     * Turns a numeric table into a matrix. A row-major table is wrapped without copying its cells, a column-major
+     * one is transposed into a new array.
+     *
+     * @param table the table, which must not be modified afterwards
+     * @return the matrix
+     */
+    public static DenseMatrix of(final NumericTable table) {
+        return table.layout() == NumericTable.Layout.ROW_MAJOR
+                ? new DenseMatrix(table.values(), table.rows(), table.columns())
+                : new DenseMatrix(table.values(), table.columns(), table.rows()).transpose();
+    }
+
+    /**
+     * Loads a comma separated file of numbers, see {@link FileUtilities#loadNumeric(String)}. The cells are parsed
+     * straight into the array of the matrix, without boxing.
+     *
+     * @param path the path of the file
+     * @return the matrix of the values in the file, empty if it can not be read
+     */
+    public static DenseMatrix load(final String path) {
+        return of(FileUtilities.loadNumeric(path));
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row    the row of the cell
+     * @param column the column of the cell
+     * @return the value
+     */
+    public double get(final int row, final int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Cell (" + row + ", " + column + ") out of bounds for "
+                    + rows + "x" + columns + " matrix");
+        }
+        return values[row * columns + column];
+    }
+
+    /**
+     * Copies a row.
+     *
+     * @param row the row
+     * @return the values of the row
+     */
+    public double[] row(final int row) {
+        Objects.checkIndex(row, rows);
+        return Arrays.copyOfRange(values, row * columns, (row + 1) * columns);
+    }
+
+    /**
+     * Copies a column.
+     *
+     * @param column the column
+     * @return the values of the column
+     */
+    public double[] column(final int column) {
+        Objects.checkIndex(column, columns);
+        final double[] result = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            result[r] = values[r * columns + column];
+        }
+        return result;
+    }
+
+    /**
+     * Copies a range of columns into a new matrix, such as the features of a table whose last column is a target.
+     *
+     * @param from the first column, inclusive
+     * @param to   the last column, exclusive
+     * @return the matrix of the columns
+     */
+    public DenseMatrix columns(final int from, final int to) {
+        Objects.checkFromToIndex(from, to, columns);
+        final int width = to - from;
+        final double[] result = new double[Math.multiplyExact(rows, width)];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(values, r * columns + from, result, r * width, width);
+        }
+        return new DenseMatrix(result, rows, width);
+    }
+
+    /**
+     * Returns a read-only view of the cells, row by row, without copying them. Bulk reads of whole rows from the
+     * view are as fast as reading the array.
+     *
+     * @return the view of the cells
+     */
+    public DoubleBuffer buffer() {
+        return DoubleBuffer.wrap(values).asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the cells, row by row.
+     *
+     * @return the cells
+     */
+    public double[] toRowMajorArray() {
+        return values.clone();
+    }
+
+    /**
+     * Copies the matrix into one array per row, for code working with jagged matrices.
+     *
+     * @return the rows of the matrix
+     */
+    public double[][] toArray() {
+        final double[][] matrix = new double[rows][];
+        for (int r = 0; r < rows; r++) {
+            matrix[r] = row(r);
+        }
+        return matrix;
+    }
+
+    /**
+     * Multiplies this matrix by another one.
+     *
+     * @param other the right operand, with as many rows as this matrix has columns
+     * @return the product
+     */
+    public DenseMatrix multiply(final DenseMatrix other) {
+        if (columns != other.rows) {
+            throw new IllegalArgumentException("Cannot multiply " + rows + "x" + columns + " by "
+                    + other.rows + "x" + other.columns);
+        }
+        final DenseMatrix product = zeros(rows, other.columns);
+        final long work = (long) rows * columns * other.columns;
+        final int rowBlocks = (rows + BLOCK - 1) / BLOCK;
+        final int grain = (int) Math.max(1, MULTIPLY_PARALLEL_THRESHOLD * rowBlocks / Math.max(1, work));
+        forRange(0, rowBlocks, grain, work >= MULTIPLY_PARALLEL_THRESHOLD,
+                (from, to) -> multiplyBlocks(other, product, from * BLOCK, Math.min(rows, to * BLOCK)));
+        return product;
+    }
+
+    /**
+     * Accumulates the rows [fromRow, toRow) of the product, one block of the inner dimension and of the result
+     * columns at a time, so that the rows of the other matrix being read stay in cache.
+     */
+    private void multiplyBlocks(final DenseMatrix other, final DenseMatrix product, final int fromRow,
+                                final int toRow) {
+        final int inner = columns;
+        final int width = other.columns;
+        final double[] a = values;
+        final double[] b = other.values;
+        final double[] c = product.values;
+        for (int ii = fromRow; ii < toRow; ii += BLOCK) {
+            final int iEnd = Math.min(ii + BLOCK, toRow);
+            for (int kk = 0; kk < inner; kk += BLOCK) {
+                final int kEnd = Math.min(kk + BLOCK, inner);
+                for (int jj = 0; jj < width; jj += BLOCK) {
+                    final int jEnd = Math.min(jj + BLOCK, width);
+                    for (int i = ii; i < iEnd; i++) {
+                        final int cRow = i * width;
+                        final int aRow = i * inner;
+                        for (int k = kk; k < kEnd; k++) {
+                            final double aik = a[aRow + k];
+                            final int bRow = k * width;
+                            for (int j = jj; j < jEnd; j++) {
+                                c[cRow + j] += aik * b[bRow + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies this matrix by a column vector.
+     *
+     * @param vector the vector, with as many elements as this matrix has columns
+     * @return the product, with as many elements as this matrix has rows
+     */
+    public double[] multiply(final double[] vector) {
+        if (vector.length != columns) {
+            throw new IllegalArgumentException("Cannot multiply " + rows + "x" + columns + " by a vector of "
+                    + vector.length);
+        }
+        final double[] result = new double[rows];
+        final long work = (long) rows * columns;
+        forRange(0, rows, grain(rows, work), work >= PARALLEL_THRESHOLD, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                final int offset = r * columns;
+                double sum = 0;
+                for (int c = 0; c < columns; c++) {
+                    sum += values[offset + c] * vector[c];
+                }
+                result[r] = sum;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the transpose of this matrix.
+     *
+     * @return the matrix whose rows are the columns of this one
+     */
+    public DenseMatrix transpose() {
+        final DenseMatrix transpose = zeros(columns, rows);
+        final double[] t = transpose.values;
+        final int rowBlocks = (rows + BLOCK - 1) / BLOCK;
+        final long work = (long) rows * columns;
+        forRange(0, rowBlocks, grain(rowBlocks, work), work >= PARALLEL_THRESHOLD, (from, to) -> {
+            for (int ii = from * BLOCK; ii < Math.min(rows, to * BLOCK); ii += BLOCK) {
+                final int iEnd = Math.min(ii + BLOCK, rows);
+                for (int jj = 0; jj < columns; jj += BLOCK) {
+                    final int jEnd = Math.min(jj + BLOCK, columns);
+                    for (int i = ii; i < iEnd; i++) {
+                        for (int j = jj; j < jEnd; j++) {
+                            t[j * rows + i] = values[i * columns + j];
+                        }
+                    }
+                }
+            }
+        });
+        return transpose;
+    }
+
+    public DenseMatrix add(final DenseMatrix other) {
+        return zip(other, Double::sum);
+    }
+
+    public DenseMatrix subtract(final DenseMatrix other) {
+        return zip(other, (x, y) -> x - y);
+    }
+
+    /**
+     * Multiplies the matrices cell by cell, the Hadamard product.
+     *
+     * @param other a matrix of the same dimensions
+     * @return the matrix of the products of the cells
+     */
+    public DenseMatrix multiplyElements(final DenseMatrix other) {
+        return zip(other, (x, y) -> x * y);
+    }
+
+    public DenseMatrix scale(final double factor) {
+        return map(x -> x * factor);
+    }
+
+    /**
+     * Applies a function to every cell.
+     *
+     * @param f the function, which must be safe to call from several threads
+     * @return the matrix of the results
+     */
+    public DenseMatrix map(final DoubleUnaryOperator f) {
+        final double[] result = new double[values.length];
+        forRange(0, values.length, grain(values.length, values.length), values.length >= PARALLEL_THRESHOLD,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        result[i] = f.applyAsDouble(values[i]);
+                    }
+                });
+        return new DenseMatrix(result, rows, columns);
+    }
+
+    /**
+     * Combines the cells of two matrices of the same dimensions.
+     *
+     * @param other the other matrix
+     * @param f     the function combining a cell of this matrix with the same cell of the other one, which must
+     *              be safe to call from several threads
+     * @return the matrix of the results
+     */
+    public DenseMatrix zip(final DenseMatrix other, final DoubleBinaryOperator f) {
+        if (rows != other.rows || columns != other.columns) {
+            throw new IllegalArgumentException("Dimensions differ: " + rows + "x" + columns + " and "
+                    + other.rows + "x" + other.columns);
+        }
+        final double[] result = new double[values.length];
+        forRange(0, values.length, grain(values.length, values.length), values.length >= PARALLEL_THRESHOLD,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        result[i] = f.applyAsDouble(values[i], other.values[i]);
+                    }
+                });
+        return new DenseMatrix(result, rows, columns);
+    }
+
+    /**
+     * Returns the number of units of a range that make up at least the parallel threshold of work.
+     */
+    private static int grain(final int units, final long work) {
+        return (int) Math.max(1, PARALLEL_THRESHOLD * units / Math.max(1, work));
+    }
+
+    /**
+     * Runs an action over a range of indices, split into parts of at least {@code grain} indices that run on the
+     * common pool when {@code parallel} is set.
+     */
+    private static void forRange(final int from, final int to, final int grain, final boolean parallel,
+                                 final RangeAction action) {
+        if (!parallel || to - from <= grain) {
+            action.run(from, to);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(from, to, grain, action));
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final RangeAction action;
+
+        private RangeTask(final int from, final int to, final int grain, final RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                action.run(from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, grain, action), new RangeTask(middle, to, grain, action));
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DenseMatrix other)) {
+            return false;
+        }
+        return rows == other.rows && columns == other.columns && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + columns) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int r = 0; r < rows; r++) {
+            builder.append(r == 0 ? "" : ",\n ").append(Arrays.toString(row(r)));
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,268 @@
+package pt.mleiria.math;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A KLL sketch of a stream of doubles, estimating its quantiles in a fixed amount of memory.
+ * <p>
+ * The values are kept in a stack of compactors, level h holding values that stand for 2<sup>h</sup> values of the
+ * stream. When the sketch is full, the lowest level over its capacity is sorted and every other value, starting
+ * at a random offset, is promoted to the next level, the others being dropped. Capacities shrink by a factor of
+ * 2/3 going down from the top level, so the sketch holds at most about 3k values, and the rank of an estimated
+ * quantile is off by about 1.7/k of the count, some 1% with the default k of 200, whatever the number of values.
+ * <p>
+ * Sketches of parts of a stream can be merged into a sketch of the whole, in any order, with the same accuracy.
+ * The minimum and maximum are exact. The sketch is not thread safe.
+ */
+public final class KllSketch {
+
+    /**
+     * The accuracy parameter of sketches created without one.
+     */
+    public static final int DEFAULT_K = 200;
+
+    private static final double SHRINK = 2.0 / 3.0;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final int k;
+    private final SplittableRandom random;
+    private double[][] levels = new double[1][MIN_CAPACITY];
+    private int[] sizes = new int[1];
+    private int retained;
+    private int capacity;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    private KllSketch(final int k) {
+        this.k = k;
+        this.random = new SplittableRandom(SEED);
+        this.capacity = capacity(0, 1);
+    }
+
+    /**
+     * Creates an empty sketch with the default accuracy.
+     *
+     * @return the sketch
+     */
+    public static KllSketch create() {
+        return create(DEFAULT_K);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param k the accuracy parameter, the capacity of the top level; the rank error is about 1.7/k
+     * @return the sketch
+     */
+    public static KllSketch create(final int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ": " + k);
+        }
+        return new KllSketch(k);
+    }
+
+    /**
+     * Adds a value. NaN values are ignored.
+     *
+     * @param value the value
+     */
+    public void add(final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else if (value < min) {
+            min = value;
+        } else if (value > max) {
+            max = value;
+        }
+        count++;
+        push(0, value);
+        if (retained > capacity) {
+            compact();
+        }
+    }
+
+    /**
+     * Adds the values of another sketch to this one. The other sketch is not changed; a sketch merged with itself
+     * counts its values twice.
+     *
+     * @param other the sketch to merge, created with the same k
+     * @return this sketch
+     */
+    public KllSketch merge(final KllSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Can not merge a sketch of k " + other.k + " into one of k " + k);
+        }
+        if (other.count == 0) {
+            return this;
+        }
+        if (other == this) {
+            return merge(copy());
+        }
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                push(h, other.levels[h][i]);
+            }
+        }
+        while (retained > capacity) {
+            compact();
+        }
+        return this;
+    }
+
+    /**
+     * @return the accuracy parameter of the sketch
+     */
+    public int k() {
+        return k;
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the smallest value added, NaN if none
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * @return the largest value added, NaN if none
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * Estimates the value below which the given fraction of the values fall.
+     *
+     * @param quantile the fraction, from 0 to 1, such as 0.5 for the median
+     * @return the estimated value, NaN if the sketch is empty
+     */
+    public double quantile(final double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (quantile == 0) {
+            return min;
+        }
+        if (quantile == 1) {
+            return max;
+        }
+        final double[] values = new double[retained];
+        final long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n++] = 1L << h;
+            }
+        }
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        final double rank = quantile * count;
+        long seen = 0;
+        for (final int i : order) {
+            seen += weights[i];
+            if (seen >= rank) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns a copy of this sketch, to merge it with itself.
+     */
+    KllSketch copy() {
+        final KllSketch copy = new KllSketch(k);
+        copy.levels = new double[levels.length][];
+        for (int h = 0; h < levels.length; h++) {
+            copy.levels[h] = Arrays.copyOf(levels[h], levels[h].length);
+        }
+        copy.sizes = sizes.clone();
+        copy.retained = retained;
+        copy.capacity = capacity;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    private void push(final int level, final double value) {
+        if (level >= levels.length) {
+            final int height = levels.length;
+            levels = Arrays.copyOf(levels, level + 1);
+            for (int h = height; h <= level; h++) {
+                levels[h] = new double[MIN_CAPACITY];
+            }
+            sizes = Arrays.copyOf(sizes, level + 1);
+            capacity = 0;
+            for (int h = 0; h <= level; h++) {
+                capacity += capacity(h, level + 1);
+            }
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], 2 * sizes[level]);
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+
+    /**
+     * Returns the capacity of a level in a sketch of the given height: k at the top, shrinking by 2/3 a level.
+     */
+    private int capacity(final int level, final int height) {
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(SHRINK, height - 1 - level)));
+    }
+
+    /**
+     * Halves the lowest level over its capacity, promoting every other value to the level above.
+     */
+    private void compact() {
+        final int height = levels.length;
+        int level = 0;
+        while (level < height - 1 && sizes[level] < capacity(level, height)) {
+            level++;
+        }
+        final double[] values = levels[level];
+        final int size = sizes[level];
+        // an odd value out stays at its level
+        final int pairs = size / 2;
+        Arrays.sort(values, 0, size);
+        final int from = size - 2 * pairs;
+        final int offset = random.nextBoolean() ? 1 : 0;
+        sizes[level] = from;
+        retained -= 2 * pairs;
+        for (int i = from + offset; i < size; i += 2) {
+            push(level + 1, values[i]);
+        }
+    }
+}
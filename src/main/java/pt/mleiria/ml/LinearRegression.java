@@ -0,0 +1,589 @@
+package pt.mleiria.ml;
+
+import pt.mleiria.core.Metrics;
+import pt.mleiria.core.StopWatch;
+import pt.mleiria.math.Cholesky;
+import pt.mleiria.math.DenseMatrix;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A linear model {@code y = intercept + weights · x}, fitted by least squares.
+ * <p>
+ * Two solvers are offered. The {@link NormalEquation normal equation} accumulates {@code X'X} and {@code X'y} in
+ * one parallel pass over the rows and solves them by Cholesky decomposition: it is exact and, with few features,
+ * the fastest way to fit millions of rows. {@link GradientDescent Batch gradient descent} reads all the rows once
+ * per iteration and needs no matrix of the size of the features squared; it works on standardized features so
+ * that one learning rate suits features of any scale, and it reuses the same tasks and buffers in every
+ * iteration, allocating nothing in its loop.
+ * <p>
+ * Both read the feature matrix in place, through its read-only {@link DenseMatrix#buffer() view}, split into
+ * chunks of rows processed on the common fork-join pool. Fits are timed with a {@link StopWatch} and reported to
+ * the {@code ml.linear.normal} and {@code ml.linear.gradient} timers of the global {@link Metrics}.
+ * <pre>{@code
+ * DenseMatrix data = DenseMatrix.load("house_prices.txt");
+ * LinearRegression.Fit fit = LinearRegression.normalEquation()
+ *         .fit(data.columns(0, 2), data.column(2));
+ * double price = fit.model().predict(1650, 3);
+ * }</pre>
+ */
+public final class LinearRegression {
+
+    private static final Metrics.Timer NORMAL = Metrics.global().timer("ml.linear.normal");
+
+    private static final Metrics.Timer GRADIENT = Metrics.global().timer("ml.linear.gradient");
+
+    /**
+     * Number of cells read from the matrix at a time into the buffer of a chunk.
+     */
+    private static final int SCRATCH_SIZE = 1 << 12;
+
+    private static final int MIN_CHUNK_ROWS = 1 << 14;
+
+    private final double intercept;
+    private final double[] weights;
+
+    private LinearRegression(final double intercept, final double[] weights) {
+        this.intercept = intercept;
+        this.weights = weights;
+    }
+
+    /**
+     * Creates a model with known coefficients.
+     *
+     * @param intercept the intercept
+     * @param weights   the weight of every feature
+     * @return the model
+     */
+    public static LinearRegression of(final double intercept, final double... weights) {
+        return new LinearRegression(intercept, weights.clone());
+    }
+
+    public static NormalEquation normalEquation() {
+        return new NormalEquation(0, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    public static GradientDescent gradientDescent() {
+        return new GradientDescent(0.1, 1000, 1e-10, ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    public double intercept() {
+        return intercept;
+    }
+
+    public double[] weights() {
+        return weights.clone();
+    }
+
+    /**
+     * Predicts the target of one row.
+     *
+     * @param features the features of the row
+     * @return the prediction
+     */
+    public double predict(final double... features) {
+        if (features.length != weights.length) {
+            throw new IllegalArgumentException("Expected " + weights.length + " features, got " + features.length);
+        }
+        double prediction = intercept;
+        for (int j = 0; j < weights.length; j++) {
+            prediction += weights[j] * features[j];
+        }
+        return prediction;
+    }
+
+    /**
+     * Predicts the target of every row of a matrix.
+     *
+     * @param features the features, one row per prediction
+     * @return the predictions
+     */
+    public double[] predict(final DenseMatrix features) {
+        final double[] predictions = features.multiply(weights);
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] += intercept;
+        }
+        return predictions;
+    }
+
+    /**
+     * Computes the mean squared error of the model on a dataset.
+     *
+     * @param features the features, one row per sample
+     * @param target   the target of every sample
+     * @return the mean of the squared residuals
+     */
+    public double meanSquaredError(final DenseMatrix features, final double[] target) {
+        final double[] predictions = predict(features);
+        checkTarget(features, target);
+        double sum = 0;
+        for (int i = 0; i < target.length; i++) {
+            final double residual = predictions[i] - target[i];
+            sum += residual * residual;
+        }
+        return target.length == 0
+                ? 0
+                : sum / target.length;
+    }
+
+    @Override
+    public String toString() {
+        return "LinearRegression{intercept=" + intercept + ", weights=" + Arrays.toString(weights) + '}';
+    }
+
+    /**
+     * The outcome of fitting a model.
+     *
+     * @param model        the fitted model
+     * @param iterations   the number of passes over the rows, 1 for the normal equation
+     * @param loss         the mean squared error on the training rows, for gradient descent the one of the last
+     *                     weights evaluated
+     * @param converged    whether the solver met its tolerance
+     * @param elapsedNanos the time taken by the fit
+     */
+    public record Fit(LinearRegression model, int iterations, double loss, boolean converged, long elapsedNanos) {
+    }
+
+    private static void checkTarget(final DenseMatrix features, final double[] target) {
+        if (features.rows() != target.length) {
+            throw new IllegalArgumentException("Features have " + features.rows() + " rows but the target has "
+                    + target.length + " values");
+        }
+    }
+
+    /**
+     * Splits the rows into chunks, at most {@code 4 * parallelism} of them and of at least {@link #MIN_CHUNK_ROWS}
+     * rows, except for a single chunk.
+     */
+    private static int[] chunkBounds(final int rows, final int parallelism) {
+        final int chunks = Math.max(1, Math.min(4 * parallelism, rows / MIN_CHUNK_ROWS));
+        final int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) rows * i / chunks);
+        }
+        return bounds;
+    }
+
+    private static void run(final Chunk[] chunks) {
+        if (chunks.length == 1) {
+            chunks[0].compute();
+        } else {
+            ForkJoinTask.invokeAll(chunks);
+        }
+    }
+
+    /**
+     * A range of rows, read a block at a time from the feature matrix into a buffer of the chunk.
+     * The chunk can be run again after {@link #reinitialize()}.
+     */
+    private abstract static class Chunk extends RecursiveAction {
+        final DoubleBuffer cells;
+        final double[] target;
+        final int width;
+        final int from;
+        final int to;
+        final double[] scratch;
+
+        Chunk(final DenseMatrix features, final double[] target, final int from, final int to) {
+            this.cells = features.buffer();
+            this.target = target;
+            this.width = features.columns();
+            this.from = from;
+            this.to = to;
+            this.scratch = new double[Math.max(1, SCRATCH_SIZE / Math.max(1, width)) * width];
+        }
+
+        @Override
+        protected void compute() {
+            reset();
+            final int rowsPerRead = scratch.length / Math.max(1, width);
+            for (int row = from; row < to; row += rowsPerRead) {
+                final int count = Math.min(rowsPerRead, to - row);
+                cells.get(row * width, scratch, 0, count * width);
+                rows(scratch, count, row);
+            }
+        }
+
+        abstract void reset();
+
+        /**
+         * Accumulates {@code count} rows held in x, the first being row {@code first} of the matrix.
+         */
+        abstract void rows(double[] x, int count, int first);
+    }
+
+    /**
+     * Solves the normal equations {@code (X'X + λI) w = X'y}, with a column of ones for the intercept.
+     */
+    public static final class NormalEquation {
+        private final double ridge;
+        private final int parallelism;
+
+        private NormalEquation(final double ridge, final int parallelism) {
+            this.ridge = ridge;
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * Adds an L2 penalty on the weights, not on the intercept, which also makes collinear features solvable.
+         *
+         * @param ridge the penalty λ, 0 for ordinary least squares
+         * @return a solver with the penalty
+         */
+        public NormalEquation withRidge(final double ridge) {
+            if (ridge < 0) {
+                throw new IllegalArgumentException("Ridge penalty must not be negative: " + ridge);
+            }
+            return new NormalEquation(ridge, parallelism);
+        }
+
+        public NormalEquation withParallelism(final int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            }
+            return new NormalEquation(ridge, parallelism);
+        }
+
+        /**
+         * Fits a model.
+         *
+         * @param features the features, one row per sample
+         * @param target   the target of every sample
+         * @return the fit
+         * @throws ArithmeticException if {@code X'X} is singular, as with collinear features and no ridge penalty
+         */
+        public Fit fit(final DenseMatrix features, final double[] target) {
+            checkTarget(features, target);
+            final StopWatch watch = new StopWatch();
+            final int p = features.columns();
+            final int q = p + 1;
+            final int[] bounds = chunkBounds(features.rows(), parallelism);
+            final GramChunk[] chunks = new GramChunk[bounds.length - 1];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = new GramChunk(features, target, bounds[i], bounds[i + 1]);
+            }
+            run(chunks);
+            final double[] gram = new double[q * q];
+            final double[] xty = new double[q];
+            double yy = 0;
+            for (final GramChunk chunk : chunks) {
+                for (int i = 0; i < gram.length; i++) {
+                    gram[i] += chunk.gram[i];
+                }
+                for (int i = 0; i < q; i++) {
+                    xty[i] += chunk.xty[i];
+                }
+                yy += chunk.yy;
+            }
+            for (int a = 0; a < q; a++) {
+                for (int b = 0; b < a; b++) {
+                    gram[a * q + b] = gram[b * q + a];
+                }
+                if (a > 0) {
+                    gram[a * q + a] += ridge;
+                }
+            }
+            final double[] solution = Cholesky.of(DenseMatrix.wrap(q, q, gram)).solve(xty);
+            final LinearRegression model = new LinearRegression(solution[0], Arrays.copyOfRange(solution, 1, q));
+            // Σ(y - Zs)² = y'y - 2 s'Z'y + s'Z'Zs, with the ridge removed from the diagonal again
+            double sse = yy;
+            for (int a = 0; a < q; a++) {
+                sse -= 2 * solution[a] * xty[a];
+                for (int b = 0; b < q; b++) {
+                    final double zz = gram[a * q + b] - (a == b && a > 0 ? ridge : 0);
+                    sse += solution[a] * zz * solution[b];
+                }
+            }
+            final double loss = features.rows() == 0
+                    ? 0
+                    : Math.max(0, sse) / features.rows();
+            return new Fit(model, 1, loss, true, watch.recordTo(NORMAL));
+        }
+    }
+
+    /**
+     * Accumulates the upper triangle of {@code Z'Z} and {@code Z'y}, where Z is X with a leading column of ones.
+     */
+    private static final class GramChunk extends Chunk {
+        private final double[] gram;
+        private final double[] xty;
+        private double yy;
+
+        private GramChunk(final DenseMatrix features, final double[] target, final int from, final int to) {
+            super(features, target, from, to);
+            final int q = width + 1;
+            this.gram = new double[q * q];
+            this.xty = new double[q];
+        }
+
+        @Override
+        void reset() {
+            Arrays.fill(gram, 0);
+            Arrays.fill(xty, 0);
+            yy = 0;
+        }
+
+        @Override
+        void rows(final double[] x, final int count, final int first) {
+            final int p = width;
+            final int q = p + 1;
+            for (int i = 0; i < count; i++) {
+                final int offset = i * p;
+                final double y = target[first + i];
+                gram[0] += 1;
+                xty[0] += y;
+                yy += y * y;
+                for (int a = 0; a < p; a++) {
+                    final double xa = x[offset + a];
+                    gram[a + 1] += xa;
+                    xty[a + 1] += xa * y;
+                    final int row = (a + 1) * q + 1;
+                    for (int b = a; b < p; b++) {
+                        gram[row + b] += xa * x[offset + b];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Minimizes the mean squared error by batch gradient descent on standardized features.
+     * <p>
+     * Features are centred and scaled to unit variance implicitly: the weights are kept in the standardized space
+     * and turned into weights on the raw features before every pass, so the matrix is never copied. The intercept
+     * starts at the mean of the target and the weights at zero. Iterations stop when the error decreases by less
+     * than the tolerance, relative to its value, when it increases, which means that the learning rate is too large,
+     * or after the maximum number of iterations.
+     */
+    public static final class GradientDescent {
+        private final double learningRate;
+        private final int maxIterations;
+        private final double tolerance;
+        private final int parallelism;
+
+        private GradientDescent(final double learningRate, final int maxIterations, final double tolerance,
+                                final int parallelism) {
+            this.learningRate = learningRate;
+            this.maxIterations = maxIterations;
+            this.tolerance = tolerance;
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * @param learningRate the step size on standardized features, below 2 / (number of features + 1) to be
+         *                     safe from divergence
+         * @return a solver with the learning rate
+         */
+        public GradientDescent withLearningRate(final double learningRate) {
+            if (!(learningRate > 0)) {
+                throw new IllegalArgumentException("Learning rate must be positive: " + learningRate);
+            }
+            return new GradientDescent(learningRate, maxIterations, tolerance, parallelism);
+        }
+
+        public GradientDescent withMaxIterations(final int maxIterations) {
+            if (maxIterations < 1) {
+                throw new IllegalArgumentException("Iterations must be positive: " + maxIterations);
+            }
+            return new GradientDescent(learningRate, maxIterations, tolerance, parallelism);
+        }
+
+        /**
+         * @param tolerance the relative decrease of the error below which the descent stops
+         * @return a solver with the tolerance
+         */
+        public GradientDescent withTolerance(final double tolerance) {
+            if (tolerance < 0) {
+                throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+            }
+            return new GradientDescent(learningRate, maxIterations, tolerance, parallelism);
+        }
+
+        public GradientDescent withParallelism(final int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+            }
+            return new GradientDescent(learningRate, maxIterations, tolerance, parallelism);
+        }
+
+        /**
+         * Fits a model.
+         *
+         * @param features the features, one row per sample
+         * @param target   the target of every sample
+         * @return the fit, not converged if the iterations ran out or the error diverged
+         */
+        public Fit fit(final DenseMatrix features, final double[] target) {
+            checkTarget(features, target);
+            final StopWatch watch = new StopWatch();
+            final int n = features.rows();
+            final int p = features.columns();
+            if (n == 0) {
+                return new Fit(new LinearRegression(0, new double[p]), 0, 0, true, watch.recordTo(GRADIENT));
+            }
+            final int[] bounds = chunkBounds(n, parallelism);
+            final GradientChunk[] chunks = new GradientChunk[bounds.length - 1];
+            final double[] weights = new double[p];
+            final double[] intercept = new double[1];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = new GradientChunk(features, target, bounds[i], bounds[i + 1], weights, intercept);
+            }
+
+            // first pass: the means and standard deviations of the features and the mean of the target
+            run(chunks);
+            final double[] mean = new double[p];
+            final double[] scale = new double[p];
+            double targetMean = 0;
+            for (final GradientChunk chunk : chunks) {
+                for (int j = 0; j < p; j++) {
+                    mean[j] += chunk.sums[j];
+                    scale[j] += chunk.squares[j];
+                }
+                targetMean -= chunk.residualSum;
+            }
+            targetMean /= n;
+            for (int j = 0; j < p; j++) {
+                mean[j] /= n;
+                final double variance = scale[j] / n - mean[j] * mean[j];
+                scale[j] = variance > 1e-12 * Math.max(1, mean[j] * mean[j])
+                        ? Math.sqrt(variance)
+                        : 1;
+            }
+            for (final GradientChunk chunk : chunks) {
+                chunk.collectMoments = false;
+            }
+
+            final double[] standardized = new double[p];
+            double standardizedIntercept = targetMean;
+            double previousLoss = Double.POSITIVE_INFINITY;
+            double loss = Double.NaN;
+            boolean converged = false;
+            int iteration = 0;
+            while (iteration < maxIterations) {
+                double shift = 0;
+                for (int j = 0; j < p; j++) {
+                    weights[j] = standardized[j] / scale[j];
+                    shift += weights[j] * mean[j];
+                }
+                intercept[0] = standardizedIntercept - shift;
+                for (final GradientChunk chunk : chunks) {
+                    chunk.reinitialize();
+                }
+                run(chunks);
+                iteration++;
+
+                double residualSum = 0;
+                double squaredSum = 0;
+                for (final GradientChunk chunk : chunks) {
+                    residualSum += chunk.residualSum;
+                    squaredSum += chunk.squaredSum;
+                }
+                loss = squaredSum / n;
+                if (!Double.isFinite(loss)) {
+                    break;
+                }
+                if (iteration > 1 && Math.abs(previousLoss - loss) <= tolerance * previousLoss) {
+                    converged = true;
+                    break;
+                }
+                if (loss > previousLoss) {
+                    // the learning rate is too large for the data, every further step overshoots more
+                    break;
+                }
+                previousLoss = loss;
+                final double meanResidual = residualSum / n;
+                for (int j = 0; j < p; j++) {
+                    double gradient = 0;
+                    for (final GradientChunk chunk : chunks) {
+                        gradient += chunk.sums[j];
+                    }
+                    gradient = (gradient / n - mean[j] * meanResidual) / scale[j];
+                    standardized[j] -= learningRate * gradient;
+                }
+                standardizedIntercept -= learningRate * meanResidual;
+            }
+            if (!converged) {
+                double shift = 0;
+                for (int j = 0; j < p; j++) {
+                    weights[j] = standardized[j] / scale[j];
+                    shift += weights[j] * mean[j];
+                }
+                intercept[0] = standardizedIntercept - shift;
+            }
+            final LinearRegression model = new LinearRegression(intercept[0], weights.clone());
+            return new Fit(model, iteration, loss, converged, watch.recordTo(GRADIENT));
+        }
+    }
+
+    /**
+     * Accumulates, for the current weights, the residuals {@code r = intercept + w·x - y}, their squares and the
+     * products {@code r x}. The first run instead sums the features and their squares, with weights at zero.
+     */
+    private static final class GradientChunk extends Chunk {
+        private final double[] weights;
+        private final double[] intercept;
+        private final double[] sums;
+        private final double[] squares;
+        private double residualSum;
+        private double squaredSum;
+        private boolean collectMoments = true;
+
+        private GradientChunk(final DenseMatrix features, final double[] target, final int from, final int to,
+                              final double[] weights, final double[] intercept) {
+            super(features, target, from, to);
+            this.weights = weights;
+            this.intercept = intercept;
+            this.sums = new double[width];
+            this.squares = new double[width];
+        }
+
+        @Override
+        void reset() {
+            Arrays.fill(sums, 0);
+            Arrays.fill(squares, 0);
+            residualSum = 0;
+            squaredSum = 0;
+        }
+
+        @Override
+        void rows(final double[] x, final int count, final int first) {
+            final int p = width;
+            if (collectMoments) {
+                for (int i = 0; i < count; i++) {
+                    final int offset = i * p;
+                    for (int j = 0; j < p; j++) {
+                        final double v = x[offset + j];
+                        sums[j] += v;
+                        squares[j] += v * v;
+                    }
+                    residualSum -= target[first + i];
+                }
+                return;
+            }
+            final double b = intercept[0];
+            final double[] w = weights;
+            final double[] s = sums;
+            final double[] y = target;
+            double rSum = 0;
+            double rSquared = 0;
+            for (int i = 0; i < count; i++) {
+                final int offset = i * p;
+                double residual = b - y[first + i];
+                for (int j = 0; j < p; j++) {
+                    residual += w[j] * x[offset + j];
+                }
+                rSum += residual;
+                rSquared += residual * residual;
+                for (int j = 0; j < p; j++) {
+                    s[j] += residual * x[offset + j];
+                }
+            }
+            residualSum += rSum;
+            squaredSum += rSquared;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package pt.mleiria.ml;
+
+import pt.mleiria.core.Metrics;
+import pt.mleiria.core.StopWatch;
+import pt.mleiria.io.utils.ColumnarTable;
+import pt.mleiria.io.utils.FileUtilities;
+import pt.mleiria.io.utils.LineSource;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Fits a {@link LinearRegression} by mini-batch stochastic gradient descent on rows streamed from a file, without
+ * holding the dataset in memory.
+ * <p>
+ * Every epoch reads the rows again, either from a comma separated file through a {@link LineSource}, whose
+ * background thread reads and parses the lines while this thread computes the gradients, or from a
+ * {@link ColumnarTable}, such as the memory-mapped binary copy kept by
+ * {@link pt.mleiria.io.utils.ColumnarCache ColumnarCache}. Memory use is bounded by the read-ahead capacity of
+ * the source and by the shuffle buffer, whatever the number of rows.
+ * <p>
+ * Rows arrive in file order unless a shuffle buffer is set: the buffer holds a fixed number of rows, and every new
+ * row takes the place of one drawn at random from it, which is trained on. The rows are therefore only shuffled
+ * within a window of the buffer size, which is enough to break the order of sorted or grouped files.
+ * <p>
+ * Features and target are standardized with running means and variances, updated during the first epoch and fixed
+ * afterwards, so one learning rate suits data of any scale. The fitted model is expressed on the raw features.
+ * The loss of an epoch is the mean squared error of every row before the step that includes it, a progressive
+ * estimate needing no extra pass.
+ * <pre>{@code
+ * LinearRegression.Fit fit = StochasticGradientDescent.create()
+ *         .withEpochs(5)
+ *         .withShuffleBuffer(10_000)
+ *         .fit("measurements.csv");
+ * }</pre>
+ */
+public final class StochasticGradientDescent {
+
+    private static final Metrics.Timer EPOCH = Metrics.global().timer("ml.sgd.epoch");
+
+    private static final Metrics.Counter RECORDS = Metrics.global().counter("ml.sgd.records");
+
+    private static final Function<String, double[]> PARSE =
+            FileUtilities.strToStrArr.andThen(FileUtilities.strArrToDbl);
+
+    private static final int TABLE_BLOCK = 1024;
+
+    private final double learningRate;
+    private final int batchSize;
+    private final int epochs;
+    private final int shuffleBuffer;
+    private final double tolerance;
+    private final int targetColumn;
+    private final int readAhead;
+    private final long seed;
+
+    private StochasticGradientDescent(final double learningRate, final int batchSize, final int epochs,
+                                      final int shuffleBuffer, final double tolerance, final int targetColumn,
+                                      final int readAhead, final long seed) {
+        this.learningRate = learningRate;
+        this.batchSize = batchSize;
+        this.epochs = epochs;
+        this.shuffleBuffer = shuffleBuffer;
+        this.tolerance = tolerance;
+        this.targetColumn = targetColumn;
+        this.readAhead = readAhead;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a trainer with a learning rate of 0.01, batches of 32 rows, 10 epochs, no shuffling, and the target
+     * in the last column.
+     *
+     * @return the trainer
+     */
+    public static StochasticGradientDescent create() {
+        return new StochasticGradientDescent(0.01, 32, 10, 0, 0, -1, LineSource.DEFAULT_CAPACITY, 42);
+    }
+
+    /**
+     * @param learningRate the step size on standardized data
+     * @return a trainer with the learning rate
+     */
+    public StochasticGradientDescent withLearningRate(final double learningRate) {
+        if (!(learningRate > 0)) {
+            throw new IllegalArgumentException("Learning rate must be positive: " + learningRate);
+        }
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * @param batchSize the number of rows averaged into each step
+     * @return a trainer with the batch size
+     */
+    public StochasticGradientDescent withBatchSize(final int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * @param epochs the maximum number of passes over the rows
+     * @return a trainer with the number of epochs
+     */
+    public StochasticGradientDescent withEpochs(final int epochs) {
+        if (epochs < 1) {
+            throw new IllegalArgumentException("Epochs must be positive: " + epochs);
+        }
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * @param shuffleBuffer the number of rows held to shuffle the stream, 0 to train in file order
+     * @return a trainer with the shuffle buffer
+     */
+    public StochasticGradientDescent withShuffleBuffer(final int shuffleBuffer) {
+        if (shuffleBuffer < 0) {
+            throw new IllegalArgumentException("Shuffle buffer must not be negative: " + shuffleBuffer);
+        }
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * @param tolerance the relative change of the epoch loss below which training stops early, 0 to run every
+     *                  epoch
+     * @return a trainer with the tolerance
+     */
+    public StochasticGradientDescent withTolerance(final double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        }
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * @param targetColumn the column holding the target, the other columns being the features, or -1 for the last
+     * @return a trainer with the target column
+     */
+    public StochasticGradientDescent withTargetColumn(final int targetColumn) {
+        if (targetColumn < -1) {
+            throw new IllegalArgumentException("Invalid target column: " + targetColumn);
+        }
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * @param readAhead the maximum number of rows parsed ahead of the training thread, see {@link LineSource}
+     * @return a trainer with the read-ahead capacity
+     */
+    public StochasticGradientDescent withReadAhead(final int readAhead) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("Read-ahead must be positive: " + readAhead);
+        }
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * @param seed the seed of the shuffle
+     * @return a trainer with the seed
+     */
+    public StochasticGradientDescent withSeed(final long seed) {
+        return new StochasticGradientDescent(learningRate, batchSize, epochs, shuffleBuffer, tolerance,
+                targetColumn, readAhead, seed);
+    }
+
+    /**
+     * Trains on a comma separated file of numbers, read again at every epoch. Gzip files are accepted.
+     *
+     * @param path the path of the file
+     * @return the fit, with the number of epochs run as iterations
+     * @throws IOException if the file can not be read
+     */
+    public LinearRegression.Fit fit(final String path) throws IOException {
+        final Trainer trainer = new Trainer();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            final long start = EPOCH.start();
+            try (final LineSource<double[]> source = LineSource.open(path, PARSE, readAhead)) {
+                while (source.hasNext()) {
+                    trainer.offer(source.next(), false);
+                }
+            }
+            final boolean done = trainer.endEpoch();
+            EPOCH.stop(start);
+            if (done) {
+                break;
+            }
+        }
+        return trainer.fit();
+    }
+
+    /**
+     * Trains on the rows of a table, such as one mapped from its binary cache.
+     *
+     * @param table the table
+     * @return the fit, with the number of epochs run as iterations
+     */
+    public LinearRegression.Fit fit(final ColumnarTable table) {
+        final Trainer trainer = new Trainer();
+        final int width = table.columns();
+        final DoubleBuffer[] columns = new DoubleBuffer[width];
+        for (int c = 0; c < width; c++) {
+            columns[c] = table.column(c);
+        }
+        final double[][] block = new double[width][TABLE_BLOCK];
+        final double[] row = new double[width];
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            final long start = EPOCH.start();
+            for (int first = 0; first < table.rows(); first += TABLE_BLOCK) {
+                final int count = Math.min(TABLE_BLOCK, table.rows() - first);
+                for (int c = 0; c < width; c++) {
+                    columns[c].get(first, block[c], 0, count);
+                }
+                for (int i = 0; i < count; i++) {
+                    for (int c = 0; c < width; c++) {
+                        row[c] = block[c][i];
+                    }
+                    trainer.offer(row, true);
+                }
+            }
+            final boolean done = trainer.endEpoch();
+            EPOCH.stop(start);
+            if (done) {
+                break;
+            }
+        }
+        return trainer.fit();
+    }
+
+    /**
+     * The state of one training run: the running statistics, the standardized weights, the batch being
+     * accumulated and the shuffle buffer, all allocated when the first row arrives.
+     */
+    private final class Trainer {
+        private final StopWatch watch = new StopWatch();
+        private final SplittableRandom random = new SplittableRandom(seed);
+        private int width = -1;
+        private int target;
+
+        private long count;
+        private double[] mean;
+        private double[] m2;
+        private double targetMean;
+        private double targetM2;
+        private double[] scale;
+        private double targetScale = 1;
+
+        private double[] weights;
+        private double intercept;
+        private double[] gradient;
+        private double interceptGradient;
+        private int batched;
+
+        private double[][] buffer;
+        private int buffered;
+
+        private int epoch;
+        private long epochRows;
+        private double epochLoss;
+        private double previousLoss = Double.NaN;
+        private double loss;
+        private boolean converged;
+
+        /**
+         * Takes a row from the source, shuffling it in if a buffer is set. A row that the source reuses must be
+         * copied before it is kept.
+         */
+        void offer(final double[] row, final boolean reused) {
+            if (width < 0) {
+                start(row.length);
+            } else if (row.length != width) {
+                throw new IllegalArgumentException("Expected " + width + " columns, got " + row.length);
+            }
+            if (buffer == null) {
+                train(row);
+            } else if (buffered < buffer.length) {
+                keep(buffered++, row, reused);
+            } else {
+                final int slot = random.nextInt(buffer.length);
+                train(buffer[slot]);
+                keep(slot, row, reused);
+            }
+        }
+
+        private void keep(final int slot, final double[] row, final boolean reused) {
+            if (reused) {
+                System.arraycopy(row, 0, buffer[slot], 0, width);
+            } else {
+                buffer[slot] = row;
+            }
+        }
+
+        private void start(final int columns) {
+            width = columns;
+            target = targetColumn < 0
+                    ? columns - 1
+                    : targetColumn;
+            if (target >= columns) {
+                throw new IllegalArgumentException("Target column " + target + " out of " + columns + " columns");
+            }
+            final int p = columns - 1;
+            mean = new double[p];
+            m2 = new double[p];
+            scale = new double[p];
+            weights = new double[p];
+            gradient = new double[p];
+            if (shuffleBuffer > 0) {
+                buffer = new double[shuffleBuffer][columns];
+            }
+        }
+
+        private double feature(final double[] row, final int j) {
+            return row[j < target ? j : j + 1];
+        }
+
+        private void train(final double[] row) {
+            final int p = width - 1;
+            final double y = row[target];
+            if (epoch == 0) {
+                count++;
+                for (int j = 0; j < p; j++) {
+                    final double x = feature(row, j);
+                    final double delta = x - mean[j];
+                    mean[j] += delta / count;
+                    m2[j] += delta * (x - mean[j]);
+                    scale[j] = standardDeviation(m2[j]);
+                }
+                final double delta = y - targetMean;
+                targetMean += delta / count;
+                targetM2 += delta * (y - targetMean);
+                targetScale = standardDeviation(targetM2);
+            }
+            double prediction = intercept;
+            for (int j = 0; j < p; j++) {
+                prediction += weights[j] * (feature(row, j) - mean[j]) / scale[j];
+            }
+            final double residual = prediction - (y - targetMean) / targetScale;
+            epochLoss += residual * residual * targetScale * targetScale;
+            epochRows++;
+            for (int j = 0; j < p; j++) {
+                gradient[j] += residual * (feature(row, j) - mean[j]) / scale[j];
+            }
+            interceptGradient += residual;
+            if (++batched == batchSize) {
+                step();
+            }
+        }
+
+        private double standardDeviation(final double squares) {
+            final double variance = count > 1
+                    ? squares / count
+                    : 0;
+            return variance > 0
+                    ? Math.sqrt(variance)
+                    : 1;
+        }
+
+        private void step() {
+            if (batched == 0) {
+                return;
+            }
+            final double rate = learningRate / batched;
+            for (int j = 0; j < weights.length; j++) {
+                weights[j] -= rate * gradient[j];
+                gradient[j] = 0;
+            }
+            intercept -= rate * interceptGradient;
+            interceptGradient = 0;
+            batched = 0;
+        }
+
+        /**
+         * Drains the shuffle buffer in random order and closes the epoch.
+         *
+         * @return whether training should stop
+         */
+        boolean endEpoch() {
+            if (buffer != null) {
+                for (int i = buffered - 1; i >= 0; i--) {
+                    final int slot = random.nextInt(i + 1);
+                    final double[] row = buffer[slot];
+                    buffer[slot] = buffer[i];
+                    buffer[i] = row;
+                    train(row);
+                }
+                buffered = 0;
+            }
+            step();
+            RECORDS.add(epochRows);
+            loss = epochRows == 0
+                    ? 0
+                    : epochLoss / epochRows;
+            epoch++;
+            final boolean done = tolerance > 0 && Math.abs(previousLoss - loss) <= tolerance * previousLoss;
+            converged = done;
+            previousLoss = loss;
+            epochLoss = 0;
+            epochRows = 0;
+            return done || !Double.isFinite(loss);
+        }
+
+        LinearRegression.Fit fit() {
+            final int p = Math.max(0, width - 1);
+            final double[] raw = new double[p];
+            double rawIntercept = targetMean + targetScale * intercept;
+            for (int j = 0; j < p; j++) {
+                raw[j] = targetScale * weights[j] / scale[j];
+                rawIntercept -= raw[j] * mean[j];
+            }
+            return new LinearRegression.Fit(LinearRegression.of(rawIntercept, raw), epoch, loss, converged,
+                    watch.elapsedNanos());
+        }
+    }
+}
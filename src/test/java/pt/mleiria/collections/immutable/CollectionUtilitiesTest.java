@@ -3,7 +3,10 @@ package pt.mleiria.collections.immutable;
 import org.junit.jupiter.api.Test;
 import pt.mleiria.dto.Pair;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.function.BiFunction;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
@@ -26,6 +29,44 @@ class CollectionUtilitiesTest {
         assertEquals(15, res1);
     }
 
+    @Test
+    void foldLeftLargeList() {
+        final List<Integer> list = CollectionUtilities.range(0, 1_000_000);
+        final Long res = CollectionUtilities.foldLeft(list, 0L, x -> y -> x + y);
+        assertEquals(499_999_500_000L, res);
+    }
+
+    @Test
+    void reduce() {
+        assertEquals(15, CollectionUtilities.reduce(list(1, 2, 3, 4, 5), x -> y -> x + y));
+        assertEquals("a", CollectionUtilities.reduce(list("a"), x -> y -> x + y));
+        assertThrows(IllegalStateException.class, () -> CollectionUtilities.reduce(list(), x -> y -> x));
+    }
+
+    @Test
+    void scanLeft() {
+        assertEquals("[0, 1, 3, 6]", CollectionUtilities.scanLeft(list(1, 2, 3), 0, x -> y -> x + y).toString());
+        assertEquals("[0]", CollectionUtilities.<Integer, Integer>scanLeft(list(), 0, x -> y -> x + y).toString());
+    }
+
+    @Test
+    void scanRight() {
+        assertEquals("[6, 5, 3, 0]", CollectionUtilities.scanRight(list(1, 2, 3), 0, x -> y -> x + y).toString());
+    }
+
+    @Test
+    void parallelFoldLeft() {
+        final List<Integer> list = CollectionUtilities.range(0, 1_000_000);
+        final Long res = CollectionUtilities.parallelFoldLeft(list, 0L, x -> y -> x + y, x -> y -> x + y);
+        assertEquals(499_999_500_000L, res);
+    }
+
+    @Test
+    void mapReduce() {
+        final List<String> list = list("a", "bb", "ccc");
+        assertEquals(6, CollectionUtilities.mapReduce(list, String::length, 0, x -> y -> x + y));
+    }
+
     @Test
     void unfold() {
         assertEquals("[1, 2, 4, 8]", CollectionUtilities.unfold(1, x -> x * 2, x -> x < 10).toString());
@@ -80,4 +121,51 @@ class CollectionUtilitiesTest {
     }
 
 
+    @Test
+    void zipWithIndexIsALazyView() {
+        final List<Pair<String, Integer>> indexed = CollectionUtilities.zipWithIndex(list("a", "b", "c"));
+        assertEquals(3, indexed.size());
+        assertEquals(new Pair<>("c", 2), indexed.get(2));
+        assertEquals(List.of(new Pair<>("a", 0), new Pair<>("b", 1), new Pair<>("c", 2)), indexed);
+        assertThrows(UnsupportedOperationException.class, () -> indexed.add(new Pair<>("d", 3)));
+    }
+
+    @Test
+    void zipWithIndexReflectsChangesToTheInput() {
+        final List<String> mutable = new ArrayList<>(List.of("a", "b"));
+        final List<Pair<String, Integer>> indexed = CollectionUtilities.zipWithIndex(mutable);
+        mutable.add("c");
+        mutable.set(0, "z");
+        assertEquals(List.of(new Pair<>("z", 0), new Pair<>("b", 1), new Pair<>("c", 2)), indexed);
+    }
+
+    @Test
+    void zipWithIndexIsRandomAccessOnlyIfTheInputIs() {
+        assertTrue(CollectionUtilities.zipWithIndex(new ArrayList<>(List.of(1, 2))) instanceof RandomAccess);
+        final List<Pair<Integer, Integer>> linked =
+                CollectionUtilities.zipWithIndex(new LinkedList<>(List.of(1, 2, 3, 4)));
+        assertFalse(linked instanceof RandomAccess);
+        final Function<Integer, Function<Pair<Integer, Integer>, Integer>> f = acc -> p -> acc + p._1() * p._2();
+        final Function<Integer, Function<Integer, Integer>> combiner = x -> y -> x + y;
+        assertEquals(20, CollectionUtilities.parallelFoldLeft(linked, 0, f, combiner));
+    }
+
+    @Test
+    void foldLeftWithIndex() {
+        final List<String> list = list("a", "b", "c");
+        assertEquals("a0b1c2", CollectionUtilities.foldLeftWithIndex(list, "", (acc, t, i) -> acc + t + i));
+        final StringBuilder sb = new StringBuilder();
+        CollectionUtilities.forEachWithIndex(list, (t, i) -> sb.append(i).append(t));
+        assertEquals("0a1b2c", sb.toString());
+        assertEquals(0, CollectionUtilities.foldLeftWithIndex(list(), 0, (acc, t, i) -> acc + i));
+    }
+
+    @Test
+    void zipReadsSidesWithoutPairs() {
+        final PairList<String, Integer> zipped = CollectionUtilities.zip(list("x", "y", "z"), list(1, 2));
+        assertEquals(2, zipped.size());
+        assertEquals("y", zipped.first(1));
+        assertEquals(2, zipped.second(1));
+        assertEquals(3, zipped.foldLeft(0, (acc, x, y) -> acc + y));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcTest {
+
+    @Test
+    void fromAndGet() {
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            expected.add(i);
+        }
+        final Conc<Integer> conc = Conc.from(expected);
+        assertEquals(expected, conc);
+        assertEquals(9_999, conc.get(9_999));
+        assertThrows(IndexOutOfBoundsException.class, () -> conc.get(10_000));
+    }
+
+    @Test
+    void concatKeepsOrder() {
+        final List<Integer> expected = new ArrayList<>();
+        Conc<Integer> conc = Conc.empty();
+        for (int i = 0; i < 200; i++) {
+            final Integer[] chunk = new Integer[i % 7 + 1];
+            for (int j = 0; j < chunk.length; j++) {
+                chunk[j] = expected.size();
+                expected.add(expected.size());
+            }
+            conc = Conc.concat(conc, Conc.of(chunk));
+        }
+        conc = conc.append(-1);
+        expected.add(-1);
+        assertEquals(expected, conc);
+    }
+
+    @Test
+    void parallelFoldLeft() {
+        final Integer[] values = new Integer[1_000_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        final Conc<Integer> conc = Conc.of(values);
+        final long sum = conc.parallelFoldLeft(0L, acc -> x -> acc + x, x -> y -> x + y);
+        assertEquals(499_999_500_000L, sum);
+        assertEquals(conc.foldLeft(0L, acc -> x -> acc + x), sum);
+    }
+
+    @Test
+    void mapReduce() {
+        final Conc<String> conc = Conc.of("a", "bb", "ccc");
+        assertEquals(6, conc.mapReduce(String::length, 0, x -> y -> x + y));
+    }
+
+    @Test
+    void fromConsList() {
+        final Conc<Integer> conc = pt.mleiria.collections.immutable.List.list(1, 2, 3).toConc();
+        assertEquals("[1, 2, 3]", conc.toString());
+    }
+}
@@ -0,0 +1,64 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DoubleListTest {
+
+    @Test
+    void foldLeft() {
+        final DoubleList list = DoubleList.of(1, 2, 3, 4, 5);
+        assertEquals(15.0, list.foldLeft(0.0, Double::sum));
+        assertEquals("(((0 + 1.0) + 2.0) + 3.0)",
+                DoubleList.of(1, 2, 3).foldLeft("0", acc -> x -> "(" + acc + " + " + x + ")"));
+    }
+
+    @Test
+    void foldRight() {
+        assertEquals("(1.0 + (2.0 + (3.0 + 0)))",
+                DoubleList.of(1, 2, 3).foldRight("0", x -> acc -> "(" + x + " + " + acc + ")"));
+    }
+
+    @Test
+    void headAndTail() {
+        final DoubleList list = DoubleList.of(1, 2, 3);
+        assertEquals(1.0, list.head());
+        assertEquals(DoubleList.of(2, 3), list.tail());
+        assertTrue(list.drop(3).isEmpty());
+        assertThrows(IllegalStateException.class, () -> DoubleList.empty().head());
+    }
+
+    @Test
+    void mapAndZip() {
+        final DoubleList sizes = DoubleList.of(1000, 2000, 3000);
+        final DoubleList scaled = sizes.map(x -> x / 1000);
+        assertEquals("[1.0, 2.0, 3.0]", scaled.toString());
+        assertEquals("[1001.0, 2002.0]", sizes.zip(DoubleList.of(1, 2), Double::sum).toString());
+    }
+
+    @Test
+    void unfold() {
+        assertEquals("[1.0, 2.0, 4.0, 8.0]", DoubleList.unfold(1, x -> x * 2, x -> x < 10).toString());
+    }
+
+    @Test
+    void column() {
+        final List<double[]> rows = List.of(new double[]{2104, 3, 399900}, new double[]{1600, 3, 329900});
+        assertEquals(DoubleList.of(399900, 329900), DoubleList.column(rows, 2));
+    }
+
+    @Test
+    void builderCrossesChunks() {
+        final DoubleList.Builder builder = DoubleList.builder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.add(i);
+        }
+        final DoubleList list = builder.build();
+        assertEquals(10_000, list.length());
+        assertEquals(9_999.0, list.get(9_999));
+        assertEquals(49_995_000.0, list.sum());
+    }
+}
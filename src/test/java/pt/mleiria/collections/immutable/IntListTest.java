@@ -0,0 +1,39 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntListTest {
+
+    @Test
+    void range() {
+        assertEquals("[]", IntList.range(0, 0).toString());
+        assertEquals("[0]", IntList.range(0, 1).toString());
+        assertEquals("[0, 1, 2, 3, 4]", IntList.range(0, 5).toString());
+        assertEquals("[]", IntList.range(5, 1).toString());
+    }
+
+    @Test
+    void unfold() {
+        assertEquals("[1, 2, 3, 4, 5]", IntList.unfold(1, x -> x + 1, x -> x <= 5).toString());
+    }
+
+    @Test
+    void foldLeftLargeRange() {
+        assertEquals(499_999_500_000L, IntList.range(0, 1_000_000).sum());
+        assertEquals(15, IntList.range(1, 6).foldLeft(0, Integer::sum));
+    }
+
+    @Test
+    void filterAndZip() {
+        final IntList evens = IntList.range(0, 10).filter(x -> x % 2 == 0);
+        assertEquals(IntList.of(0, 2, 4, 6, 8), evens);
+        assertEquals(IntList.of(0, 3, 6), evens.zip(IntList.range(0, 3), Integer::sum));
+    }
+
+    @Test
+    void mapToObj() {
+        assertEquals("[a, aa]", IntList.range(1, 3).mapToObj("a"::repeat).toString());
+    }
+}
@@ -2,6 +2,7 @@ package pt.mleiria.collections.immutable;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,4 +40,53 @@ class ListTest {
     void length() {
         List<Integer> integerList = list(1, 2, 3, 4, 5);
         assertEquals(5, integerList.length());}
-}
\ No newline at end of file
+
+
+    @Test
+    void foldRight() {
+        List<Integer> integerList = list(1, 2, 3, 4, 5);
+        Function<Integer, Function<String, String>> f = x -> y -> "(" + x + " + " + y + ")";
+        assertEquals("(1 + (2 + (3 + (4 + (5 + 0)))))", integerList.foldRight("0", f));
+        assertEquals("(1 + (2 + (3 + (4 + (5 + 0)))))", List.foldRight(integerList, "0", f));
+    }
+
+    @Test
+    void foldRightLargeList() throws InterruptedException {
+        final int size = 10_000_000;
+        final AtomicReference<Object> result = new AtomicReference<>();
+        final Thread thread = new Thread(null, () -> {
+            try {
+                List<Integer> integerList = list();
+                for (int i = 0; i < size; i++) {
+                    integerList = integerList.cons(1);
+                }
+                assertEquals(size, List.foldRight(integerList, 0, x -> y -> x + y));
+                assertEquals(size, integerList.map(x -> x * 2).filter(x -> x == 2).length());
+                result.set(Boolean.TRUE);
+            } catch (final Throwable t) {
+                result.set(t);
+            }
+        }, "ListTest-foldRight", 256 * 1024);
+        thread.start();
+        thread.join();
+        if (result.get() instanceof Throwable t) {
+            fail(t);
+        }
+        assertEquals(Boolean.TRUE, result.get());
+    }
+
+    @Test
+    void mapFilterFlatMap() {
+        List<Integer> integerList = list(1, 2, 3);
+        assertEquals("[2, 4, 6, NIL]", integerList.map(x -> x * 2).toString());
+        assertEquals("[1, 3, NIL]", integerList.filter(x -> x % 2 == 1).toString());
+        assertEquals("[1, 1, 2, 2, 3, 3, NIL]", integerList.flatMap(x -> list(x, x)).toString());
+    }
+
+    @Test
+    void concatAndReverse() {
+        assertEquals("[1, 2, 3, 4, NIL]", List.concat(list(1, 2), list(3, 4)).toString());
+        assertEquals("[3, 2, 1, NIL]", list(1, 2, 3).reverse().toString());
+        assertEquals("[NIL]", List.<Integer>list().reverse().toString());
+    }
+}
@@ -0,0 +1,49 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongListTest {
+
+    @Test
+    void range() {
+        assertEquals("[]", LongList.range(0, 0).toString());
+        assertEquals("[0]", LongList.range(0, 1).toString());
+        assertEquals("[0, 1, 2, 3, 4]", LongList.range(0, 5).toString());
+        assertEquals("[]", LongList.range(5, 1).toString());
+        assertEquals(LongList.of(Long.MAX_VALUE - 1), LongList.range(Long.MAX_VALUE - 1, Long.MAX_VALUE));
+    }
+
+    @Test
+    void rangeTooLargeForAList() {
+        assertThrows(IllegalArgumentException.class, () -> LongList.range(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> LongList.range(0, Integer.MAX_VALUE + 1L));
+    }
+
+    @Test
+    void unfold() {
+        assertEquals("[1, 2, 4, 8]", LongList.unfold(1, x -> x * 2, x -> x < 10).toString());
+    }
+
+    @Test
+    void folds() {
+        assertEquals(499_999_500_000L, LongList.range(0, 1_000_000).sum());
+        assertEquals(15, LongList.range(1, 6).foldLeft(0, Long::sum));
+        assertEquals("12345", LongList.range(1, 6).foldLeft("", acc -> x -> acc + x));
+        assertEquals("54321", LongList.range(1, 6).foldRight("", x -> acc -> acc + x));
+    }
+
+    @Test
+    void filterAndZip() {
+        final LongList evens = LongList.range(0, 10).filter(x -> x % 2 == 0);
+        assertEquals(LongList.of(0, 2, 4, 6, 8), evens);
+        assertEquals(LongList.of(0, 3, 6), evens.zip(LongList.range(0, 3), Long::sum));
+        assertEquals(LongList.empty(), evens.zip(LongList.empty(), Long::sum));
+    }
+
+    @Test
+    void mapToObj() {
+        assertEquals("[a, aa]", LongList.range(1, 3).mapToObj(n -> "a".repeat((int) n)).toString());
+    }
+}
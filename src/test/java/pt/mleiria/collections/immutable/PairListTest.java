@@ -0,0 +1,58 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+import pt.mleiria.dto.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PairListTest {
+
+    @Test
+    void zipKeepsTheShorterLength() {
+        final PairList<String, Double> zipped = PairList.zip(List.of("a", "b", "c"), List.of(1.0, 2.0));
+        assertEquals(2, zipped.size());
+        assertEquals("b", zipped.first(1));
+        assertEquals(2.0, zipped.second(1));
+        assertEquals(List.of(new Pair<>("a", 1.0), new Pair<>("b", 2.0)), zipped);
+        assertEquals(List.of("a", "b"), zipped.firsts());
+        assertEquals(List.of(1.0, 2.0), zipped.seconds());
+        assertThrows(IndexOutOfBoundsException.class, () -> zipped.first(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> zipped.seconds().get(2));
+        assertSame(PairList.empty(), PairList.zip(List.of(), List.of(1)));
+    }
+
+    @Test
+    void foldsAndVisitsLargeColumns() {
+        final int rows = 1_000_000;
+        final double[][] features = new double[rows][];
+        final List<Integer> labels = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            features[i] = new double[]{i};
+            labels.add(i % 2);
+        }
+        final PairList<double[], Integer> zipped = PairList.zip(List.of(features), labels);
+        final double positives = zipped.foldLeft(0.0, (acc, x, y) -> acc + x[0] * y);
+        assertEquals(250_000_000_000.0, positives);
+        final long[] count = new long[1];
+        zipped.forEachPair((x, y) -> count[0] += y);
+        assertEquals(rows / 2, count[0]);
+    }
+
+    @Test
+    void builder() {
+        final PairList.Builder<Integer, String> builder = PairList.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add(i, "v" + i);
+        }
+        final PairList<Integer, String> built = builder.build();
+        assertEquals(100, built.size());
+        assertEquals(99, built.first(99));
+        assertEquals("v42", built.second(42));
+        assertEquals(new Pair<>(7, "v7"), built.get(7));
+        assertTrue(PairList.builder().build().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> built.remove(0));
+    }
+}
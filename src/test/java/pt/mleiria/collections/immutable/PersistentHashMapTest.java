@@ -0,0 +1,168 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentHashMapTest {
+
+    /**
+     * A key with a poor hash, so that many keys share the same 32-bit hash.
+     */
+    private record Collider(int id) {
+        @Override
+        public int hashCode() {
+            return id % 3;
+        }
+    }
+
+    @Test
+    void withAndGet() {
+        PersistentHashMap<Integer, String> map = PersistentHashMap.empty();
+        for (int i = 0; i < 100_000; i++) {
+            map = map.with(i, "v" + i);
+        }
+        assertEquals(100_000, map.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals("v" + i, map.get(i));
+        }
+        assertNull(map.get(-1));
+        assertEquals("none", map.getOrDefault(-1, "none"));
+        assertFalse(map.containsKey(100_000));
+    }
+
+    @Test
+    void oldVersionsAreUnchanged() {
+        final PersistentHashMap<String, Integer> one = PersistentHashMap.<String, Integer>empty().with("a", 1);
+        final PersistentHashMap<String, Integer> two = one.with("b", 2);
+        final PersistentHashMap<String, Integer> replaced = two.with("a", 10);
+        final PersistentHashMap<String, Integer> removed = replaced.without("b");
+        assertEquals(Map.of("a", 1), one);
+        assertEquals(Map.of("a", 1, "b", 2), two);
+        assertEquals(Map.of("a", 10, "b", 2), replaced);
+        assertEquals(Map.of("a", 10), removed);
+        assertSame(two, two.with("b", 2));
+        assertSame(two, two.without("c"));
+        assertThrows(UnsupportedOperationException.class, () -> two.put("c", 3));
+        assertThrows(NullPointerException.class, () -> two.with("c", null));
+    }
+
+    @Test
+    void mixedOperationsMatchHashMap() {
+        final Random random = new Random(17);
+        final Map<Object, Integer> expected = new HashMap<>();
+        PersistentHashMap<Object, Integer> map = PersistentHashMap.empty();
+        for (int i = 0; i < 200_000; i++) {
+            final Object key = random.nextBoolean()
+                    ? random.nextInt(5_000)
+                    : new Collider(random.nextInt(300));
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        final Map<Object, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+        for (final Object key : expected.keySet()) {
+            map = map.without(key);
+        }
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    void builderLoadsInBulkWithoutChangingBuiltMaps() {
+        final PersistentHashMap.Builder<Integer, Integer> builder = PersistentHashMap.builder();
+        for (int i = 0; i < 50_000; i++) {
+            builder.put(i, i);
+        }
+        final PersistentHashMap<Integer, Integer> first = builder.build();
+        for (int i = 0; i < 50_000; i += 2) {
+            builder.put(i, -i).remove(i + 1);
+        }
+        final PersistentHashMap<Integer, Integer> second = builder.build();
+        assertEquals(50_000, first.size());
+        assertEquals(25_000, second.size());
+        for (int i = 0; i < 50_000; i++) {
+            assertEquals(i, first.get(i));
+            assertEquals(i % 2 == 0 ? Integer.valueOf(-i) : null, second.get(i));
+        }
+        final PersistentHashMap<Integer, Integer> third = second.toBuilder().put(1, 1).build();
+        assertFalse(second.containsKey(1));
+        assertEquals(1, third.get(1));
+        assertSame(third, PersistentHashMap.from(third));
+        assertEquals(third, PersistentHashMap.from(new HashMap<>(third)));
+    }
+
+    /**
+     * Checks a map against a copy taken when it was built, through both lookups and iteration.
+     */
+    private static void assertUnchanged(final Map<Integer, Integer> expected,
+                                        final PersistentHashMap<Integer, Integer> map) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, new HashMap<>(map));
+        expected.forEach((k, v) -> assertEquals(v, map.get(k)));
+    }
+
+    @Test
+    void editingThroughToBuilderLeavesTheSourceUnchanged() {
+        final Random random = new Random(5);
+        for (int trial = 0; trial < 20; trial++) {
+            final PersistentHashMap.Builder<Integer, Integer> builder = PersistentHashMap.builder();
+            for (int i = 0; i < 200; i++) {
+                builder.put(random.nextInt(), i);
+            }
+            final PersistentHashMap<Integer, Integer> map = builder.build();
+            final Map<Integer, Integer> before = new HashMap<>(map);
+            final PersistentHashMap.Builder<Integer, Integer> edit = map.toBuilder();
+            for (int i = 0; i < 20; i++) {
+                edit.put(random.nextInt(), -i);
+            }
+            for (final Integer key : before.keySet().stream().limit(20).toList()) {
+                edit.remove(key);
+            }
+            edit.build();
+            assertUnchanged(before, map);
+        }
+    }
+
+    @Test
+    void reusingABuilderAfterBuildLeavesEarlierMapsUnchanged() {
+        final Random random = new Random(6);
+        final PersistentHashMap.Builder<Integer, Integer> builder = PersistentHashMap.builder();
+        final List<PersistentHashMap<Integer, Integer>> maps = new ArrayList<>();
+        final List<Map<Integer, Integer>> copies = new ArrayList<>();
+        final Map<Integer, Integer> expected = new HashMap<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                final int key = random.nextInt(2_000);
+                if (random.nextInt(4) == 0) {
+                    builder.remove(key);
+                    expected.remove(key);
+                } else {
+                    builder.put(key, round);
+                    expected.put(key, round);
+                }
+            }
+            maps.add(builder.build());
+            copies.add(new HashMap<>(expected));
+        }
+        for (int i = 0; i < maps.size(); i++) {
+            assertUnchanged(copies.get(i), maps.get(i));
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentLongMapTest {
+
+    @Test
+    void withAndGet() {
+        PersistentLongMap<String> map = PersistentLongMap.empty();
+        for (long i = 0; i < 100_000; i++) {
+            map = map.with(i << 32, "v" + i);
+        }
+        assertEquals(100_000, map.size());
+        for (long i = 0; i < 100_000; i++) {
+            assertEquals("v" + i, map.get(i << 32));
+        }
+        assertNull(map.get(1));
+        assertEquals("none", map.getOrDefault(-1, "none"));
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+    }
+
+    @Test
+    void mixedOperationsMatchHashMap() {
+        final Random random = new Random(23);
+        final Map<Long, Integer> expected = new HashMap<>();
+        PersistentLongMap<Integer> map = PersistentLongMap.empty();
+        for (int i = 0; i < 200_000; i++) {
+            final long key = random.nextInt(10_000) - 5_000L;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        final Map<Long, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+        assertEquals(expected.size(), map.keys().length());
+        for (final long key : expected.keySet()) {
+            map = map.without(key);
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void builderLoadsInBulkWithoutChangingBuiltMaps() {
+        final PersistentLongMap.Builder<String> builder = PersistentLongMap.builder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.put(i, "a");
+        }
+        final PersistentLongMap<String> first = builder.build();
+        builder.put(0, "b").remove(1);
+        final PersistentLongMap<String> second = builder.build();
+        assertEquals("a", first.get(0));
+        assertEquals("a", first.get(1));
+        assertEquals("b", second.get(0));
+        assertNull(second.get(1));
+        assertEquals(10_000, first.size());
+        assertEquals(9_999, second.size());
+        assertEquals(first, first.toBuilder().build());
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void equalsHashCodeAndToString() {
+        final PersistentLongMap<String> map = PersistentLongMap.<String>empty().with(1, "a").with(2, "b");
+        final PersistentLongMap<String> same = PersistentLongMap.<String>empty().with(2, "b").with(1, "a");
+        assertEquals(map, same);
+        assertEquals(map.hashCode(), same.hashCode());
+        assertEquals(Map.of(1L, "a", 2L, "b").hashCode(), map.hashCode());
+        assertEquals("{}", PersistentLongMap.empty().toString());
+        assertEquals(10, map.toString().length());
+        assertSame(map, map.with(1, "a"));
+        assertSame(map, map.without(3));
+    }
+
+    /**
+     * Checks a map against a copy taken when it was built, through both lookups and iteration.
+     */
+    private static void assertUnchanged(final Map<Long, Integer> expected, final PersistentLongMap<Integer> map) {
+        final Map<Long, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, visited);
+        expected.forEach((k, v) -> assertEquals(v, map.get(k)));
+    }
+
+    private static Map<Long, Integer> copy(final PersistentLongMap<Integer> map) {
+        final Map<Long, Integer> copy = new HashMap<>();
+        map.forEach(copy::put);
+        return copy;
+    }
+
+    @Test
+    void editingThroughToBuilderLeavesTheSourceUnchanged() {
+        final Random random = new Random(5);
+        for (int trial = 0; trial < 20; trial++) {
+            final PersistentLongMap.Builder<Integer> builder = PersistentLongMap.builder();
+            for (int i = 0; i < 200; i++) {
+                builder.put(random.nextLong(), i);
+            }
+            final PersistentLongMap<Integer> map = builder.build();
+            final Map<Long, Integer> before = copy(map);
+            final PersistentLongMap.Builder<Integer> edit = map.toBuilder();
+            for (int i = 0; i < 20; i++) {
+                edit.put(random.nextLong(), -i);
+            }
+            for (final long key : before.keySet().stream().limit(20).toList()) {
+                edit.remove(key);
+            }
+            edit.build();
+            assertUnchanged(before, map);
+        }
+    }
+
+    @Test
+    void reusingABuilderAfterBuildLeavesEarlierMapsUnchanged() {
+        final Random random = new Random(6);
+        final PersistentLongMap.Builder<Integer> builder = PersistentLongMap.builder();
+        final List<PersistentLongMap<Integer>> maps = new ArrayList<>();
+        final List<Map<Long, Integer>> copies = new ArrayList<>();
+        final Map<Long, Integer> expected = new HashMap<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                final long key = random.nextInt(2_000);
+                if (random.nextInt(4) == 0) {
+                    builder.remove(key);
+                    expected.remove(key);
+                } else {
+                    builder.put(key, round);
+                    expected.put(key, round);
+                }
+            }
+            maps.add(builder.build());
+            copies.add(new HashMap<>(expected));
+        }
+        for (int i = 0; i < maps.size(); i++) {
+            assertUnchanged(copies.get(i), maps.get(i));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentVectorTest {
+
+    @Test
+    void appendAndGet() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < 100_000; i++) {
+            vector = vector.append(i);
+        }
+        assertEquals(100_000, vector.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, vector.get(i));
+        }
+    }
+
+    @Test
+    void prependAndGet() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < 100_000; i++) {
+            vector = vector.prepend(i);
+        }
+        assertEquals(100_000, vector.size());
+        assertEquals(99_999, vector.head());
+        assertEquals(0, vector.get(99_999));
+    }
+
+    @Test
+    void mixedOperationsMatchArrayList() {
+        final List<Integer> expected = new ArrayList<>();
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        for (int i = 0; i < 20_000; i++) {
+            switch (i % 5) {
+                case 0, 1 -> {
+                    vector = vector.append(i);
+                    expected.add(i);
+                }
+                case 2, 3 -> {
+                    vector = vector.prepend(i);
+                    expected.add(0, i);
+                }
+                default -> {
+                    vector = vector.tail();
+                    expected.remove(0);
+                }
+            }
+        }
+        assertEquals(expected, vector);
+        assertEquals(expected, new ArrayList<>(vector));
+    }
+
+    @Test
+    void structuralSharingKeepsOldVersions() {
+        final PersistentVector<String> base = PersistentVector.of("a", "b", "c");
+        final PersistentVector<String> appended = base.append("d");
+        final PersistentVector<String> prepended = base.prepend("z");
+        final PersistentVector<String> tail = base.tail();
+        assertEquals("[a, b, c]", base.toString());
+        assertEquals("[a, b, c, d]", appended.toString());
+        assertEquals("[z, a, b, c]", prepended.toString());
+        assertEquals("[b, c]", tail.toString());
+    }
+
+    @Test
+    void emptyVector() {
+        final PersistentVector<Integer> empty = PersistentVector.empty();
+        assertTrue(empty.isEmpty());
+        assertThrows(IllegalStateException.class, empty::head);
+        assertThrows(IllegalStateException.class, empty::tail);
+        assertTrue(PersistentVector.of(1).tail().isEmpty());
+    }
+
+    @Test
+    void isUnmodifiable() {
+        final PersistentVector<Integer> vector = PersistentVector.of(1, 2, 3);
+        assertThrows(UnsupportedOperationException.class, () -> vector.add(4));
+        assertThrows(UnsupportedOperationException.class, () -> vector.remove(0));
+    }
+}
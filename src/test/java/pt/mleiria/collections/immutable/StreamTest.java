@@ -0,0 +1,79 @@
+package pt.mleiria.collections.immutable;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamTest {
+
+    @Test
+    void takeFromInfiniteStream() {
+        assertEquals("[0, 1, 2, 3, 4, NIL]", Stream.from(0).take(5).toList().toString());
+    }
+
+    @Test
+    void pipelineIsLazyAndSinglePass() {
+        final AtomicInteger evaluated = new AtomicInteger();
+        final Stream<Integer> pipeline = Stream.from(0)
+                .map(x -> {
+                    evaluated.incrementAndGet();
+                    return x * 2;
+                })
+                .filter(x -> x % 3 == 0)
+                .take(3);
+        assertEquals("[0, 6, 12, NIL]", pipeline.toList().toString());
+        assertEquals(7, evaluated.get());
+        // memoized: evaluating again does not apply the function again
+        pipeline.toList();
+        assertEquals(7, evaluated.get());
+    }
+
+    @Test
+    void takeWhileAndDropWhile() {
+        assertEquals("[1, 2, 3, NIL]", Stream.from(1).takeWhile(x -> x < 4).toList().toString());
+        assertEquals(10, Stream.from(1).dropWhile(x -> x < 10).head());
+    }
+
+    @Test
+    void flatMap() {
+        final Stream<Integer> s = Stream.of(1, 2, 3).flatMap(x -> Stream.of(x, x * 10));
+        assertEquals("[1, 10, 2, 20, 3, 30, NIL]", s.toList().toString());
+    }
+
+    @Test
+    void zip() {
+        final Stream<String> letters = Stream.of("a", "b", "c");
+        assertEquals("[a0, b1, c2, NIL]", letters.zipWith(Stream.from(0), a -> i -> a + i).toList().toString());
+        assertEquals("Pair[_1=a, _2=0]", letters.zip(Stream.from(0)).head().toString());
+    }
+
+    @Test
+    void deepTraversalsDoNotOverflow() {
+        final int n = 1_000_000;
+        assertEquals(n, Stream.from(0).take(n).foldLeft(0, acc -> ignore -> acc + 1));
+        assertEquals(n, Stream.from(0).filter(x -> x >= n).head());
+        assertEquals(n, Stream.from(0).flatMap(x -> x < n ? Stream.empty() : Stream.of(x)).head());
+    }
+
+    @Test
+    void staticFoldsRunInConstantMemory() {
+        // three times the heap in 200 elements: memoizing them all would run out of memory
+        final int size = (int) Math.min(Integer.MAX_VALUE - 8, Runtime.getRuntime().maxMemory() / 64);
+        final int n = 200;
+        assertEquals((long) n * size, Stream.foldLeft(Stream.from(0).take(n).map(i -> new byte[size]), 0L,
+                acc -> bytes -> acc + bytes.length));
+        final AtomicInteger count = new AtomicInteger();
+        Stream.forEach(Stream.from(0).take(n).map(i -> new byte[size]), bytes -> count.incrementAndGet());
+        assertEquals(n, count.get());
+        assertEquals("[0, 1, 2, NIL]", Stream.toList(Stream.from(0).take(3)).toString());
+    }
+
+    @Test
+    void fromIterator() {
+        final Stream<String> s = Stream.fromIterator(java.util.List.of("x", "y").iterator());
+        assertEquals("[X, Y, NIL]", s.map(String::toUpperCase).toList().toString());
+        assertTrue(s.exists("y"::equals));
+    }
+}
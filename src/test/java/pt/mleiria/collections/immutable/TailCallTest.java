@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static pt.mleiria.collections.immutable.TailCall.onStack;
 import static pt.mleiria.collections.immutable.TailCall.ret;
 import static pt.mleiria.collections.immutable.TailCall.sus;
 
@@ -54,6 +55,34 @@ class TailCallTest {
         return new AddHelper().addHelper.apply(x).apply(y).eval();
     };
 
+    /**
+     * Add method running most steps on the call stack
+     *
+     * @param x
+     * @param y
+     * @param depth
+     * @return
+     */
+    public static TailCall<Integer> add_fast(int x, int y, int depth) {
+        return y == 0
+                ? ret(x)
+                : onStack(depth)
+                ? add_fast(x + 1, y - 1, depth + 1)
+                : sus(() -> add_fast(x + 1, y - 1, 0));
+    }
+
+    /**
+     * Non tail recursive sum of the integers from 1 to n
+     *
+     * @param n
+     * @return
+     */
+    public static TailCall<Long> sum(int n) {
+        return n == 0
+                ? ret(0L)
+                : sus(() -> sum(n - 1)).map(acc -> acc + n);
+    }
+
     @Test
     void testAdd() {
         int res = add(3, 100000).eval();
@@ -77,4 +106,31 @@ class TailCallTest {
         int res = add_v3.apply(3).apply(100000);
         assertEquals(100003, res);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAddFastPath() {
+        int res = add_fast(3, 1_000_000, 0).eval();
+        assertEquals(1_000_003, res);
+    }
+
+    @Test
+    void testNonTailRecursion() {
+        long res = sum(1_000_000).eval();
+        assertEquals(500_000_500_000L, res);
+    }
+
+    @Test
+    void testFlatMap() {
+        TailCall<String> res = add_v1(0, 10).flatMap(x -> add_v1(x, 5)).map(x -> "result=" + x);
+        assertEquals("result=15", res.eval());
+    }
+
+    @Test
+    void testResumeLoop() {
+        TailCall<Long> step = sum(1_000);
+        while (step.isSuspend()) {
+            step = step.resume();
+        }
+        assertEquals(500_500L, step.eval());
+    }
+}
@@ -0,0 +1,71 @@
+package pt.mleiria.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void bucketsCoverTheLongRangeInOrder() {
+        assertEquals(0, Histogram.bucket(0));
+        assertEquals(63, Histogram.bucket(63));
+        int previous = -1;
+        for (long v = 0; v < 1 << 20; v++) {
+            final int bucket = Histogram.bucket(v);
+            assertTrue(bucket == previous || bucket == previous + 1, "value " + v);
+            assertTrue(Histogram.highestValue(bucket) >= v);
+            previous = bucket;
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highestValue(Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void bucketsAreWithinThreePercent() {
+        for (long v = 64; v > 0 && v < Long.MAX_VALUE / 3; v = v * 3 + 7) {
+            final long highest = Histogram.highestValue(Histogram.bucket(v));
+            assertTrue(highest >= v && highest - v <= v / 32, "value " + v);
+        }
+    }
+
+    @Test
+    void snapshotStatistics() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count());
+        assertEquals(1000L * 1001 / 2 * 1000, snapshot.sum());
+        assertEquals(1000, snapshot.min());
+        assertEquals(1_000_000, snapshot.max());
+        assertEquals(500_500, snapshot.mean(), 1e-9);
+        assertEquals(500_000, snapshot.percentile(0.5), 500_000 / 32.0);
+        assertEquals(990_000, snapshot.percentile(0.99), 990_000 / 32.0);
+        assertEquals(1_000_000, snapshot.percentile(1));
+        assertEquals(1000, snapshot.percentile(0));
+    }
+
+    @Test
+    void emptyAndNegative() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().percentile(0.99));
+        assertEquals(0, histogram.snapshot().min());
+        histogram.record(-5);
+        assertEquals(0, histogram.snapshot().max());
+        assertThrows(IllegalArgumentException.class, () -> histogram.snapshot().percentile(1.5));
+    }
+
+    @Test
+    void concurrentRecording() {
+        final Histogram histogram = new Histogram();
+        IntStream.range(0, 100_000).parallel().forEach(i -> histogram.record(i % 1000));
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.count());
+        assertEquals(100L * 999 * 1000 / 2, snapshot.sum());
+        assertEquals(999, snapshot.max());
+    }
+}
@@ -0,0 +1,106 @@
+package pt.mleiria.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRulesTest {
+
+    private static final String ORDER = "{\"id\":\"o-1\",\"meta\":{\"tags\":[1,2,{\"x\":[]}]},"
+            + "\"customer\":{\"name\":\"Ana\",\"address\":{\"city\":\"Lisboa\"}},"
+            + "\"items\":[{\"sku\":\"a\"},{\"sku\":\"b\"}],\"status\":\"ok\",\"total\":12.5,\"note\":null}";
+
+    private static final JsonRules RULES = JsonRules.builder()
+            .matches("/id", Validator.isPresent(), "id is required")
+            .equalTo("/status", "ok")
+            .present("/customer/address/city")
+            .matches("/items/1/sku", Validator.isPresent(), "second item needs a sku")
+            .node("/total", n -> n.isNumber() && n.doubleValue() > 0, "total must be positive")
+            .build();
+
+    @Test
+    void validDocumentHasNoViolations() {
+        assertEquals(List.of(), RULES.validate(ORDER));
+    }
+
+    @Test
+    void reportsEveryViolation() {
+        final String json = "{\"id\":\"\",\"status\":\"failed\",\"customer\":{\"name\":\"Ana\"},"
+                + "\"items\":[{\"sku\":\"a\"}],\"total\":-1}";
+        assertEquals(List.of(
+                new JsonRules.Violation("/id", "id is required"),
+                new JsonRules.Violation("/status", "/status must be ok"),
+                new JsonRules.Violation("/total", "total must be positive"),
+                new JsonRules.Violation("/customer/address/city", "/customer/address/city is required"),
+                new JsonRules.Violation("/items/1/sku", "second item needs a sku")
+        ), RULES.validate(json));
+    }
+
+    @Test
+    void missingContainersFailAllRulesBelowThem() {
+        final List<JsonRules.Violation> violations = RULES.validate("{\"status\":\"ok\",\"total\":3}");
+        assertEquals(3, violations.size());
+        assertTrue(violations.contains(new JsonRules.Violation("/id", "id is required")));
+    }
+
+    @Test
+    void rulesOnContainersSeeTheWholeValueAndItsChildren() {
+        final JsonRules rules = JsonRules.builder()
+                .node("/items", n -> n.size() == 2, "two items")
+                .equalTo("/items/0/sku", "a")
+                .node("", n -> n.has("id"), "root has an id")
+                .build();
+        assertEquals(List.of(), rules.validate(ORDER));
+        assertEquals(List.of(
+                new JsonRules.Violation("", "root has an id"),
+                new JsonRules.Violation("/items", "two items"),
+                new JsonRules.Violation("/items/0/sku", "/items/0/sku must be a")
+        ), rules.validate("{\"items\":[]}"));
+    }
+
+    @Test
+    void textRulesSeeNullForNullsAndContainers() {
+        final JsonRules rules = JsonRules.builder()
+                .matches("/note", Validator.isNotPresent(), "note must be empty")
+                .matches("/customer", Validator.isNotPresent(), "customer is not text")
+                .present("/note")
+                .build();
+        assertEquals(List.of(), rules.validate(ORDER));
+    }
+
+    @Test
+    void malformedDocumentIsOneViolation() {
+        final List<JsonRules.Violation> violations = RULES.validate("{\"id\":[1,}");
+        assertEquals(1, violations.size());
+        assertEquals("", violations.get(0).pointer());
+        assertTrue(violations.get(0).message().startsWith("Malformed JSON"));
+    }
+
+    @Test
+    void validatesLinesOfAFile(@TempDir final Path dir) throws IOException {
+        final Path file = dir.resolve("orders.ndjson");
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append(i % 100 == 7 ? "{\"id\":\"x\"}" : ORDER).append('\n');
+        }
+        Files.writeString(file, content);
+        final JsonRules.Report report = RULES.validateLines(file.toString());
+        assertEquals(1000, report.records());
+        assertFalse(report.isValid());
+        assertEquals(10, report.failures().size());
+        assertEquals(7, report.failures().get(0).record());
+        assertEquals(907, report.failures().get(9).record());
+        assertEquals(4, report.failures().get(0).violations().size());
+    }
+
+    @Test
+    void validatingAMissingFileFails(@TempDir final Path dir) {
+        assertThrows(IOException.class, () -> RULES.validateLines(dir.resolve("missing.ndjson").toString()));
+    }
+}
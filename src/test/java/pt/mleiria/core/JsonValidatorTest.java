@@ -0,0 +1,87 @@
+package pt.mleiria.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.function.BiPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonValidatorTest {
+
+    private static final String ORDER = "{\"id\":\"o-1\",\"meta\":{\"tags\":[1,2,{\"x\":[]}]},"
+            + "\"customer\":{\"name\":\"Ana\",\"address\":{\"city\":\"Lisboa\"}},"
+            + "\"items\":[{\"sku\":\"a\"},{\"sku\":\"b\"}],\"total\":12.5,\"note\":null}";
+
+    @Test
+    void getJsonNodeReadsTopLevelFields() {
+        assertEquals("o-1", JsonValidator.getJsonNode(ORDER, "id").orElseThrow().textValue());
+        assertEquals(12.5, JsonValidator.getJsonNode(ORDER, "total").orElseThrow().doubleValue());
+        assertEquals("Lisboa", JsonValidator.getJsonNode(ORDER, "customer").orElseThrow()
+                .path("address").path("city").textValue());
+        assertTrue(JsonValidator.getJsonNode(ORDER, "note").orElseThrow().isNull());
+        assertTrue(JsonValidator.getJsonNode(ORDER, "missing").orElseThrow().isMissingNode());
+        assertTrue(JsonValidator.getJsonNode("[1,2]", "0").orElseThrow().isMissingNode());
+        assertTrue(JsonValidator.getJsonNode("", "id").orElseThrow().isMissingNode());
+    }
+
+    @Test
+    void getJsonNodeFailsOnMalformedDocuments() {
+        assertEquals(Optional.empty(), JsonValidator.getJsonNode("{\"a\":[1,}", "id"));
+        assertEquals(Optional.empty(), JsonValidator.getJsonNode("{\"a\":1", "id"));
+    }
+
+    @Test
+    void lookupsReadTheWholeDocumentLikeAParsedOne() {
+        final String truncated = "{\"status\":\"ok\", \"x\": [1,2";
+        assertEquals(Optional.empty(), JsonValidator.getJsonValue(truncated, "status"));
+        assertEquals(Optional.empty(), JsonValidator.getJsonNodeAt(truncated, "/status"));
+        assertFalse(JsonValidator.isNodePresentWithValue(truncated).test("status", "ok"));
+
+        final String duplicated = "{\"status\":\"bad\",\"status\":\"ok\",\"a\":{\"b\":1},\"a\":{\"c\":2}}";
+        assertEquals(Optional.of("ok"), JsonValidator.getJsonValue(duplicated, "status"));
+        assertTrue(JsonValidator.isNodePresentWithValue(duplicated).test("status", "ok"));
+        assertTrue(JsonValidator.getJsonNodeAt(duplicated, "/a/b").orElseThrow().isMissingNode());
+        assertEquals(2, JsonValidator.getJsonNodeAt(duplicated, "/a/c").orElseThrow().intValue());
+    }
+
+    @Test
+    void getJsonValue() {
+        assertEquals(Optional.of("o-1"), JsonValidator.getJsonValue(ORDER, "id"));
+        assertEquals(Optional.empty(), JsonValidator.getJsonValue(ORDER, "total"));
+        assertEquals(Optional.empty(), JsonValidator.getJsonValue(ORDER, "missing"));
+    }
+
+    @Test
+    void getJsonNodeAtFollowsPointers() {
+        assertEquals("b", JsonValidator.getJsonNodeAt(ORDER, "/items/1/sku").orElseThrow().textValue());
+        assertEquals("Lisboa", JsonValidator.getJsonNodeAt(ORDER, "/customer/address/city").orElseThrow().textValue());
+        assertTrue(JsonValidator.getJsonNodeAt(ORDER, "/items/2/sku").orElseThrow().isMissingNode());
+        assertTrue(JsonValidator.getJsonNodeAt(ORDER, "/id/x").orElseThrow().isMissingNode());
+        assertEquals(JsonValidator.Document.parse(ORDER).orElseThrow().root(),
+                JsonValidator.getJsonNodeAt(ORDER, "").orElseThrow());
+    }
+
+    @Test
+    void documentMatchesStreamingLookups() {
+        final JsonValidator.Document document = JsonValidator.Document.parse(ORDER).orElseThrow();
+        for (final String pointer : new String[]{"/id", "/meta/tags/2", "/items/0", "/customer/address", "/nope"}) {
+            final JsonNode expected = document.at(pointer);
+            assertEquals(expected, JsonValidator.getJsonNodeAt(ORDER, pointer).orElseThrow(), pointer);
+        }
+        assertEquals(Optional.of("o-1"), document.value("id"));
+        assertTrue(document.hasValue("id", "o-1"));
+        assertFalse(document.hasValue("id", "o-2"));
+        assertTrue(JsonValidator.Document.parse("{").isEmpty());
+    }
+
+    @Test
+    void isNodePresentWithValue() {
+        final BiPredicate<String, String> present = JsonValidator.isNodePresentWithValue(ORDER);
+        assertTrue(present.test("id", "o-1"));
+        assertFalse(present.test("id", "o-2"));
+        assertFalse(present.test("total", "12.5"));
+        assertFalse(JsonValidator.isNodePresentWithValue("{").test("id", "o-1"));
+    }
+}
@@ -0,0 +1,92 @@
+package pt.mleiria.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @Test
+    void instrumentsAreSharedByName() {
+        final Metrics metrics = new Metrics();
+        assertSame(metrics.timer("a.timer"), metrics.timer("a.timer"));
+        assertSame(metrics.counter("a.counter"), metrics.counter("a.counter"));
+        assertThrows(IllegalArgumentException.class, () -> metrics.counter("a.timer"));
+        assertThrows(IllegalArgumentException.class, () -> metrics.gauge("a.counter", () -> 1));
+    }
+
+    @Test
+    void timersCountersAndGauges() {
+        final Metrics metrics = new Metrics();
+        final Metrics.Timer timer = metrics.timer("parse");
+        final long start = timer.start();
+        final long elapsed = timer.stop(start);
+        timer.record(2_000_000);
+        metrics.counter("lines").add(10);
+        metrics.counter("lines").increment();
+        final AtomicInteger queue = new AtomicInteger(3);
+        metrics.gauge("queue.size", queue::get);
+        queue.set(7);
+
+        final Metrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.timers().get("parse").count());
+        assertEquals(2_000_000, snapshot.timers().get("parse").max());
+        assertTrue(elapsed >= 0);
+        assertEquals(11L, snapshot.counters().get("lines"));
+        assertEquals(7.0, snapshot.gauges().get("queue.size"));
+    }
+
+    @Test
+    void exportsJson(@TempDir final Path dir) throws IOException {
+        final Metrics metrics = new Metrics();
+        metrics.timer("io.load").record(1_000);
+        metrics.counter("io.lines").add(5);
+        metrics.gauge("heap", () -> 1.5);
+        final Path file = dir.resolve("metrics.json");
+        metrics.writeJson(file);
+
+        final JsonNode json = new ObjectMapper().readTree(Files.readString(file));
+        assertEquals(1, json.at("/timers/io.load/count").asLong());
+        assertEquals(1_000, json.at("/timers/io.load/p99").asLong());
+        assertEquals(5, json.at("/counters/io.lines").asLong());
+        assertEquals(1.5, json.at("/gauges/heap").asDouble());
+    }
+
+    @Test
+    void exportsPrometheusText(@TempDir final Path dir) throws IOException {
+        final Metrics metrics = new Metrics();
+        metrics.timer("io.load").record(1_500_000_000L);
+        metrics.counter("io.load.lines").add(5);
+        metrics.gauge("9queue-size", () -> 2);
+        final Path file = dir.resolve("metrics.prom");
+        metrics.writePrometheus(file);
+        metrics.writePrometheus(file);
+
+        final String text = Files.readString(file);
+        assertTrue(text.contains("# TYPE io_load_seconds summary\n"));
+        assertTrue(text.contains("io_load_seconds_count 1\n"));
+        assertTrue(text.contains("io_load_seconds_sum 1.500000000\n"));
+        assertTrue(text.contains("io_load_seconds{quantile=\"0.99\"} 1.500000000\n"));
+        assertTrue(text.contains("# TYPE io_load_lines_total counter\nio_load_lines_total 5\n"));
+        assertTrue(text.contains("_9queue_size 2.0\n"));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void libraryReportsToTheGlobalRegistry() {
+        final long before = Metrics.global().timer("json.rules.validate").snapshot().count();
+        JsonRules.builder().present("/id").build().validate("{}");
+        assertEquals(before + 1, Metrics.global().timer("json.rules.validate").snapshot().count());
+        assertTrue(Metrics.global().counter("json.rules.violations").sum() >= 1);
+    }
+}
@@ -0,0 +1,108 @@
+package pt.mleiria.io.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchedFileWriterTest {
+
+    @Test
+    void writesRecordsInOrder(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("out.txt");
+        final List<String> expected = new ArrayList<>();
+        try (final BatchedFileWriter writer = BatchedFileWriter.builder(file.toString()).bufferSize(64).open()) {
+            for (int i = 0; i < 10_000; i++) {
+                final String record = "record " + i + (i % 7 == 0 ? " ção" : "");
+                writer.write(record);
+                expected.add(record);
+            }
+        }
+        assertEquals(expected, Files.readAllLines(file));
+    }
+
+    @Test
+    void flushMakesRecordsVisible(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("out.txt");
+        try (final BatchedFileWriter writer = BatchedFileWriter.builder(file.toString())
+                .sync(BatchedFileWriter.Sync.GROUP)
+                .maxDelayMillis(60_000)
+                .open()) {
+            writer.write("first");
+            writer.flush();
+            assertEquals(List.of("first"), Files.readAllLines(file));
+            writer.write("second");
+            writer.flush();
+            assertEquals(List.of("first", "second"), Files.readAllLines(file));
+        }
+    }
+
+    @Test
+    void pendingRecordsAreWrittenAfterTheDelay(@TempDir Path dir) throws IOException, InterruptedException {
+        final Path file = dir.resolve("out.txt");
+        try (final BatchedFileWriter writer = BatchedFileWriter.builder(file.toString()).maxDelayMillis(10).open()) {
+            writer.write("late");
+            for (int i = 0; i < 100 && Files.size(file) == 0; i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(List.of("late"), Files.readAllLines(file));
+        }
+    }
+
+    @Test
+    void appendsToExistingFile(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("log.txt");
+        Files.writeString(file, "existing\n");
+        try (final BatchedFileWriter writer = WriteUtilities.openAppender(file.toString())) {
+            writer.write("appended");
+        }
+        assertEquals(List.of("existing", "appended"), Files.readAllLines(file));
+    }
+
+    @Test
+    void concurrentWritersKeepRecordsWhole(@TempDir Path dir) throws Exception {
+        final Path file = dir.resolve("out.txt");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (final BatchedFileWriter writer = BatchedFileWriter.builder(file.toString()).bufferSize(100).open()) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2_000; i++) {
+                        writer.write("thread " + thread + " record " + i);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final List<String> lines = Files.readAllLines(file);
+        final Set<String> unique = new HashSet<>(lines);
+        assertEquals(8_000, lines.size());
+        assertEquals(8_000, unique.size());
+        assertTrue(unique.contains("thread 3 record 1999"));
+    }
+
+    @Test
+    void rejectsWritesAfterClose(@TempDir Path dir) throws IOException {
+        final BatchedFileWriter writer = BatchedFileWriter.builder(dir.resolve("out.txt").toString()).open();
+        writer.close();
+        assertThrows(IOException.class, () -> writer.write("too late"));
+        writer.close();
+    }
+}
@@ -0,0 +1,94 @@
+package pt.mleiria.io.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pt.mleiria.io.utils.NumericTable.Layout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarCacheTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    private static void assertSameCells(final NumericTable expected, final ColumnarTable actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.get(r, c), actual.get(r, c));
+            }
+        }
+    }
+
+    @Test
+    void writeAndOpen(@TempDir Path dir) throws IOException {
+        final Path source = dir.resolve("data.csv");
+        Files.writeString(source, "1,2.5,3\n4,,6\n-7,8e3,9\n");
+        final NumericTable table = NumericCsvReader.csv().read(source.toString());
+        final Path cache = dir.resolve("data.bin");
+        ColumnarCache.write(table, cache, source);
+        final ColumnarTable mapped = ColumnarCache.open(cache);
+        assertSameCells(table, mapped);
+        assertTrue(Double.isNaN(mapped.get(1, 1)));
+        assertEquals(3, mapped.column(2).remaining());
+        assertArrayEquals(table.values(), mapped.toNumericTable(Layout.ROW_MAJOR).values());
+    }
+
+    @Test
+    void loadReusesTheCacheUntilTheSourceChanges(@TempDir Path dir) throws IOException {
+        final Path source = dir.resolve("house_prices.txt");
+        Files.copy(Path.of(Objects.requireNonNull(classLoader.getResource("house_prices.txt")).getPath()), source);
+        final NumericTable expected = NumericCsvReader.csv().read(source.toString());
+
+        assertSameCells(expected, ColumnarCache.load(source, NumericCsvReader.csv()));
+        final Path cache = ColumnarCache.cachePath(source);
+        final FileTime written = Files.getLastModifiedTime(cache);
+        Files.setLastModifiedTime(cache, FileTime.fromMillis(written.toMillis() - 10_000));
+        final FileTime marked = Files.getLastModifiedTime(cache);
+        assertSameCells(expected, ColumnarCache.load(source, NumericCsvReader.csv()));
+        assertEquals(marked, Files.getLastModifiedTime(cache));
+
+        Files.writeString(source, "1,2\n3,4\n");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(written.toMillis() + 10_000));
+        assertTrue(ColumnarCache.open(cache, source).isEmpty());
+        final ColumnarTable reloaded = ColumnarCache.load(source, NumericCsvReader.csv());
+        assertEquals(2, reloaded.rows());
+        assertEquals(4.0, reloaded.get(1, 1));
+    }
+
+    @Test
+    void loadRebuildsTheCacheWhenTheReaderSettingsChange(@TempDir Path dir) throws IOException {
+        final Path source = dir.resolve("data.csv");
+        Files.writeString(source, "1,2\n3,4\n5,6\n");
+        final ColumnarTable all = ColumnarCache.load(source, NumericCsvReader.csv());
+        assertEquals(3, all.rows());
+        final ColumnarTable headed = ColumnarCache.load(source, NumericCsvReader.csv().withHeader(true));
+        assertEquals(2, headed.rows());
+        assertEquals(3.0, headed.get(0, 0));
+        assertEquals(3, ColumnarCache.load(source, NumericCsvReader.csv()).rows());
+        assertTrue(ColumnarCache.open(ColumnarCache.cachePath(source), source).isPresent());
+    }
+
+    @Test
+    void rejectsFilesThatAreNotCaches(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("garbage.bin");
+        Files.writeString(file, "this is definitely not a columnar cache file");
+        assertThrows(IOException.class, () -> ColumnarCache.open(file));
+    }
+
+    @Test
+    void loadNumericCached(@TempDir Path dir) throws IOException {
+        final Path source = dir.resolve("data.csv");
+        Files.writeString(source, "1,2\n3,4\n5,6\n");
+        final ColumnarTable table = FileUtilities.loadNumericCached(source.toString());
+        assertEquals(3, table.rows());
+        assertEquals(6.0, table.get(2, 1));
+        assertTrue(Files.exists(ColumnarCache.cachePath(source)));
+    }
+}
@@ -0,0 +1,127 @@
+package pt.mleiria.io.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    private static byte[] sample(final int size) {
+        final Random random = new Random(42);
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < size) {
+            sb.append(random.nextInt(100_000)).append(',').append(random.nextDouble()).append('\n');
+        }
+        return sb.substring(0, size).getBytes(US_ASCII);
+    }
+
+    private static byte[] blockCompress(final byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final OutputStream out = new BlockGzipOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(final Path file) throws IOException {
+        try (final InputStream in = Compression.open(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void blockCompressedRoundTrip(@TempDir Path dir) throws IOException {
+        final byte[] data = sample(1_000_000);
+        final Path file = dir.resolve("data.csv.gz");
+        Files.write(file, blockCompress(data));
+        assertTrue(Compression.isGzip(file));
+        assertArrayEquals(data, readAll(file));
+        try (final InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertArrayEquals(data, in.readAllBytes(), "block compressed files are plain multi-member gzip files");
+        }
+    }
+
+    @Test
+    void smallWindowAndSingleByteReads(@TempDir Path dir) throws IOException {
+        final byte[] data = sample(200_000);
+        final Path file = dir.resolve("data.gz");
+        Files.write(file, blockCompress(data));
+        try (final InputStream in = new BlockGzipInputStream(Files.newInputStream(file), 1)) {
+            for (final byte b : data) {
+                assertEquals(b & 0xff, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void plainAndMultiMemberGzip(@TempDir Path dir) throws IOException {
+        final byte[] first = sample(300_000);
+        final byte[] second = sample(1000);
+        final Path file = dir.resolve("data.gz");
+        final ByteArrayOutputStream members = new ByteArrayOutputStream();
+        members.write(gzip(first));
+        members.write(gzip(second));
+        Files.write(file, members.toByteArray());
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        assertArrayEquals(expected.toByteArray(), readAll(file));
+    }
+
+    @Test
+    void uncompressedFilesAreReadAsTheyAre(@TempDir Path dir) throws IOException {
+        final byte[] data = sample(10_000);
+        final Path file = dir.resolve("data.csv");
+        Files.write(file, data);
+        assertFalse(Compression.isGzip(file));
+        assertArrayEquals(data, readAll(file));
+        Files.write(file, new byte[0]);
+        assertArrayEquals(new byte[0], readAll(file));
+    }
+
+    @Test
+    void corruptBlocksAreDetected(@TempDir Path dir) throws IOException {
+        final byte[] compressed = blockCompress(sample(100_000));
+        compressed[compressed.length / 2] ^= 0x55;
+        final Path file = dir.resolve("corrupt.gz");
+        Files.write(file, compressed);
+        assertThrows(IOException.class, () -> readAll(file));
+    }
+
+    @Test
+    void loadersReadCompressedFiles(@TempDir Path dir) throws IOException {
+        final byte[] data = sample(500_000);
+        final Path plain = dir.resolve("data.csv");
+        final Path compressed = dir.resolve("data.csv.gz");
+        Files.write(plain, data);
+        Files.write(compressed, blockCompress(data));
+        assertEquals(FileUtilities.load(plain.toString()), FileUtilities.load(compressed.toString()));
+        assertEquals(FileUtilities.loadParallel(plain.toString(), String::length),
+                FileUtilities.loadParallel(compressed.toString(), String::length));
+        final NumericTable expected = NumericCsvReader.csv().read(plain.toString());
+        final NumericTable actual = NumericCsvReader.csv().read(compressed.toString());
+        assertEquals(expected.rows(), actual.rows());
+        assertArrayEquals(expected.values(), actual.values());
+    }
+}
@@ -0,0 +1,162 @@
+package pt.mleiria.io.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryIndexTest {
+
+    private static Map<String, Boolean> deletedByName(final List<DirectoryIndex.Entry> entries) {
+        return entries.stream().collect(Collectors.toMap(DirectoryIndex.Entry::name, DirectoryIndex.Entry::deleted));
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void rescanRecordsOnlyWhatChanged(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("a.txt"), "a");
+        Files.writeString(dir.resolve("b.txt"), "b");
+        Files.writeString(dir.resolve("c.txt"), "c");
+        Files.createDirectory(dir.resolve("sub"));
+        final DirectoryIndex index = DirectoryIndex.scan(dir);
+        assertEquals(3, index.files().size());
+        final long snapshot = index.snapshot();
+        assertTrue(index.changesSince(snapshot).isEmpty());
+
+        Files.writeString(dir.resolve("b.txt"), "bigger");
+        Files.delete(dir.resolve("c.txt"));
+        Files.writeString(dir.resolve("d.txt"), "d");
+        index.rescan();
+
+        assertEquals(Map.of("b.txt", false, "c.txt", true, "d.txt", false),
+                deletedByName(index.changesSince(snapshot)));
+        assertEquals(6, index.get("b.txt").orElseThrow().size());
+        assertTrue(index.get("c.txt").isEmpty());
+        assertEquals(3, index.files().size());
+
+        final long later = index.snapshot();
+        index.rescan();
+        assertTrue(index.changesSince(later).isEmpty());
+    }
+
+    @Test
+    void reportsEachFileOnceInItsLatestState(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("a.txt");
+        final DirectoryIndex index = DirectoryIndex.scan(dir);
+        final long snapshot = index.snapshot();
+        Files.writeString(file, "1");
+        index.rescan();
+        Files.writeString(file, "12");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        index.rescan();
+        final List<DirectoryIndex.Entry> changes = index.changesSince(snapshot);
+        assertEquals(1, changes.size());
+        assertEquals(2, changes.get(0).size());
+        assertEquals(1_000_000, changes.get(0).modified());
+    }
+
+    @Test
+    void compactForgetsOldDeletions(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("a.txt"), "a");
+        final DirectoryIndex index = DirectoryIndex.scan(dir);
+        Files.delete(dir.resolve("a.txt"));
+        index.rescan();
+        assertEquals(1, index.changesSince(0).size());
+        index.compact(index.snapshot());
+        assertTrue(index.changesSince(0).isEmpty());
+    }
+
+    @Test
+    void saveAndLoad(@TempDir Path dir, @TempDir Path state) throws IOException {
+        Files.writeString(dir.resolve("a.txt"), "a");
+        Files.writeString(dir.resolve("b.txt"), "b");
+        final DirectoryIndex index = DirectoryIndex.scan(dir);
+        final long snapshot = index.snapshot();
+        final Path saved = state.resolve("index.bin");
+        index.save(saved);
+
+        Files.writeString(dir.resolve("c.txt"), "c");
+        final DirectoryIndex loaded = DirectoryIndex.load(saved);
+        assertEquals(dir, loaded.directory());
+        assertEquals(snapshot, loaded.snapshot());
+        assertEquals(index.get("a.txt"), loaded.get("a.txt"));
+        loaded.rescan();
+        assertEquals(Map.of("c.txt", false), deletedByName(loaded.changesSince(snapshot)));
+    }
+
+    @Test
+    void watchAppliesChangesIncrementally(@TempDir Path dir) throws IOException, InterruptedException {
+        Files.writeString(dir.resolve("a.txt"), "a");
+        try (final DirectoryIndex index = DirectoryIndex.scan(dir)) {
+            final long snapshot = index.snapshot();
+            index.watch();
+            Files.writeString(dir.resolve("b.txt"), "b");
+            Files.delete(dir.resolve("a.txt"));
+            await(() -> deletedByName(index.changesSince(snapshot)).equals(Map.of("a.txt", true, "b.txt", false)));
+        }
+    }
+
+    private static Thread thread(final String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void rescanDoesNotUndoEventsSeenWhileListing(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("a.txt"), "a");
+        final AtomicBoolean armed = new AtomicBoolean();
+        final CountDownLatch listed = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        try (final DirectoryIndex index = new DirectoryIndex(dir, () -> {
+            if (armed.getAndSet(false)) {
+                listed.countDown();
+                try {
+                    resume.await();
+                } catch (final InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        })) {
+            index.watch();
+            final Thread watcher = thread("DirectoryIndex-" + dir.getFileName());
+            armed.set(true);
+            final CompletableFuture<Void> rescan = CompletableFuture.runAsync(() -> {
+                try {
+                    index.rescan();
+                } catch (final IOException x) {
+                    throw new UncheckedIOException(x);
+                }
+            });
+            assertTrue(listed.await(10, TimeUnit.SECONDS));
+            // created after the listing: the watcher either waits for the rescan or, unserialized, records it now
+            Files.writeString(dir.resolve("late.txt"), "late");
+            await(() -> watcher.getState() == Thread.State.BLOCKED || index.get("late.txt").isPresent());
+            resume.countDown();
+            rescan.get(10, TimeUnit.SECONDS);
+            await(() -> index.get("late.txt").isPresent());
+            assertEquals(2, index.files().size());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package pt.mleiria.io.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileFinderTest {
+
+    /**
+     * Creates 4 levels of 3 directories, each holding a jpg, a JPG, a png and a txt file.
+     */
+    private static void tree(final Path dir, final int depth) throws IOException {
+        Files.createFile(dir.resolve("a.jpg"));
+        Files.createFile(dir.resolve("B.JPG"));
+        Files.createFile(dir.resolve("c.png"));
+        Files.createFile(dir.resolve("jpg.txt"));
+        if (depth < 4) {
+            for (int i = 0; i < 3; i++) {
+                tree(Files.createDirectory(dir.resolve("d" + i)), depth + 1);
+            }
+        }
+    }
+
+    private static Set<Path> walk(final Path root, final String... extensions) throws IOException {
+        try (final Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> Arrays.stream(extensions)
+                            .anyMatch(e -> p.getFileName().toString().toLowerCase().endsWith("." + e)))
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    void findsTheSameFilesAsWalk(@TempDir Path root) throws IOException {
+        tree(root, 0);
+        final Set<Path> found = new HashSet<>(FileFinder.withExtensions("jpg").findAll(root));
+        assertEquals(walk(root, "jpg"), found);
+        assertEquals(2 * 121, found.size());
+    }
+
+    @Test
+    void reportsCounts(@TempDir Path root) throws IOException {
+        tree(root, 0);
+        final FileFinder.Result result = FileFinder.withExtensions("jpg", "png")
+                .withParallelism(3)
+                .find(root, p -> {
+                });
+        assertEquals(3 * 121, result.matched());
+        assertEquals(4 * 121, result.files());
+        assertEquals(121, result.directories());
+        assertEquals(0, result.errors());
+        assertTrue(result.elapsedNanos() > 0);
+    }
+
+    @Test
+    void matchesGlobs(@TempDir Path root) throws IOException {
+        tree(root, 0);
+        final Set<Path> found = new HashSet<>(FileFinder.withGlob("*.{png,txt}").findAll(root));
+        final Set<Path> expected = walk(root, "png", "txt");
+        assertEquals(expected, found);
+    }
+
+    @Test
+    void limitsTheDepth(@TempDir Path root) throws IOException {
+        tree(root, 0);
+        assertEquals(2, FileFinder.withExtensions("jpg").withMaxDepth(0).findAll(root).size());
+        assertEquals(2 * 4, FileFinder.withExtensions("jpg").withMaxDepth(1).findAll(root).size());
+    }
+
+    @Test
+    void countsMissingRootAsError(@TempDir Path root) {
+        final FileFinder.Result result = FileFinder.withExtensions("jpg").find(root.resolve("missing"), p -> {
+        });
+        assertEquals(1, result.errors());
+        assertEquals(0, result.matched());
+    }
+
+    @Test
+    void loadJPGFindsEveryImage(@TempDir Path root) throws IOException {
+        tree(root, 0);
+        final Set<Path> found = Arrays.stream(FileUtilities.loadJPG(root.toString()))
+                .map(File::toPath)
+                .collect(Collectors.toSet());
+        assertEquals(walk(root, "jpg"), found);
+    }
+}
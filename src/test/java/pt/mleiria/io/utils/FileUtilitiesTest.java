@@ -1,12 +1,23 @@
 package pt.mleiria.io.utils;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pt.mleiria.core.Metrics;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static pt.mleiria.io.utils.FileUtilities.strArrToDbl;
@@ -27,4 +38,91 @@ class FileUtilitiesTest {
             fail(e);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void loadParallelMatchesLoad() {
+        final String path = Objects.requireNonNull(classLoader.getResource("house_prices.txt")).getPath();
+        final List<double[]> expected = FileUtilities.load(path, strToStrArr.andThen(strArrToDbl));
+        final List<double[]> data = FileUtilities.loadParallel(path, strToStrArr.andThen(strArrToDbl));
+        assertEquals(expected.size(), data.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), data.get(i));
+        }
+    }
+
+    @Test
+    void loadParallelKeepsOrderAcrossSegments(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("lines.csv");
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300_000; i++) {
+            sb.append(i).append(",row,é").append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 1000 == 0) {
+                sb.append("  \n");
+            }
+        }
+        Files.writeString(file, sb.toString());
+        final List<String> data = FileUtilities.loadParallel(file.toString(), Function.identity());
+        assertEquals(300_000, data.size());
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals(i + ",row,é", data.get(i));
+        }
+    }
+
+    @Test
+    void forEachLineCountsErrors(@TempDir Path dir) {
+        final Metrics.Counter errors = Metrics.global().counter("io.load.errors");
+        final long before = errors.sum();
+        final List<String> data = new ArrayList<>();
+        assertEquals(0, FileUtilities.forEachLine(dir.resolve("missing.txt").toString(), Function.identity(),
+                data::add));
+        assertTrue(data.isEmpty());
+        assertEquals(before + 1, errors.sum());
+    }
+
+    @Test
+    void forEachLineMatchesLoad() {
+        final String path = Objects.requireNonNull(classLoader.getResource("house_prices.txt")).getPath();
+        final List<double[]> expected = FileUtilities.load(path, strToStrArr.andThen(strArrToDbl));
+        final List<double[]> data = new ArrayList<>();
+        final long count = FileUtilities.forEachLine(path, strToStrArr.andThen(strArrToDbl), data::add);
+        assertEquals(expected.size(), count);
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), data.get(i));
+        }
+    }
+
+    @Test
+    void publishHonoursDemand(@TempDir Path dir) throws IOException, InterruptedException {
+        final Path file = dir.resolve("lines.txt");
+        Files.write(file, IntStream.range(0, 5000).mapToObj(String::valueOf).collect(Collectors.toList()));
+        final List<Integer> data = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        FileUtilities.publish(file.toString(), Integer::valueOf).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Integer item) {
+                data.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completed.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 5000).boxed().collect(Collectors.toList()), data);
+    }
+}
@@ -0,0 +1,111 @@
+package pt.mleiria.io.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineSourceTest {
+
+    private static Path lines(final Path dir, final int count) throws IOException {
+        final Path file = dir.resolve("lines.txt");
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i).append('\n');
+            if (i % 100 == 0) {
+                sb.append(" \n");
+            }
+        }
+        Files.writeString(file, sb.toString());
+        return file;
+    }
+
+    @Test
+    void readsNonBlankLinesInOrder(@TempDir Path dir) throws IOException {
+        final Path file = lines(dir, 10_000);
+        final List<Integer> data = new ArrayList<>();
+        try (final LineSource<Integer> source = LineSource.open(file.toString(), Integer::valueOf, 100)) {
+            source.forEachRemaining(data::add);
+            assertFalse(source.hasNext());
+        }
+        assertEquals(10_000, data.size());
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals(i, data.get(i));
+        }
+    }
+
+    @Test
+    void readsAheadOnlyUpToTheCapacity(@TempDir Path dir) throws IOException, InterruptedException {
+        final Path file = lines(dir, 100_000);
+        final AtomicInteger mapped = new AtomicInteger();
+        try (final LineSource<String> source = LineSource.open(file.toString(), line -> {
+            mapped.incrementAndGet();
+            return line;
+        }, 16)) {
+            assertEquals("0", source.next());
+            Thread.sleep(200);
+            assertTrue(mapped.get() <= 3 * 16, "mapped " + mapped.get() + " lines ahead");
+        }
+    }
+
+    @Test
+    void closeStopsReadingEarly(@TempDir Path dir) throws IOException {
+        final Path file = lines(dir, 100_000);
+        final AtomicInteger mapped = new AtomicInteger();
+        final LineSource<String> source = LineSource.open(file.toString(), line -> {
+            mapped.incrementAndGet();
+            return line;
+        }, 16);
+        source.next();
+        source.close();
+        final int afterClose = mapped.get();
+        assertFalse(source.hasNext());
+        assertEquals(afterClose, mapped.get());
+        assertTrue(afterClose < 100_000);
+    }
+
+    @Test
+    void failuresReachTheConsumer(@TempDir Path dir) throws IOException {
+        final Path file = lines(dir, 1000);
+        try (final LineSource<Integer> source = LineSource.open(file.toString(), line -> {
+            final int i = Integer.parseInt(line);
+            if (i == 500) {
+                throw new IllegalArgumentException("bad line " + i);
+            }
+            return i;
+        })) {
+            final IllegalArgumentException x = assertThrows(IllegalArgumentException.class, () -> {
+                while (source.hasNext()) {
+                    source.next();
+                }
+            });
+            assertEquals("bad line 500", x.getMessage());
+        }
+    }
+
+    @Test
+    void streamClosesTheSource(@TempDir Path dir) throws IOException {
+        final Path file = lines(dir, 1000);
+        final LineSource<String> source = LineSource.open(file.toString());
+        final List<String> first;
+        try (final Stream<String> stream = source.stream()) {
+            first = stream.limit(3).collect(Collectors.toList());
+        }
+        assertEquals(List.of("0", "1", "2"), first);
+        assertFalse(source.hasNext());
+    }
+
+    @Test
+    void missingFileFailsOnOpen() {
+        assertThrows(IOException.class, () -> LineSource.open("does/not/exist.txt"));
+    }
+}
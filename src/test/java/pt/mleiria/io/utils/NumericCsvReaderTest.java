@@ -0,0 +1,146 @@
+package pt.mleiria.io.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pt.mleiria.io.utils.NumericTable.Layout;
+import pt.mleiria.math.ColumnStatistics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.*;
+import static pt.mleiria.io.utils.FileUtilities.strArrToDbl;
+import static pt.mleiria.io.utils.FileUtilities.strToStrArr;
+
+class NumericCsvReaderTest {
+
+    private final ClassLoader classLoader = getClass().getClassLoader();
+
+    private static NumericTable read(final NumericCsvReader reader, final String content) {
+        return reader.read(ByteBuffer.wrap(content.getBytes(US_ASCII)));
+    }
+
+    @Test
+    void readHousePrices() throws IOException {
+        final String path = Objects.requireNonNull(classLoader.getResource("house_prices.txt")).getPath();
+        final List<double[]> expected = FileUtilities.load(path, strToStrArr.andThen(strArrToDbl));
+        final NumericTable table = NumericCsvReader.csv().read(path);
+        assertEquals(expected.size(), table.rows());
+        assertEquals(3, table.columns());
+        for (int r = 0; r < table.rows(); r++) {
+            assertArrayEquals(expected.get(r), table.toArray()[r]);
+        }
+    }
+
+    @Test
+    void gathersStatisticsWhileParsing(@TempDir final Path dir) throws IOException {
+        final Path path = dir.resolve("stats.csv");
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            content.append(i).append(',').append(i % 2 == 0 ? "" : "1.5").append('\n');
+        }
+        Files.writeString(path, content);
+        final NumericCsvReader.Summarized summarized = NumericCsvReader.csv()
+                .withLayout(Layout.COLUMN_MAJOR).readWithStatistics(path.toString());
+        assertEquals(100_000, summarized.table().rows());
+        final ColumnStatistics statistics = summarized.statistics();
+        assertEquals(100_000, statistics.count(0));
+        assertEquals(49_999.5, statistics.mean(0), 1e-9);
+        assertEquals(99_999, statistics.max(0));
+        assertEquals(50_000, statistics.quantile(0, 0.5), 2_000);
+        assertEquals(50_000, statistics.count(1));
+        assertEquals(1.5, statistics.mean(1));
+        assertEquals(0, statistics.variance(1));
+    }
+
+    @Test
+    void columnMajorLayout() {
+        final NumericTable table = read(NumericCsvReader.csv().withLayout(Layout.COLUMN_MAJOR), "1,2\n3,4\n5,6\n");
+        assertArrayEquals(new double[]{1, 3, 5, 2, 4, 6}, table.values());
+        assertEquals(4.0, table.get(1, 1));
+    }
+
+    @Test
+    void headerDelimiterAndMissingCells() {
+        final NumericTable table = read(NumericCsvReader.csv().withDelimiter(';').withHeader(true),
+                "size;bedrooms;price\r\n2104;;399900\r\n\r\n1600; 3\r\n");
+        assertEquals(2, table.rows());
+        assertEquals(3, table.columns());
+        assertEquals(2104.0, table.get(0, 0));
+        assertTrue(Double.isNaN(table.get(0, 1)));
+        assertEquals(3.0, table.get(1, 1));
+        assertTrue(Double.isNaN(table.get(1, 2)));
+    }
+
+    @Test
+    void tooManyCells() {
+        assertThrows(IllegalStateException.class, () -> read(NumericCsvReader.csv(), "1,2\n3,4,5\n"));
+    }
+
+    @Test
+    void parsesLikeDoubleParseDouble() {
+        final Random random = new Random(42);
+        final StringBuilder sb = new StringBuilder("-0.0,1e3,-2.5E-3,NaN,.5,00012.3400,123456789012345678901234\n");
+        final double[] expected = new double[7 + 5 * 1000];
+        System.arraycopy(new double[]{-0.0, 1e3, -2.5e-3, Double.NaN, .5, 12.34, 123456789012345678901234.0},
+                0, expected, 0, 7);
+        for (int i = 0; i < 1000; i++) {
+            final double[] row = {random.nextDouble(), random.nextGaussian() * 1e6, random.nextInt(100_000),
+                    random.nextDouble() * 1e-10, random.nextLong()};
+            for (int j = 0; j < row.length; j++) {
+                expected[7 + i * 5 + j] = row[j];
+                sb.append(j == 0 ? "" : ",").append(row[j]);
+            }
+            sb.append('\n');
+        }
+        final NumericCsvReader reader = NumericCsvReader.csv();
+        assertArrayEquals(new double[]{-0.0, 1e3, -2.5e-3, Double.NaN, .5, 12.34, 123456789012345678901234.0},
+                read(reader, sb.substring(0, sb.indexOf("\n"))).values());
+        final String[] lines = sb.toString().split("\n");
+        for (int i = 1; i < lines.length; i++) {
+            final double[] values = read(reader, lines[i]).values();
+            for (int j = 0; j < values.length; j++) {
+                assertEquals(expected[7 + (i - 1) * 5 + j], values[j], lines[i]);
+            }
+        }
+    }
+
+    @Test
+    void readsGzipFilesInSegments(@TempDir final Path dir) throws IOException {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            content.append(i).append(',').append(i * 0.25).append('\n');
+        }
+        final Path plain = dir.resolve("rows.csv");
+        Files.writeString(plain, content, US_ASCII);
+        final Path compressed = dir.resolve("rows.csv.gz");
+        try (final OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            out.write(content.toString().getBytes(US_ASCII));
+        }
+        final NumericTable expected = NumericCsvReader.csv().read(plain.toString());
+        final NumericTable table = NumericCsvReader.csv().read(compressed.toString());
+        assertEquals(200_000, table.rows());
+        assertArrayEquals(expected.values(), table.values());
+    }
+
+    @Test
+    void readFile(@TempDir Path dir) throws IOException {
+        final Path file = dir.resolve("data.csv");
+        final StringBuilder sb = new StringBuilder("x,y\n");
+        for (int i = 0; i < 50_000; i++) {
+            sb.append(i).append(',').append(i * 0.5).append('\n');
+        }
+        Files.writeString(file, sb.toString());
+        final NumericTable table = NumericCsvReader.csv().withHeader(true).read(file.toString());
+        assertEquals(50_000, table.rows());
+        assertEquals(49_999 * 0.5, table.get(49_999, 1));
+    }
+}
@@ -0,0 +1,21 @@
+package pt.mleiria.math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CholeskyTest {
+
+    @Test
+    void decomposesAndSolves() {
+        final DenseMatrix a = DenseMatrix.wrap(3, 3, 4, 12, -16, 12, 37, -43, -16, -43, 98);
+        final Cholesky cholesky = Cholesky.of(a);
+        assertEquals(DenseMatrix.wrap(3, 3, 2, 0, 0, 6, 1, 0, -8, 5, 3), cholesky.lower());
+        assertArrayEquals(new double[]{1, 2, 3}, cholesky.solve(a.multiply(new double[]{1, 2, 3})), 1e-9);
+    }
+
+    @Test
+    void rejectsMatricesThatAreNotPositiveDefinite() {
+        assertThrows(ArithmeticException.class, () -> Cholesky.of(DenseMatrix.wrap(2, 2, 1, 2, 2, 1)));
+    }
+}
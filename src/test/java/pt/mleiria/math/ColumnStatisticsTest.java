@@ -0,0 +1,143 @@
+package pt.mleiria.math;
+
+import org.junit.jupiter.api.Test;
+import pt.mleiria.io.utils.FileUtilities;
+import pt.mleiria.io.utils.NumericTable;
+import pt.mleiria.io.utils.NumericTable.Layout;
+
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnStatisticsTest {
+
+    private static NumericTable housePrices() {
+        final String path = Objects.requireNonNull(ColumnStatisticsTest.class.getClassLoader()
+                .getResource("house_prices.txt")).getPath();
+        return FileUtilities.loadNumeric(path);
+    }
+
+    /**
+     * Checks the statistics against two plain passes over the columns.
+     */
+    private static void assertSummarizes(final NumericTable table, final ColumnStatistics statistics) {
+        assertEquals(table.columns(), statistics.columns());
+        for (int c = 0; c < table.columns(); c++) {
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int r = 0; r < table.rows(); r++) {
+                sum += table.get(r, c);
+                min = Math.min(min, table.get(r, c));
+                max = Math.max(max, table.get(r, c));
+            }
+            final double mean = sum / table.rows();
+            double squares = 0;
+            for (int r = 0; r < table.rows(); r++) {
+                squares += (table.get(r, c) - mean) * (table.get(r, c) - mean);
+            }
+            assertEquals(table.rows(), statistics.count(c));
+            assertEquals(mean, statistics.mean(c), Math.abs(mean) * 1e-12);
+            assertEquals(squares / table.rows(), statistics.variance(c), squares / table.rows() * 1e-9);
+            assertEquals(min, statistics.min(c));
+            assertEquals(max, statistics.max(c));
+        }
+    }
+
+    private static NumericTable random(final int rows, final Layout layout) {
+        final Random random = new Random(7);
+        final NumericTable table = new NumericTable(new double[rows * 3], rows, 3, layout);
+        for (int r = 0; r < rows; r++) {
+            table.values()[table.index(r, 0)] = random.nextGaussian() * 1000 + 1e6;
+            table.values()[table.index(r, 1)] = random.nextInt(5);
+            table.values()[table.index(r, 2)] = random.nextDouble();
+        }
+        return table;
+    }
+
+    @Test
+    void summarizesHousePrices() {
+        final NumericTable table = housePrices();
+        final ColumnStatistics statistics = ColumnStatistics.of(table);
+        assertSummarizes(table, statistics);
+        assertEquals(3, statistics.quantile(1, 0.5));
+        assertEquals(1, statistics.min(1));
+        assertEquals(5, statistics.max(1));
+    }
+
+    @Test
+    void mergesChunksOfLargeTables() {
+        for (final Layout layout : Layout.values()) {
+            final NumericTable table = random(200_000, layout);
+            final ColumnStatistics statistics = ColumnStatistics.of(table);
+            assertSummarizes(table, statistics);
+            assertEquals(0.5, statistics.quantile(2, 0.5), 0.02);
+            assertEquals(1e6, statistics.quantile(0, 0.5), 50);
+        }
+    }
+
+    @Test
+    void ignoresMissingValues() {
+        final ColumnStatistics statistics = ColumnStatistics.create(2);
+        statistics.addRow(1, Double.NaN);
+        statistics.addRow(3, Double.NaN);
+        final ColumnStatistics other = ColumnStatistics.create(2);
+        other.addRow(5, 7);
+        statistics.merge(other).merge(ColumnStatistics.create(2));
+        assertEquals(3, statistics.count(0));
+        assertEquals(3, statistics.mean(0));
+        assertEquals(8.0 / 3, statistics.variance(0), 1e-12);
+        assertEquals(1, statistics.count(1));
+        assertEquals(7, statistics.min(1));
+        assertEquals(7, statistics.max(1));
+        assertEquals(0, statistics.variance(1));
+        assertTrue(Double.isNaN(ColumnStatistics.create(1).mean(0)));
+        assertThrows(IllegalArgumentException.class, () -> statistics.addRow(1, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> statistics.merge(ColumnStatistics.create(3)));
+    }
+
+    @Test
+    void mergingStatisticsWithThemselvesCountsTheirValuesTwice() {
+        final ColumnStatistics statistics = ColumnStatistics.create(1);
+        statistics.addRow(1);
+        statistics.addRow(3);
+        assertSame(statistics, statistics.merge(statistics));
+        assertEquals(4, statistics.count(0));
+        assertEquals(2, statistics.mean(0));
+        assertEquals(1, statistics.variance(0), 1e-12);
+        assertEquals(1, statistics.min(0));
+        assertEquals(3, statistics.max(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> ColumnStatistics.create(1, 100).merge(ColumnStatistics.create(1, 200)));
+    }
+
+    @Test
+    void standardizesInPlace() {
+        for (final Layout layout : Layout.values()) {
+            final NumericTable table = random(50_000, layout);
+            final double[] values = table.values();
+            assertSame(table, ColumnStatistics.of(table).standardize(table));
+            assertSame(values, table.values());
+            final ColumnStatistics standardized = ColumnStatistics.of(table);
+            for (int c = 0; c < 3; c++) {
+                assertEquals(0, standardized.mean(c), 1e-9);
+                assertEquals(1, standardized.variance(c), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void rescalesInPlace() {
+        final NumericTable table = housePrices();
+        ColumnStatistics.of(table).rescale(table);
+        final ColumnStatistics rescaled = ColumnStatistics.of(table);
+        for (int c = 0; c < 3; c++) {
+            assertEquals(0, rescaled.min(c));
+            assertEquals(1, rescaled.max(c), 1e-15);
+        }
+        final NumericTable constant = new NumericTable(new double[]{4, Double.NaN, 4}, 3, 1, Layout.ROW_MAJOR);
+        ColumnStatistics.of(constant).rescale(constant);
+        assertArrayEquals(new double[]{0, Double.NaN, 0}, constant.values());
+    }
+}
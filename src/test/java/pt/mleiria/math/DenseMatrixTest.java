@@ -0,0 +1,138 @@
+package pt.mleiria.math;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pt.mleiria.io.utils.NumericTable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DenseMatrixTest {
+
+    private static DenseMatrix random(final Random random, final int rows, final int columns) {
+        final double[] values = new double[rows * columns];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 2 - 1;
+        }
+        return DenseMatrix.wrap(rows, columns, values);
+    }
+
+    private static double[][] naiveMultiply(final double[][] a, final double[][] b) {
+        final double[][] c = new double[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < b[0].length; j++) {
+                for (int k = 0; k < b.length; k++) {
+                    c[i][j] += a[i][k] * b[k][j];
+                }
+            }
+        }
+        return c;
+    }
+
+    private static void assertClose(final double[][] expected, final DenseMatrix actual) {
+        assertEquals(expected.length, actual.rows());
+        for (int r = 0; r < expected.length; r++) {
+            assertArrayEquals(expected[r], actual.row(r), 1e-9);
+        }
+    }
+
+    @Test
+    void construction() {
+        final DenseMatrix m = DenseMatrix.of(new double[][]{{1, 2, 3}, {4, 5, 6}});
+        assertEquals(2, m.rows());
+        assertEquals(3, m.columns());
+        assertEquals(6, m.get(1, 2));
+        assertArrayEquals(new double[]{2, 5}, m.column(1));
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, m.toRowMajorArray());
+        assertEquals(m, DenseMatrix.wrap(2, 3, 1, 2, 3, 4, 5, 6));
+        assertEquals(DenseMatrix.of(m.toArray()), m);
+        assertEquals(1, DenseMatrix.identity(3).get(2, 2));
+        assertEquals(0, DenseMatrix.identity(3).get(2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> m.get(2, 0));
+        assertThrows(IllegalArgumentException.class, () -> DenseMatrix.wrap(2, 2, 1, 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> DenseMatrix.of(new double[][]{{1, 2}, {3}}));
+        assertEquals("[[1.0, 2.0, 3.0],\n [4.0, 5.0, 6.0]]", m.toString());
+    }
+
+    @Test
+    void fromNumericTables() {
+        final double[] rowMajor = {1, 2, 3, 4, 5, 6};
+        final DenseMatrix wrapped = DenseMatrix.of(new NumericTable(rowMajor, 2, 3, NumericTable.Layout.ROW_MAJOR));
+        rowMajor[0] = 10;
+        assertEquals(10, wrapped.get(0, 0));
+        final DenseMatrix transposed = DenseMatrix.of(
+                new NumericTable(new double[]{1, 4, 2, 5, 3, 6}, 2, 3, NumericTable.Layout.COLUMN_MAJOR));
+        assertEquals(DenseMatrix.wrap(2, 3, 1, 2, 3, 4, 5, 6), transposed);
+    }
+
+    @Test
+    void loadsCsvFiles(@TempDir final Path dir) throws IOException {
+        final Path file = dir.resolve("m.csv");
+        Files.writeString(file, "1,2\n3,4\n5,6\n");
+        assertEquals(DenseMatrix.wrap(3, 2, 1, 2, 3, 4, 5, 6), DenseMatrix.load(file.toString()));
+    }
+
+    @Test
+    void multiplySmall() {
+        final DenseMatrix a = DenseMatrix.wrap(2, 3, 1, 2, 3, 4, 5, 6);
+        final DenseMatrix b = DenseMatrix.wrap(3, 2, 7, 8, 9, 10, 11, 12);
+        assertEquals(DenseMatrix.wrap(2, 2, 58, 64, 139, 154), a.multiply(b));
+        assertEquals(a, DenseMatrix.identity(2).multiply(a));
+        assertThrows(IllegalArgumentException.class, () -> a.multiply(a));
+    }
+
+    @Test
+    void multiplyMatchesNaiveProductAcrossBlocksAndThreads() {
+        final Random random = new Random(7);
+        for (final int[] dims : new int[][]{{1, 1, 1}, {63, 65, 64}, {130, 70, 129}, {200, 150, 190}}) {
+            final DenseMatrix a = random(random, dims[0], dims[1]);
+            final DenseMatrix b = random(random, dims[1], dims[2]);
+            assertClose(naiveMultiply(a.toArray(), b.toArray()), a.multiply(b));
+        }
+    }
+
+    @Test
+    void matrixVectorProduct() {
+        final Random random = new Random(3);
+        for (final int[] dims : new int[][]{{3, 2}, {400, 300}}) {
+            final DenseMatrix a = random(random, dims[0], dims[1]);
+            final double[] v = random(random, dims[1], 1).toRowMajorArray();
+            final double[] expected = a.multiply(DenseMatrix.wrap(dims[1], 1, v)).toRowMajorArray();
+            assertArrayEquals(expected, a.multiply(v), 1e-9);
+        }
+        assertThrows(IllegalArgumentException.class, () -> DenseMatrix.identity(2).multiply(new double[3]));
+    }
+
+    @Test
+    void transpose() {
+        assertEquals(DenseMatrix.wrap(3, 2, 1, 4, 2, 5, 3, 6), DenseMatrix.wrap(2, 3, 1, 2, 3, 4, 5, 6).transpose());
+        final DenseMatrix large = random(new Random(1), 301, 257);
+        final DenseMatrix t = large.transpose();
+        assertEquals(257, t.rows());
+        assertEquals(large.get(300, 13), t.get(13, 300));
+        assertEquals(large, t.transpose());
+    }
+
+    @Test
+    void elementwise() {
+        final DenseMatrix a = DenseMatrix.wrap(2, 2, 1, 2, 3, 4);
+        final DenseMatrix b = DenseMatrix.wrap(2, 2, 4, 3, 2, 1);
+        assertEquals(DenseMatrix.wrap(2, 2, 5, 5, 5, 5), a.add(b));
+        assertEquals(DenseMatrix.wrap(2, 2, -3, -1, 1, 3), a.subtract(b));
+        assertEquals(DenseMatrix.wrap(2, 2, 4, 6, 6, 4), a.multiplyElements(b));
+        assertEquals(DenseMatrix.wrap(2, 2, 2, 4, 6, 8), a.scale(2));
+        assertEquals(DenseMatrix.wrap(2, 2, 1, 4, 9, 16), a.map(x -> x * x));
+        assertThrows(IllegalArgumentException.class, () -> a.add(DenseMatrix.zeros(2, 3)));
+
+        final DenseMatrix large = random(new Random(5), 500, 300);
+        final DenseMatrix sum = large.add(large);
+        for (int i = 0; i < 500; i += 37) {
+            assertEquals(2 * large.get(i, i % 300), sum.get(i, i % 300));
+        }
+        assertEquals(sum, large.scale(2));
+    }
+}
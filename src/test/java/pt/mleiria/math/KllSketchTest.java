@@ -0,0 +1,97 @@
+package pt.mleiria.math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KllSketchTest {
+
+    private static double rank(final double[] sorted, final double value) {
+        final int index = Arrays.binarySearch(sorted, value);
+        return (double) (index >= 0 ? index : -index - 1) / sorted.length;
+    }
+
+    @Test
+    void smallStreamsAreExact() {
+        final KllSketch sketch = KllSketch.create();
+        for (int i = 1; i <= 100; i++) {
+            sketch.add(i);
+        }
+        sketch.add(Double.NaN);
+        assertEquals(100, sketch.count());
+        assertEquals(1, sketch.min());
+        assertEquals(100, sketch.max());
+        assertEquals(50, sketch.quantile(0.5));
+        assertEquals(1, sketch.quantile(0));
+        assertEquals(100, sketch.quantile(1));
+        assertTrue(Double.isNaN(KllSketch.create().quantile(0.5)));
+    }
+
+    @Test
+    void ranksStayWithinTheErrorBound() {
+        final Random random = new Random(3);
+        final double[] values = new double[1_000_000];
+        final KllSketch sketch = KllSketch.create();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 100 + Math.exp(random.nextDouble() * 5);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (final double q : new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+            assertEquals(q, rank(values, sketch.quantile(q)), 0.02, "quantile " + q);
+        }
+        assertEquals(values[0], sketch.min());
+        assertEquals(values[values.length - 1], sketch.max());
+    }
+
+    @Test
+    void mergedSketchesSummarizeTheWhole() {
+        final double[] values = new double[200_000];
+        final KllSketch[] parts = new KllSketch[7];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = KllSketch.create();
+        }
+        for (int i = 0; i < values.length; i++) {
+            // sorted input spread over the parts, the hard case for a sketch
+            values[i] = i;
+            parts[i * parts.length / values.length].add(i);
+        }
+        final KllSketch merged = KllSketch.create().merge(parts[3]).merge(parts[0]);
+        for (int p = 1; p < parts.length; p++) {
+            if (p != 3) {
+                merged.merge(parts[p]);
+            }
+        }
+        assertEquals(values.length, merged.count());
+        assertEquals(0, merged.min());
+        assertEquals(values.length - 1, merged.max());
+        for (final double q : new double[]{0.05, 0.5, 0.95}) {
+            assertEquals(q, rank(values, merged.quantile(q)), 0.02, "quantile " + q);
+        }
+    }
+
+    @Test
+    void mergingASketchWithItselfCountsItsValuesTwice() {
+        final KllSketch sketch = KllSketch.create(16);
+        for (int i = 1; i <= 1000; i++) {
+            sketch.add(i);
+        }
+        final double median = sketch.quantile(0.5);
+        assertSame(sketch, sketch.merge(sketch));
+        assertEquals(2000, sketch.count());
+        assertEquals(1, sketch.min());
+        assertEquals(1000, sketch.max());
+        assertEquals(500, sketch.quantile(0.5), 1000 * 0.2);
+        assertEquals(median, sketch.quantile(0.5), 1000 * 0.2);
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> KllSketch.create(2));
+        assertThrows(IllegalArgumentException.class, () -> KllSketch.create().quantile(1.5));
+        assertThrows(IllegalArgumentException.class, () -> KllSketch.create(100).merge(KllSketch.create(200)));
+    }
+}
@@ -0,0 +1,119 @@
+package pt.mleiria.ml;
+
+import org.junit.jupiter.api.Test;
+import pt.mleiria.core.Metrics;
+import pt.mleiria.math.DenseMatrix;
+
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinearRegressionTest {
+
+    private static DenseMatrix housePrices() {
+        final String path = Objects.requireNonNull(LinearRegressionTest.class.getClassLoader()
+                .getResource("house_prices.txt")).getPath();
+        return DenseMatrix.load(path);
+    }
+
+    /**
+     * Rows of three features, y = 4 + 2 x0 - 3 x1 + 0.5 x2 plus small noise.
+     */
+    private static DenseMatrix synthetic(final int rows, final double[] target) {
+        final Random random = new Random(11);
+        final double[] values = new double[rows * 3];
+        for (int i = 0; i < rows; i++) {
+            values[i * 3] = random.nextGaussian() * 10 + 100;
+            values[i * 3 + 1] = random.nextDouble();
+            values[i * 3 + 2] = random.nextInt(50);
+            target[i] = 4 + 2 * values[i * 3] - 3 * values[i * 3 + 1] + 0.5 * values[i * 3 + 2]
+                    + random.nextGaussian() * 0.01;
+        }
+        return DenseMatrix.wrap(rows, 3, values);
+    }
+
+    @Test
+    void normalEquationOnHousePrices() {
+        final DenseMatrix data = housePrices();
+        final LinearRegression.Fit fit = LinearRegression.normalEquation()
+                .fit(data.columns(0, 2), data.column(2));
+        final LinearRegression model = fit.model();
+        assertEquals(89597.9095, model.intercept(), 1e-3);
+        assertArrayEquals(new double[]{139.2107, -8738.0191}, model.weights(), 1e-3);
+        assertEquals(293081.4643, model.predict(1650, 3), 1e-3);
+        assertEquals(model.meanSquaredError(data.columns(0, 2), data.column(2)), fit.loss(), 1e-3);
+        assertTrue(fit.converged());
+        assertEquals(1, fit.iterations());
+    }
+
+    @Test
+    void gradientDescentMatchesTheNormalEquation() {
+        final DenseMatrix data = housePrices();
+        final DenseMatrix features = data.columns(0, 2);
+        final double[] target = data.column(2);
+        final LinearRegression exact = LinearRegression.normalEquation().fit(features, target).model();
+        final LinearRegression.Fit fit = LinearRegression.gradientDescent()
+                .withLearningRate(0.3)
+                .withMaxIterations(10_000)
+                .withTolerance(1e-15)
+                .fit(features, target);
+        assertTrue(fit.converged());
+        assertTrue(fit.iterations() > 1);
+        assertEquals(exact.intercept(), fit.model().intercept(), 1);
+        assertArrayEquals(exact.weights(), fit.model().weights(), 1e-2);
+        assertEquals(exact.meanSquaredError(features, target), fit.loss(), 1);
+    }
+
+    @Test
+    void solversRecoverKnownWeightsAcrossChunks() {
+        final double[] target = new double[100_000];
+        final DenseMatrix features = synthetic(target.length, target);
+        for (final int parallelism : new int[]{1, 4}) {
+            final LinearRegression normal = LinearRegression.normalEquation()
+                    .withParallelism(parallelism).fit(features, target).model();
+            assertEquals(4, normal.intercept(), 1e-2);
+            assertArrayEquals(new double[]{2, -3, 0.5}, normal.weights(), 1e-3);
+
+            final LinearRegression.Fit descent = LinearRegression.gradientDescent()
+                    .withParallelism(parallelism)
+                    .withLearningRate(0.5)
+                    .withTolerance(1e-14)
+                    .withMaxIterations(5000)
+                    .fit(features, target);
+            assertTrue(descent.converged());
+            assertArrayEquals(new double[]{2, -3, 0.5}, descent.model().weights(), 1e-3);
+            assertEquals(1e-4, descent.loss(), 1e-4);
+        }
+    }
+
+    @Test
+    void ridgeSolvesCollinearFeatures() {
+        final DenseMatrix features = DenseMatrix.wrap(4, 2, 1, 2, 2, 4, 3, 6, 4, 8);
+        final double[] target = {1, 2, 3, 4};
+        assertThrows(ArithmeticException.class, () -> LinearRegression.normalEquation().fit(features, target));
+        final LinearRegression model = LinearRegression.normalEquation().withRidge(1e-6)
+                .fit(features, target).model();
+        assertEquals(3, model.predict(3, 6), 1e-4);
+    }
+
+    @Test
+    void divergingDescentIsNotConverged() {
+        final DenseMatrix data = housePrices();
+        final LinearRegression.Fit fit = LinearRegression.gradientDescent()
+                .withLearningRate(5)
+                .fit(data.columns(0, 2), data.column(2));
+        assertFalse(fit.converged());
+    }
+
+    @Test
+    void fitsAreTimed() {
+        final long before = Metrics.global().timer("ml.linear.normal").snapshot().count();
+        final LinearRegression.Fit fit = LinearRegression.normalEquation()
+                .fit(DenseMatrix.wrap(2, 1, 1, 2), new double[]{1, 2});
+        assertTrue(fit.elapsedNanos() > 0);
+        assertEquals(before + 1, Metrics.global().timer("ml.linear.normal").snapshot().count());
+        assertThrows(IllegalArgumentException.class,
+                () -> LinearRegression.normalEquation().fit(DenseMatrix.zeros(2, 1), new double[3]));
+    }
+}
@@ -0,0 +1,145 @@
+package pt.mleiria.ml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pt.mleiria.core.Metrics;
+import pt.mleiria.io.utils.ColumnarTable;
+import pt.mleiria.io.utils.FileUtilities;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StochasticGradientDescentTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Writes rows of three features and the target, y = 4 + 2 x0 - 3 x1 + 0.5 x2 plus small noise, sorted by x2.
+     */
+    private Path synthetic(final int rows) throws IOException {
+        final Path path = dir.resolve("synthetic.csv");
+        final Random random = new Random(5);
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            for (int x2 = 0; x2 < 50; x2++) {
+                for (int i = 0; i < rows / 50; i++) {
+                    final double x0 = random.nextGaussian() * 10 + 100;
+                    final double x1 = random.nextDouble();
+                    final double y = 4 + 2 * x0 - 3 * x1 + 0.5 * x2 + random.nextGaussian() * 0.01;
+                    out.write(x0 + "," + x1 + "," + x2 + "," + y);
+                    out.newLine();
+                }
+            }
+        }
+        return path;
+    }
+
+    private static void assertRecovered(final LinearRegression model, final double delta) {
+        assertArrayEquals(new double[]{2, -3, 0.5}, model.weights(), delta);
+        assertEquals(4, model.intercept(), delta * 100);
+    }
+
+    @Test
+    void recoversKnownWeightsFromAFile() throws IOException {
+        final String path = synthetic(20_000).toString();
+        final LinearRegression.Fit fit = StochasticGradientDescent.create()
+                .withEpochs(3)
+                .fit(path);
+        assertEquals(3, fit.iterations());
+        assertFalse(fit.converged());
+        assertRecovered(fit.model(), 1e-2);
+        assertTrue(fit.loss() < 0.1);
+    }
+
+    @Test
+    void shufflesSortedFiles() throws IOException {
+        final String path = synthetic(20_000).toString();
+        final LinearRegression.Fit fit = StochasticGradientDescent.create()
+                .withEpochs(3)
+                .withShuffleBuffer(1000)
+                .withReadAhead(64)
+                .fit(path);
+        assertRecovered(fit.model(), 1e-2);
+        final LinearRegression.Fit again = StochasticGradientDescent.create()
+                .withEpochs(3)
+                .withShuffleBuffer(1000)
+                .fit(path);
+        assertArrayEquals(fit.model().weights(), again.model().weights(), 0);
+    }
+
+    @Test
+    void trainsOnTheColumnarCache() throws IOException {
+        final Path path = synthetic(20_000);
+        final ColumnarTable table = FileUtilities.loadNumericCached(path.toString());
+        final StochasticGradientDescent sgd = StochasticGradientDescent.create()
+                .withEpochs(3)
+                .withShuffleBuffer(1000);
+        final LinearRegression.Fit cached = sgd.fit(table);
+        assertRecovered(cached.model(), 1e-2);
+        assertArrayEquals(sgd.fit(path.toString()).model().weights(), cached.model().weights(), 0);
+    }
+
+    @Test
+    void stopsEarlyWithinTolerance() throws IOException {
+        final long before = Metrics.global().counter("ml.sgd.records").sum();
+        final LinearRegression.Fit fit = StochasticGradientDescent.create()
+                .withEpochs(100)
+                .withTolerance(0.5)
+                .fit(synthetic(5_000).toString());
+        assertTrue(fit.converged());
+        assertTrue(fit.iterations() < 100);
+        assertEquals(5_000L * fit.iterations(), Metrics.global().counter("ml.sgd.records").sum() - before);
+    }
+
+    @Test
+    void approachesTheNormalEquationOnHousePrices() throws IOException {
+        final String path = Objects.requireNonNull(StochasticGradientDescentTest.class.getClassLoader()
+                .getResource("house_prices.txt")).getPath();
+        final LinearRegression.Fit fit = StochasticGradientDescent.create()
+                .withLearningRate(0.05)
+                .withBatchSize(4)
+                .withEpochs(500)
+                .fit(path);
+        final LinearRegression model = fit.model();
+        assertEquals(293081.4643, model.predict(1650, 3), 1000);
+        final double[][] rows = FileUtilities.loadNumeric(path).toArray();
+        double exact = 0;
+        for (final double[] row : rows) {
+            final double residual = 89597.9095 + 139.2107 * row[0] - 8738.0191 * row[1] - row[2];
+            exact += residual * residual / rows.length;
+        }
+        assertEquals(exact, fit.loss(), exact * 0.1);
+    }
+
+    @Test
+    void honoursTheTargetColumn() throws IOException {
+        final Path path = dir.resolve("first.csv");
+        final StringBuilder lines = new StringBuilder();
+        for (int x = 0; x < 200; x++) {
+            lines.append(3 * (x % 20) - 1).append(',').append(x % 20).append('\n');
+        }
+        Files.writeString(path, lines);
+        final LinearRegression model = StochasticGradientDescent.create()
+                .withTargetColumn(0)
+                .withEpochs(200)
+                .fit(path.toString())
+                .model();
+        assertArrayEquals(new double[]{3}, model.weights(), 1e-3);
+        assertEquals(-1, model.intercept(), 1e-2);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> StochasticGradientDescent.create().withLearningRate(0));
+        assertThrows(IllegalArgumentException.class, () -> StochasticGradientDescent.create().withBatchSize(0));
+        assertThrows(IllegalArgumentException.class, () -> StochasticGradientDescent.create().withEpochs(0));
+        assertThrows(IllegalArgumentException.class, () -> StochasticGradientDescent.create().withShuffleBuffer(-1));
+        assertThrows(IllegalArgumentException.class, () -> StochasticGradientDescent.create().withTargetColumn(-2));
+    }
+}